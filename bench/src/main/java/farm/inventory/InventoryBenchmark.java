@@ -0,0 +1,259 @@
+package farm.inventory;
+
+import farm.core.FailedTransactionException;
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks comparing the {@link Inventory} implementations on the operations used at the
+ * shop front: adding stock one unit or one delivery at a time, removing one or several units,
+ * checking for stock and listing all stock.
+ * <p>
+ * Every benchmark is parameterised by how much stock is held, how the traffic is spread across
+ * product types and which qualities are stocked. So that the depth of the inventory stays constant
+ * across iterations, every benchmark which changes the stock undoes its change straight after, and
+ * is named for both halves: {@code addThenRemoveProduct} times an addition and a removal, and
+ * {@code removeThenRestockProduct} a removal and the matching additions. Restoring the stock in a
+ * per-invocation fixture instead would add JMH's own timing overhead to operations this short.
+ * <p>
+ * Built by {@code bench/pom.xml}, which compiles these benchmarks together with {@code src} and
+ * packages them as {@code bench/target/benchmarks.jar}. Running {@link #main(String[])} reports
+ * allocation rates per operation through JMH's GC profiler; any other JMH options, such as
+ * {@code -prof gc}, can be passed to JMH's own runner instead.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class InventoryBenchmark {
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+    // number of pre-generated picks; a power of two so the next pick is a mask away
+    private static final int PICK_COUNT = 1 << 12;
+    private static final int BULK_QUANTITY = 16;
+
+    /**
+     * The inventory implementations under test.
+     */
+    public enum Implementation {
+        BASIC {
+            @Override
+            Inventory create() {
+                return new BasicInventory();
+            }
+        },
+        FANCY {
+            @Override
+            Inventory create() {
+                return new FancyInventory();
+            }
+        };
+
+        abstract Inventory create();
+    }
+
+    /**
+     * How traffic is spread across product types.
+     */
+    public enum BarcodeSkew {
+        /** Every product type is equally likely. */
+        UNIFORM,
+        /** Product types follow a Zipf distribution, so eggs dominate and bread is rare. */
+        ZIPF,
+        /** Only eggs are stocked and sold. */
+        SINGLE
+    }
+
+    /**
+     * Which qualities are stocked.
+     */
+    public enum QualityMix {
+        /** Every quality is equally likely. */
+        UNIFORM,
+        /** Only regular quality products. */
+        REGULAR_ONLY,
+        /** Mostly regular products with a tail of higher qualities, as from a young farm. */
+        MOSTLY_REGULAR
+    }
+
+    @Param({"BASIC", "FANCY"})
+    public Implementation implementation;
+
+    @Param({"10", "1000", "100000", "10000000"})
+    public int depth;
+
+    @Param({"UNIFORM", "ZIPF", "SINGLE"})
+    public BarcodeSkew skew;
+
+    @Param({"UNIFORM", "REGULAR_ONLY", "MOSTLY_REGULAR"})
+    public QualityMix qualities;
+
+    private Inventory inventory;
+    private final Barcode[] barcodePicks = new Barcode[PICK_COUNT];
+    private final Quality[] qualityPicks = new Quality[PICK_COUNT];
+    // each delivery is of the picked product type only, in a mix of qualities, so that removing
+    // as many units of that type as were delivered restores the type's depth
+    private final StockManifest[] manifests = new StockManifest[PICK_COUNT];
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(2002);
+        for (int i = 0; i < PICK_COUNT; i++) {
+            barcodePicks[i] = pickBarcode(random);
+            qualityPicks[i] = pickQuality(random);
+        }
+        for (int i = 0; i < PICK_COUNT; i++) {
+            StockManifest manifest = new StockManifest();
+            for (int j = 0; j < BULK_QUANTITY; j++) {
+                int pick = random.nextInt(PICK_COUNT);
+                manifest.add(barcodePicks[i], qualityPicks[pick], 1);
+            }
+            manifests[i] = manifest;
+        }
+
+        inventory = implementation.create();
+        StockManifest initial = new StockManifest();
+        for (int i = 0; i < depth; i++) {
+            initial.add(barcodePicks[i & (PICK_COUNT - 1)],
+                    qualityPicks[(i * 31) & (PICK_COUNT - 1)], 1);
+        }
+        inventory.addProducts(initial);
+    }
+
+    @Benchmark
+    public void addThenRemoveProduct() {
+        int pick = nextPick();
+        inventory.addProduct(barcodePicks[pick], qualityPicks[pick]);
+        inventory.removeProduct(barcodePicks[pick]);
+    }
+
+    @Benchmark
+    public void addThenRemoveProducts(Blackhole blackhole) throws FailedTransactionException {
+        int pick = nextPick();
+        StockManifest manifest = manifests[pick];
+        inventory.addProducts(manifest);
+        blackhole.consume(removeUnits(barcodePicks[pick], manifest.getTotalQuantity()));
+    }
+
+    @Benchmark
+    public List<Product> removeThenRestockProduct() {
+        int pick = nextPick();
+        List<Product> removed = inventory.removeProduct(barcodePicks[pick]);
+        restock(barcodePicks[pick], removed);
+        return removed;
+    }
+
+    @Benchmark
+    public List<Product> removeThenRestockProductQuantity() throws FailedTransactionException {
+        int pick = nextPick();
+        List<Product> removed = removeUnits(barcodePicks[pick], BULK_QUANTITY);
+        restock(barcodePicks[pick], removed);
+        return removed;
+    }
+
+    @Benchmark
+    public boolean existsProduct() {
+        return inventory.existsProduct(barcodePicks[nextPick()]);
+    }
+
+    @Benchmark
+    public List<Product> getAllProducts() {
+        return inventory.getAllProducts();
+    }
+
+    /**
+     * Runs every benchmark with JMH's GC profiler attached, so that allocation rates per
+     * operation are reported alongside the timings.
+     * @param args an optional regular expression selecting which benchmarks to run.
+     * @throws RunnerException if JMH fails to run the benchmarks.
+     */
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : InventoryBenchmark.class.getSimpleName();
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+    /** Private Helper Methods **/
+
+    private int nextPick() {
+        int pick = next;
+        next = (next + 1) & (PICK_COUNT - 1);
+        return pick;
+    }
+
+    private List<Product> removeUnits(Barcode barcode, int quantity)
+            throws FailedTransactionException {
+        if (implementation == Implementation.BASIC) {
+            // basic inventories only remove one product at a time
+            List<Product> removed = new ArrayList<>(quantity);
+            for (int i = 0; i < quantity; i++) {
+                removed.addAll(inventory.removeProduct(barcode));
+            }
+            return removed;
+        }
+        return inventory.removeProduct(barcode, quantity);
+    }
+
+    private void restock(Barcode barcode, List<Product> removed) {
+        for (Product product : removed) {
+            inventory.addProduct(barcode, product.getQuality());
+        }
+    }
+
+    private Barcode pickBarcode(SplittableRandom random) {
+        return switch (skew) {
+            case UNIFORM -> BARCODES[random.nextInt(BARCODES.length)];
+            case SINGLE -> Barcode.EGG;
+            case ZIPF -> {
+                // weight of the i-th product type is 1 / (i + 1)
+                double total = 0;
+                for (int i = 0; i < BARCODES.length; i++) {
+                    total += 1.0 / (i + 1);
+                }
+                double target = random.nextDouble() * total;
+                int i = 0;
+                while (i < BARCODES.length - 1 && (target -= 1.0 / (i + 1)) > 0) {
+                    i++;
+                }
+                yield BARCODES[i];
+            }
+        };
+    }
+
+    private Quality pickQuality(SplittableRandom random) {
+        return switch (qualities) {
+            case UNIFORM -> QUALITIES[random.nextInt(QUALITIES.length)];
+            case REGULAR_ONLY -> Quality.REGULAR;
+            case MOSTLY_REGULAR -> {
+                int roll = random.nextInt(100);
+                if (roll < 70) {
+                    yield Quality.REGULAR;
+                } else if (roll < 90) {
+                    yield Quality.SILVER;
+                } else if (roll < 98) {
+                    yield Quality.GOLD;
+                }
+                yield Quality.IRIDIUM;
+            }
+        };
+    }
+}
@@ -2,7 +2,12 @@ package farm.core;
 
 import farm.customer.AddressBook;
 import farm.customer.Customer;
+import farm.files.TransactionLog;
 import farm.inventory.Inventory;
+import farm.inventory.InventoryView;
+import farm.inventory.ReservableInventory;
+import farm.inventory.Reservation;
+import farm.inventory.StockManifest;
 import farm.inventory.product.Product;
 import farm.inventory.product.data.Barcode;
 import farm.inventory.product.data.Quality;
@@ -10,18 +15,32 @@ import farm.sales.TransactionHistory;
 import farm.sales.TransactionManager;
 import farm.sales.transaction.Transaction;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Top-level model class responsible for storing and making updates to the data and
  * smaller model entities that make up the internal state of a farm.
+ * <p>
+ * Customers can be served at several checkout lanes at once, each from its own thread, using the
+ * methods which take a lane. The methods which do not take a lane serve
+ * {@link TransactionManager#DEFAULT_LANE}. Lanes never lock one another out; for lanes to be
+ * served concurrently, the farm's inventory must itself be safe to share between threads, such
+ * as a {@link farm.inventory.ConcurrentInventory}.
  */
 public class Farm {
     private final Inventory inventory;
     private final AddressBook addressBook;
     private final TransactionManager transactionManager;
     private final TransactionHistory history;
+    // also records every checkout on disk, if the farm was given one
+    private final TransactionLog log;
+    // reservations held for each lane's ongoing transaction
+    private final Map<Integer, List<Reservation>> heldReservations = new ConcurrentHashMap<>();
 
     /**
      * Creates a new farm instance with an inventory and address book supplied.
@@ -29,10 +48,26 @@ public class Farm {
      * @param addressBook The address book storing the farm's customer records.
      */
     public Farm(Inventory inventory, AddressBook addressBook) {
+        this(inventory, addressBook, null);
+    }
+
+    /**
+     * Creates a new farm instance which also appends every checked out transaction to a
+     * transaction log, so that its sales outlast the farm.
+     * <p>
+     * The farm does not close the log; it is up to the caller to close it once the farm is no
+     * longer in use.
+     * @param inventory The inventory through which access to the farm's stock is provisioned.
+     * @param addressBook The address book storing the farm's customer records.
+     * @param log The log to append checked out transactions to, or null to keep them in memory
+     *            only.
+     */
+    public Farm(Inventory inventory, AddressBook addressBook, TransactionLog log) {
         this.inventory = inventory;
         this.addressBook = addressBook;
         this.transactionManager = new TransactionManager();
         this.history = new TransactionHistory();
+        this.log = log;
     }
 
     /**
@@ -53,6 +88,17 @@ public class Farm {
         return new ArrayList<>(inventory.getAllProducts());
     }
 
+    /**
+     * Retrieves a read-only view of the farm's inventory.
+     * <p>
+     * Unlike {@link Farm#getAllStock()}, the view does not copy the inventory, so it is suited to
+     * reporting on large inventories.
+     * @return a live, read-only view of the inventory.
+     */
+    public InventoryView getStockView() {
+        return inventory.view();
+    }
+
     /**
      * Retrieves the farm's transaction manager.
      * @return the farm's transaction manager
@@ -109,6 +155,16 @@ public class Farm {
         }
     }
 
+    /**
+     * Adds every product listed in the given manifest to the farm's inventory in one go.
+     * <p>
+     * Inventories which only support single products are stocked one product at a time.
+     * @param manifest the products to add to the inventory.
+     */
+    public void stockProducts(StockManifest manifest) {
+        inventory.addProducts(manifest);
+    }
+
     /**
      * Sets the provided transaction as the current ongoing transaction.
      * @param transaction the transaction to set as ongoing.
@@ -117,7 +173,20 @@ public class Farm {
      * to begin managing this transaction.
      */
     public void startTransaction(Transaction transaction) throws FailedTransactionException {
-        transactionManager.setOngoingTransaction(transaction);
+        startTransaction(TransactionManager.DEFAULT_LANE, transaction);
+    }
+
+    /**
+     * Sets the provided transaction as the ongoing transaction in a checkout lane.
+     * @param lane the checkout lane.
+     * @param transaction the transaction to set as ongoing.
+     * @requires the customer associated with transaction exists in the farm's addressbook, and
+     * is not shopping in any other lane.
+     * @throws FailedTransactionException if a transaction is already ongoing in the lane.
+     */
+    public void startTransaction(int lane, Transaction transaction)
+            throws FailedTransactionException {
+        transactionManager.setOngoingTransaction(lane, transaction);
     }
 
     /**
@@ -131,9 +200,24 @@ public class Farm {
         return addToCart(barcode, 1);
     }
 
+    /**
+     * Attempts to add a single product of the given type to the cart of the customer shopping in
+     * a checkout lane.
+     * @param lane the checkout lane.
+     * @param barcode the product type to add.
+     * @return the number of products successfully added to the cart.
+     * @throws FailedTransactionException if no transaction is ongoing in the lane.
+     */
+    public int addToCart(int lane, Barcode barcode) throws FailedTransactionException {
+        return addToCart(lane, barcode, 1);
+    }
+
     /**
      * Attempts to add the specified number of products of the given type to the customer's shopping
      * cart.
+     * <p>
+     * If the farm's inventory is a {@link ReservableInventory}, the products are reserved rather
+     * than removed, and are only removed for good when the transaction is checked out.
      * @param barcode the product type to add.
      * @param quantity the number of products to add.
      * @return the number of products successfully added to the cart.
@@ -142,7 +226,23 @@ public class Farm {
      * @throws IllegalArgumentException if a quantity less than 1 is entered.
      */
     public int addToCart(Barcode barcode, int quantity) throws FailedTransactionException {
-        if (!transactionManager.hasOngoingTransaction()) {
+        return addToCart(TransactionManager.DEFAULT_LANE, barcode, quantity);
+    }
+
+    /**
+     * Attempts to add the specified number of products of the given type to the cart of the
+     * customer shopping in a checkout lane, as for {@link Farm#addToCart(Barcode, int)}.
+     * @param lane the checkout lane.
+     * @param barcode the product type to add.
+     * @param quantity the number of products to add.
+     * @return the number of products successfully added to the cart.
+     * @throws FailedTransactionException if no transaction is ongoing in the lane, or if the
+     * quantity is greater than 1 when a FancyInventory is not in use.
+     * @throws IllegalArgumentException if a quantity less than 1 is entered.
+     */
+    public int addToCart(int lane, Barcode barcode, int quantity)
+            throws FailedTransactionException {
+        if (!transactionManager.hasOngoingTransaction(lane)) {
             throw new FailedTransactionException(
                     "Cannot add to cart when no customer has started shopping.");
         }
@@ -151,14 +251,20 @@ public class Farm {
         }
         
         List<Product> products;
-        if (quantity == 1) {
+        if (inventory instanceof ReservableInventory reservable) {
+            Reservation reservation = reservable.reserve(barcode, quantity);
+            if (reservation.getQuantity() > 0) {
+                heldReservations.computeIfAbsent(lane, held -> new ArrayList<>()).add(reservation);
+            }
+            products = reservation.getProducts();
+        } else if (quantity == 1) {
             products = inventory.removeProduct(barcode);
         } else {
             products = inventory.removeProduct(barcode, quantity);
         }
         
         for (Product product : products) {
-            transactionManager.registerPendingPurchase(product);
+            transactionManager.registerPendingPurchase(lane, product);
         }
 
         return products.size();
@@ -166,19 +272,99 @@ public class Farm {
 
     /**
      * Closes the ongoing transaction. If items have been purchased in this transaction, records the transaction in the farm's history.
+     * <p>
+     * Any stock reserved for the transaction is committed. If a reservation expired before the
+     * customer checked out, its stock has already been returned to the inventory, so the whole
+     * transaction is abandoned instead (see {@link Farm#abandonTransaction()}).
      * @return true iff the finalised transaction contained products.
-     * @throws FailedTransactionException if transaction cannot be closed.
+     * @throws FailedTransactionException if transaction cannot be closed, or if a reservation
+     * expired before checkout.
      */
     public boolean checkout() throws FailedTransactionException {
-        Transaction result = transactionManager.closeCurrentTransaction();
+        return checkout(TransactionManager.DEFAULT_LANE);
+    }
+
+    /**
+     * Closes the ongoing transaction in a checkout lane, as for {@link Farm#checkout()}.
+     * <p>
+     * The transaction is recorded in the farm's history without waiting for any other lane. If
+     * the farm has a transaction log, the transaction is then appended to it, one lane at a time.
+     * @param lane the checkout lane.
+     * @return true iff the finalised transaction contained products.
+     * @throws FailedTransactionException if no transaction is ongoing in the lane, or if a
+     * reservation expired before checkout.
+     * @throws UncheckedIOException if the transaction was recorded in the history, but could not
+     * be appended to the farm's transaction log.
+     */
+    public boolean checkout(int lane) throws FailedTransactionException {
+        if (inventory instanceof ReservableInventory reservable) {
+            List<Reservation> held = heldReservations.getOrDefault(lane, List.of());
+            List<Reservation> committed = new ArrayList<>();
+            for (Reservation reservation : held) {
+                if (reservable.commit(reservation)) {
+                    committed.add(reservation);
+                }
+            }
+            if (committed.size() < held.size()) {
+                // stock from the expired reservations is already back in the inventory
+                for (Reservation reservation : committed) {
+                    restock(reservation.getProducts());
+                }
+                abandonTransaction(lane);
+                throw new FailedTransactionException(
+                        "Reserved stock expired before checkout. Transaction abandoned.");
+            }
+            heldReservations.remove(lane);
+        }
+        Transaction result = transactionManager.closeCurrentTransaction(lane);
         if (!result.getPurchases().isEmpty()) {
             history.recordTransaction(result);
+            if (log != null) {
+                try {
+                    log.append(result);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * Abandons the ongoing transaction, returning everything in the customer's cart to the
+     * inventory.
+     * <p>
+     * Reserved stock is released back to the inventory. Stock which was removed from an inventory
+     * that does not support reservations is stocked again one product at a time.
+     * @throws FailedTransactionException if no transaction is ongoing.
+     */
+    public void abandonTransaction() throws FailedTransactionException {
+        abandonTransaction(TransactionManager.DEFAULT_LANE);
+    }
+
+    /**
+     * Abandons the ongoing transaction in a checkout lane, as for
+     * {@link Farm#abandonTransaction()}.
+     * @param lane the checkout lane.
+     * @throws FailedTransactionException if no transaction is ongoing in the lane.
+     */
+    public void abandonTransaction(int lane) throws FailedTransactionException {
+        if (!transactionManager.hasOngoingTransaction(lane)) {
+            throw new FailedTransactionException("No ongoing transaction to abandon.");
+        }
+        List<Product> abandoned = transactionManager.abandonCurrentTransaction(lane);
+        if (inventory instanceof ReservableInventory reservable) {
+            for (Reservation reservation : heldReservations.getOrDefault(lane, List.of())) {
+                reservable.release(reservation);
+            }
+            heldReservations.remove(lane);
+        } else {
+            restock(abandoned);
+        }
+    }
+
     /**
      * Retrieves the receipt associated with the most recent transaction.
      * @return the receipt associated with the most recent transaction.
@@ -197,4 +383,10 @@ public class Farm {
     public Customer getCustomer(String name, int phoneNumber) throws CustomerNotFoundException {
         return this.addressBook.getCustomer(name, phoneNumber);
     }
+
+    private void restock(List<Product> products) {
+        for (Product product : products) {
+            inventory.addProduct(product.getBarcode(), product.getQuality());
+        }
+    }
 }
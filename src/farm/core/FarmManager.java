@@ -5,6 +5,7 @@ import farm.customer.Customer;
 import farm.files.FarmDataFormatter;
 import farm.files.FileLoader;
 import farm.files.FileSaver;
+import farm.inventory.InventoryView;
 import farm.inventory.product.Product;
 import farm.inventory.product.data.Barcode;
 import farm.inventory.product.data.Quality;
@@ -257,16 +258,18 @@ public class FarmManager {
                 case "q" -> running = false;
                 case "add" -> handleInventoryAddRequest(input);
                 case "list" -> {
-                    int count = 1;
-                    List<Product> stock = farm.getAllStock();
+                    int count = 0;
+                    InventoryView stock = farm.getStockView();
                     if (stock.isEmpty()) {
                         shop.displayMessage("Inventory is empty.");
                     } else {
-                        StringBuilder builder = new StringBuilder("{" + stock.getFirst());
-                        for (Product product : stock.subList(1, stock.size())) {
-                            builder.append(",").append("\t\t");
-                            if (count % 4 == 0) {
-                                builder.append(System.lineSeparator());
+                        StringBuilder builder = new StringBuilder("{");
+                        for (Product product : stock) {
+                            if (count > 0) {
+                                builder.append(",").append("\t\t");
+                                if (count % 4 == 0) {
+                                    builder.append(System.lineSeparator());
+                                }
                             }
                             builder.append(product.toString());
                             count++;
@@ -1,6 +1,7 @@
 package farm.core.farmgrid;
 
-import farm.inventory.product.*;
+import farm.inventory.product.Product;
+import farm.inventory.product.ProductCatalog;
 import farm.inventory.product.data.Barcode;
 import farm.inventory.product.data.Quality;
 
@@ -58,19 +59,9 @@ public enum Entity {
      * Returns a Product for this entity with the provided quality.
      * @param quality the quality of the produced product
      * @return a Product object
-     * @throws IllegalStateException if the barcode is invalid.
      */
     public Product getProduct(Quality quality) {
-        return switch (this.barcode) {
-            case MILK -> new Milk(quality);
-            case EGG -> new Egg(quality);
-            case WOOL -> new Wool(quality);
-            case BREAD -> new Bread(quality);
-            case COFFEE -> new Coffee(quality);
-            case JAM -> new Jam(quality);
-            default ->
-                    throw new IllegalStateException("Unexpected product barcode: " + this.barcode);
-        };
+        return ProductCatalog.getProduct(this.barcode, quality);
     }
 
     /**
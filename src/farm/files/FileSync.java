@@ -0,0 +1,35 @@
+package farm.files;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Helpers for making changes to files survive the program, or the machine, stopping.
+ */
+final class FileSync {
+    private FileSync() {
+    }
+
+    /**
+     * Forces the entries of a directory to disk, so that files created, renamed or deleted in it
+     * are not lost in a crash.
+     * <p>
+     * Some platforms cannot open a directory to force it; there the operating system is left to
+     * sync the directory itself.
+     * @param directory the directory to force.
+     * @throws IOException if the directory could be opened but not forced.
+     */
+    static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException | UnsupportedOperationException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package farm.files;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only log of changes made to an inventory's stock.
+ * <p>
+ * Each record notes that some number of products of one type and quality were added to or
+ * removed from the inventory. A record is always in the file (and, depending on the
+ * {@link SyncPolicy}, synced to disk) before the call recording it returns. Records are written
+ * by group commit: the first thread to find no write in progress becomes the leader and writes
+ * every record waiting at that moment, while records appended in the meantime wait to be written
+ * together by the next leader. Concurrent changes therefore share one write and one sync to disk,
+ * without any change being reported as recorded while it is still only held in memory.
+ * The file consists of a header followed by the records:
+ * <pre>
+ * header: magic (int), generation (long)
+ * record: operation (byte), barcode ordinal (byte), quality ordinal (byte), count (int)
+ * </pre>
+ * The generation identifies which snapshot the journal follows on from; it is increased every
+ * time the journal is compacted into a new snapshot and reset.
+ * <p>
+ * All methods are safe to call from multiple threads. If writing a group fails, every record in
+ * it is reported as failed, and the journal refuses any further records, since it can no longer
+ * tell which of them reached the file; it must be closed and opened again.
+ */
+public class InventoryJournal implements AutoCloseable {
+
+    /**
+     * How often journal writes are forced to disk.
+     */
+    public enum SyncPolicy {
+        /** Every record is written and synced on its own, never sharing a sync with another. */
+        EVERY_RECORD,
+        /** Records are written and synced in groups, shared by concurrent changes. */
+        EVERY_GROUP,
+        /** Records are written in groups, leaving the operating system to sync them. */
+        NEVER
+    }
+
+    private static final int MAGIC = 0x464A524E; // "FJRN"
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES;
+    private static final int RECORD_BYTES = 3 * Byte.BYTES + Integer.BYTES;
+    private static final byte ADDED = 1;
+    private static final byte REMOVED = 2;
+
+    private final FileChannel channel;
+    private final SyncPolicy syncPolicy;
+    // records waiting for the next leader; swapped with spare while a group is being written
+    private ByteBuffer pending;
+    private ByteBuffer spare;
+    private long generation;
+    // sequence numbers of the last record appended, and of the last record written
+    private long appended;
+    private long written;
+    private boolean writing;
+    private int writingBytes;
+    private IOException failure;
+
+    /**
+     * Opens the journal in the specified file, creating it if it does not exist.
+     * <p>
+     * A new (or empty) journal starts at the given generation. An existing journal keeps its
+     * own generation, and new records are appended after those already in the file.
+     * @param filename the name of the journal file.
+     * @param syncPolicy how often writes are forced to disk.
+     * @param groupSize the largest number of records written as one group.
+     * @param generation the generation to start a new journal at.
+     * @throws IOException if the file cannot be opened, or is not an inventory journal.
+     * @throws IllegalArgumentException if the group size is not positive.
+     */
+    public InventoryJournal(String filename, SyncPolicy syncPolicy, int groupSize,
+                            long generation) throws IOException {
+        if (groupSize <= 0) {
+            throw new IllegalArgumentException("Group size must be positive.");
+        }
+        this.syncPolicy = syncPolicy;
+        int groupBytes = (syncPolicy == SyncPolicy.EVERY_RECORD ? 1 : groupSize) * RECORD_BYTES;
+        this.pending = ByteBuffer.allocate(groupBytes);
+        this.spare = ByteBuffer.allocate(groupBytes);
+        this.channel = FileChannel.open(Path.of(filename),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_BYTES) {
+            writeHeader(generation);
+        } else {
+            this.generation = readGeneration(channel);
+            // drop any record left half-written by a crash
+            long records = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+            channel.truncate(HEADER_BYTES + records * RECORD_BYTES);
+        }
+        channel.position(channel.size());
+    }
+
+    /**
+     * Retrieves the generation of the journal.
+     * @return the generation of the snapshot this journal follows on from.
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Retrieves the size of the journal, including records still waiting to be written.
+     * @return the size of the journal in bytes.
+     * @throws IOException if the size of the file cannot be determined.
+     */
+    public synchronized long size() throws IOException {
+        return channel.size() + writingBytes + pending.position();
+    }
+
+    /**
+     * Records that products were added to the inventory.
+     * @param barcode the type of the products added.
+     * @param quality the quality of the products added.
+     * @param count the number of products added.
+     * @throws IOException if the record cannot be written.
+     */
+    public void recordAdded(Barcode barcode, Quality quality, int count) throws IOException {
+        append(ADDED, barcode, quality, count);
+    }
+
+    /**
+     * Records that products were removed from the inventory.
+     * @param barcode the type of the products removed.
+     * @param quality the quality of the products removed.
+     * @param count the number of products removed.
+     * @throws IOException if the record cannot be written.
+     */
+    public void recordRemoved(Barcode barcode, Quality quality, int count) throws IOException {
+        append(REMOVED, barcode, quality, count);
+    }
+
+    /**
+     * Waits until every record appended so far has been written to the file, and synced to disk
+     * unless the sync policy is {@link SyncPolicy#NEVER}.
+     * @throws IOException if the records cannot be written.
+     */
+    public void flush() throws IOException {
+        long target;
+        synchronized (this) {
+            target = appended;
+        }
+        awaitWritten(target);
+    }
+
+    /**
+     * Discards every record and starts the journal again at a new generation.
+     * <p>
+     * Used once the journal's records have been compacted into a snapshot.
+     * @param newGeneration the generation of the snapshot the journal now follows on from.
+     * @throws IOException if the journal cannot be reset.
+     */
+    public synchronized void reset(long newGeneration) throws IOException {
+        awaitNotWriting();
+        checkNotFailed();
+        pending.clear();
+        written = appended;
+        channel.truncate(0);
+        writeHeader(newGeneration);
+        channel.position(HEADER_BYTES);
+    }
+
+    /**
+     * Writes any pending records and closes the journal.
+     * @throws IOException if the records cannot be written or the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            synchronized (this) {
+                awaitNotWriting();
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Applies every record in the specified journal file to a table of stock counts.
+     * <p>
+     * Counts are indexed by {@code barcode.ordinal() * Quality.values().length
+     * + quality.ordinal()}. Because every record adjusts a single count, the result does not
+     * depend on the order in which concurrent changes were recorded.
+     * <p>
+     * Records are only applied if the journal follows on from the given snapshot generation. A
+     * journal from an older generation has already been compacted into the snapshot (the
+     * process must have stopped before the journal was reset), so it is skipped.
+     * @param filename the name of the journal file.
+     * @param snapshotGeneration the generation of the snapshot the counts were loaded from.
+     * @param counts the counts to adjust.
+     * @return the generation of the journal, or -1 if the file does not exist or is empty.
+     * @throws IOException if there is an error reading the file, or the file is not a valid
+     * inventory journal.
+     */
+    public static long replay(String filename, long snapshotGeneration, long[] counts)
+            throws IOException {
+        Path path = Path.of(filename);
+        if (!Files.exists(path)) {
+            return -1;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return -1;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("The file is not an inventory journal");
+            }
+            long generation = buffer.getLong();
+            if (generation < snapshotGeneration) {
+                return generation;
+            }
+            int qualities = Quality.values().length;
+            while (buffer.remaining() >= RECORD_BYTES) {
+                byte operation = buffer.get();
+                int barcode = buffer.get();
+                int quality = buffer.get();
+                int count = buffer.getInt();
+                int slot = barcode * qualities + quality;
+                if (quality < 0 || quality >= qualities || slot < 0 || slot >= counts.length
+                        || (operation != ADDED && operation != REMOVED)) {
+                    throw new IOException("Invalid inventory journal record");
+                }
+                counts[slot] += operation == REMOVED ? -count : count;
+            }
+            return generation;
+        }
+    }
+
+    /** Private Helper Methods **/
+
+    private void append(byte operation, Barcode barcode, Quality quality, int count)
+            throws IOException {
+        long sequence = -1;
+        while (sequence < 0) {
+            long full;
+            synchronized (this) {
+                checkNotFailed();
+                if (pending.remaining() >= RECORD_BYTES) {
+                    pending.put(operation).put((byte) barcode.ordinal())
+                            .put((byte) quality.ordinal()).putInt(count);
+                    sequence = ++appended;
+                    continue;
+                }
+                full = appended;
+            }
+            awaitWritten(full); // the group is full, so write it before joining the next one
+        }
+        awaitWritten(sequence);
+    }
+
+    /**
+     * Waits until the record with the given sequence number has been written, becoming the
+     * leader and writing the waiting group itself if no other thread is already doing so.
+     */
+    private void awaitWritten(long sequence) throws IOException {
+        boolean interrupted = false;
+        try {
+            interrupted = writeGroups(sequence);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Writes groups until the given record is written, as described for awaitWritten.
+     * Waiting is not interruptible, since a record handed to the leader may still be written.
+     * @return whether the thread was interrupted while waiting.
+     */
+    private boolean writeGroups(long sequence) throws IOException {
+        boolean interrupted = false;
+        while (true) {
+            ByteBuffer group;
+            long groupEnd;
+            synchronized (this) {
+                while (writing && written < sequence) {
+                    interrupted |= waitForWriter();
+                }
+                if (written >= sequence) {
+                    return interrupted;
+                }
+                checkNotFailed();
+                // lead: take every waiting record, leaving an empty buffer for the next group
+                writing = true;
+                group = pending.flip();
+                pending = spare;
+                spare = null;
+                groupEnd = appended;
+                writingBytes = group.remaining();
+            }
+            IOException groupFailure = null;
+            try {
+                while (group.hasRemaining()) {
+                    channel.write(group);
+                }
+                if (syncPolicy != SyncPolicy.NEVER) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                groupFailure = e;
+            }
+            synchronized (this) {
+                spare = group.clear();
+                writing = false;
+                writingBytes = 0;
+                if (groupFailure == null) {
+                    written = groupEnd;
+                } else {
+                    failure = groupFailure;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private void awaitNotWriting() {
+        boolean interrupted = false;
+        while (writing) {
+            interrupted |= waitForWriter();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** @return whether the thread was interrupted while waiting. */
+    private boolean waitForWriter() {
+        try {
+            wait();
+            return false;
+        } catch (InterruptedException e) {
+            return true;
+        }
+    }
+
+    private void checkNotFailed() throws IOException {
+        if (failure != null) {
+            throw new IOException("The inventory journal could not be written", failure);
+        }
+    }
+
+    private void writeHeader(long newGeneration) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC).putLong(newGeneration).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.force(true);
+        this.generation = newGeneration;
+    }
+
+    private static long readGeneration(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // keep reading until the header is full
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("The file is not an inventory journal");
+        }
+        return header.getLong();
+    }
+}
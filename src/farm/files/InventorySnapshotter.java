@@ -0,0 +1,207 @@
+package farm.files;
+
+import farm.inventory.Inventory;
+import farm.inventory.InventoryView;
+import farm.inventory.StockManifest;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A class that saves the stock held in an inventory to a compact binary snapshot, and restores
+ * inventories from those snapshots.
+ * <p>
+ * A snapshot only records how many products of each type and quality were stocked, so its size
+ * does not depend on how much stock the inventory holds. The file consists of a header followed
+ * by one entry per stocked type and quality:
+ * <pre>
+ * header: magic (int), version (int), generation (long), entry count (int)
+ * entry:  barcode ordinal (byte), quality ordinal (byte), count (int)
+ * </pre>
+ * The generation is an arbitrary number chosen by whoever saves the snapshot, such as the
+ * {@link InventoryJournal} generation the snapshot was compacted from.
+ * Snapshots are read through a memory-mapped buffer and restored with a single
+ * {@link Inventory#addProducts(StockManifest)} call.
+ * <p>
+ * A snapshot is never rewritten in place. It is written in full to a temporary file beside it,
+ * which is then moved over the old snapshot in one step, so a crash part way through saving
+ * leaves either the old snapshot or the new one, never a mixture of the two.
+ */
+public class InventorySnapshotter {
+    private static final int MAGIC = 0x46494E56; // "FINV"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 3 * Integer.BYTES + Long.BYTES;
+    private static final int ENTRY_COUNT_OFFSET = 2 * Integer.BYTES + Long.BYTES;
+    private static final int ENTRY_BYTES = 2 * Byte.BYTES + Integer.BYTES;
+
+    /**
+     * Constructor for the InventorySnapshotter
+     */
+    public InventorySnapshotter() {
+    }
+
+    /**
+     * Saves the stock currently held in the inventory to a file with the specified name,
+     * replacing the file if it already exists.
+     * @param filename the name of the file to save the snapshot to.
+     * @param inventory the inventory whose stock should be saved.
+     * @throws IOException if an IO error occurs during saving.
+     */
+    public void save(String filename, Inventory inventory) throws IOException {
+        save(filename, inventory, 0);
+    }
+
+    /**
+     * Saves the stock currently held in the inventory to a file with the specified name,
+     * replacing the file if it already exists, and tags the snapshot with a generation number.
+     * <p>
+     * The snapshot is written to disk, and atomically replaces any existing file, before this
+     * method returns.
+     * @param filename the name of the file to save the snapshot to.
+     * @param inventory the inventory whose stock should be saved.
+     * @param generation the generation to record in the snapshot.
+     * @throws IOException if an IO error occurs during saving.
+     */
+    public void save(String filename, Inventory inventory, long generation) throws IOException {
+        Path snapshot = Path.of(filename).toAbsolutePath();
+        Path temporary = Path.of(filename + ".tmp").toAbsolutePath();
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = encode(inventory.view(), generation);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        FileSync.forceDirectory(snapshot.getParent());
+    }
+
+    /**
+     * Reads the generation recorded in the snapshot in the specified file.
+     * @param filename the name of the file containing the snapshot.
+     * @return the generation the snapshot was saved with.
+     * @throws IOException if there is an error reading the file, or the file is not a valid
+     * inventory snapshot.
+     */
+    public long readGeneration(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the header is full or the file ends
+            }
+            header.flip();
+            readHeader(header);
+            return header.getLong(2 * Integer.BYTES);
+        }
+    }
+
+    /**
+     * Reads the snapshot in the specified file.
+     * @param filename the name of the file containing the snapshot.
+     * @return a manifest of all stock recorded in the snapshot.
+     * @throws IOException if there is an error reading the file, or the file is not a valid
+     * inventory snapshot.
+     */
+    public StockManifest read(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer);
+        }
+    }
+
+    /**
+     * Restores the stock recorded in the specified file, adding it to the given inventory.
+     * @param filename the name of the file containing the snapshot.
+     * @param inventory the inventory to stock.
+     * @throws IOException if there is an error reading the file, or the file is not a valid
+     * inventory snapshot.
+     */
+    public void load(String filename, Inventory inventory) throws IOException {
+        inventory.addProducts(read(filename));
+    }
+
+    /**
+     * Encodes the stock shown in a view as a snapshot.
+     * @param view the view of the stock to encode.
+     * @param generation the generation to record in the snapshot.
+     * @return a buffer containing the snapshot, ready to be written.
+     */
+    ByteBuffer encode(InventoryView view, long generation) {
+        Barcode[] barcodes = Barcode.values();
+        Quality[] qualities = Quality.values();
+        ByteBuffer buffer = ByteBuffer.allocate(
+                HEADER_BYTES + barcodes.length * qualities.length * ENTRY_BYTES);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(generation)
+                .putInt(0); // entry count is filled in below
+
+        int entries = 0;
+        for (Barcode barcode : barcodes) {
+            for (Quality quality : qualities) {
+                int count = view.getQuantity(barcode, quality);
+                if (count > 0) {
+                    buffer.put((byte) barcode.ordinal()).put((byte) quality.ordinal())
+                            .putInt(count);
+                    entries++;
+                }
+            }
+        }
+        buffer.putInt(ENTRY_COUNT_OFFSET, entries);
+        return buffer.flip();
+    }
+
+    /**
+     * Decodes a snapshot into a manifest of the stock it records.
+     * @param buffer a buffer positioned at the start of the snapshot.
+     * @return a manifest of all stock recorded in the snapshot.
+     * @throws IOException if the buffer does not contain a valid snapshot.
+     */
+    StockManifest decode(ByteBuffer buffer) throws IOException {
+        readHeader(buffer);
+        int entries = buffer.getInt();
+        if (entries < 0 || buffer.remaining() < (long) entries * ENTRY_BYTES) {
+            throw new IOException("The inventory snapshot is truncated");
+        }
+
+        Barcode[] barcodes = Barcode.values();
+        Quality[] qualities = Quality.values();
+        StockManifest manifest = new StockManifest();
+        for (int i = 0; i < entries; i++) {
+            int barcode = buffer.get();
+            int quality = buffer.get();
+            int count = buffer.getInt();
+            if (barcode < 0 || barcode >= barcodes.length
+                    || quality < 0 || quality >= qualities.length || count < 0) {
+                throw new IOException("Invalid inventory snapshot entry " + i);
+            }
+            manifest.add(barcodes[barcode], qualities[quality], count);
+        }
+        return manifest;
+    }
+
+    /**
+     * Checks the header at the start of a snapshot, leaving the buffer positioned at the
+     * entry count.
+     * @throws IOException if the buffer does not start with a valid snapshot header.
+     */
+    private void readHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException("The file is not an inventory snapshot");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported inventory snapshot version: " + version);
+        }
+        buffer.getLong(); // generation
+    }
+}
@@ -0,0 +1,347 @@
+package farm.files;
+
+import farm.core.FailedTransactionException;
+import farm.core.InvalidStockRequestException;
+import farm.inventory.Inventory;
+import farm.inventory.InventoryView;
+import farm.inventory.StockManifest;
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An inventory which records every change made to another inventory in an
+ * {@link InventoryJournal}, so that its stock survives the program stopping unexpectedly.
+ * <p>
+ * The stock is persisted as a snapshot (see {@link InventorySnapshotter}) plus a journal of the
+ * changes made since that snapshot was saved. Opening a journaling inventory replays the snapshot
+ * and journal into the wrapped inventory, restoring exactly the number of products of each type
+ * and quality it held. Once the journal grows past a size threshold, it is compacted: the current
+ * stock is saved as a new snapshot and the journal is emptied.
+ * <p>
+ * Only those counts are persisted, not the order in which products arrived. A restored inventory
+ * is restocked type by type and quality by quality, so an inventory wrapped with a first in,
+ * first out {@link farm.inventory.PickingPolicy} removes restored products in that order rather
+ * than in the order they were originally added.
+ * <p>
+ * Every change is in the journal before the method making it returns, and the journal and the
+ * wrapped inventory never disagree: additions are journaled before they are made (and retracted
+ * if the wrapped inventory rejects them), and removals whose journal record cannot be written are
+ * put back. Journal write failures are reported as {@link UncheckedIOException}s, since the
+ * {@link Inventory} methods cannot throw checked IO exceptions.
+ */
+public class JournalingInventory implements Inventory, AutoCloseable {
+    private static final int DEFAULT_GROUP_SIZE = 256;
+    private static final long DEFAULT_COMPACTION_BYTES = 1 << 20;
+    private static final Quality[] QUALITIES = Quality.values();
+
+    private final Inventory inventory;
+    private final InventoryJournal journal;
+    private final String snapshotFilename;
+    private final long compactionThresholdBytes;
+    private final InventorySnapshotter snapshotter = new InventorySnapshotter();
+    // changes share the lock so they can run together; compaction takes it exclusively
+    private final ReadWriteLock compactionLock = new ReentrantReadWriteLock();
+
+    private JournalingInventory(Inventory inventory, InventoryJournal journal,
+                                String snapshotFilename, long compactionThresholdBytes) {
+        this.inventory = inventory;
+        this.journal = journal;
+        this.snapshotFilename = snapshotFilename;
+        this.compactionThresholdBytes = compactionThresholdBytes;
+    }
+
+    /**
+     * Restores an inventory from its snapshot and journal, and begins journaling changes to it.
+     * <p>
+     * Concurrent changes are written in groups of up to 256 records, and the journal is compacted
+     * once it grows past one megabyte.
+     * @param inventory the (empty) inventory to restore the stock into.
+     * @param snapshotFilename the name of the snapshot file, which need not exist yet.
+     * @param journalFilename the name of the journal file, which need not exist yet.
+     * @param syncPolicy how often journal writes are forced to disk.
+     * @return a journaling inventory wrapping the restored inventory.
+     * @throws IOException if the snapshot or journal cannot be read, or the journal cannot be
+     * opened.
+     */
+    public static JournalingInventory open(Inventory inventory, String snapshotFilename,
+                                           String journalFilename,
+                                           InventoryJournal.SyncPolicy syncPolicy)
+            throws IOException {
+        return open(inventory, snapshotFilename, journalFilename, syncPolicy,
+                DEFAULT_GROUP_SIZE, DEFAULT_COMPACTION_BYTES);
+    }
+
+    /**
+     * Restores an inventory from its snapshot and journal, and begins journaling changes to it.
+     * @param inventory the (empty) inventory to restore the stock into.
+     * @param snapshotFilename the name of the snapshot file, which need not exist yet.
+     * @param journalFilename the name of the journal file, which need not exist yet.
+     * @param syncPolicy how often journal writes are forced to disk.
+     * @param groupSize the largest number of changes written to the journal as one group.
+     * @param compactionThresholdBytes the journal size, in bytes, past which it is compacted
+     *                                 into a new snapshot.
+     * @return a journaling inventory wrapping the restored inventory.
+     * @throws IOException if the snapshot or journal cannot be read, or the journal cannot be
+     * opened.
+     */
+    public static JournalingInventory open(Inventory inventory, String snapshotFilename,
+                                           String journalFilename,
+                                           InventoryJournal.SyncPolicy syncPolicy,
+                                           int groupSize, long compactionThresholdBytes)
+            throws IOException {
+        long[] counts = new long[Barcode.values().length * QUALITIES.length];
+        long snapshotGeneration = 0;
+        InventorySnapshotter snapshotter = new InventorySnapshotter();
+        if (Files.exists(Path.of(snapshotFilename))) {
+            snapshotGeneration = snapshotter.readGeneration(snapshotFilename);
+            StockManifest snapshot = snapshotter.read(snapshotFilename);
+            for (Barcode barcode : Barcode.values()) {
+                for (Quality quality : QUALITIES) {
+                    counts[slot(barcode, quality)] = snapshot.getQuantity(barcode, quality);
+                }
+            }
+        }
+        InventoryJournal.replay(journalFilename, snapshotGeneration, counts);
+        inventory.addProducts(toManifest(counts));
+
+        InventoryJournal journal = new InventoryJournal(journalFilename, syncPolicy, groupSize,
+                snapshotGeneration);
+        if (journal.getGeneration() < snapshotGeneration) {
+            journal.reset(snapshotGeneration); // already compacted into the snapshot
+        }
+        return new JournalingInventory(inventory, journal, snapshotFilename,
+                compactionThresholdBytes);
+    }
+
+    @Override
+    public void addProduct(Barcode barcode, Quality quality) {
+        compactionLock.readLock().lock();
+        try {
+            journal.recordAdded(barcode, quality, 1);
+            try {
+                inventory.addProduct(barcode, quality);
+            } catch (RuntimeException e) {
+                retract(barcode, quality, 1, e);
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+        compactIfNeeded();
+    }
+
+    @Override
+    public void addProduct(Barcode barcode, Quality quality, int quantity)
+            throws InvalidStockRequestException {
+        compactionLock.readLock().lock();
+        try {
+            if (quantity > 0) {
+                journal.recordAdded(barcode, quality, quantity);
+            }
+            try {
+                inventory.addProduct(barcode, quality, quantity);
+            } catch (InvalidStockRequestException | RuntimeException e) {
+                if (quantity > 0) {
+                    retract(barcode, quality, quantity, e);
+                }
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+        compactIfNeeded();
+    }
+
+    @Override
+    public void addProducts(StockManifest manifest) {
+        compactionLock.readLock().lock();
+        try {
+            for (Barcode barcode : Barcode.values()) {
+                for (Quality quality : QUALITIES) {
+                    int quantity = manifest.getQuantity(barcode, quality);
+                    if (quantity > 0) {
+                        journal.recordAdded(barcode, quality, quantity);
+                    }
+                }
+            }
+            try {
+                inventory.addProducts(manifest);
+            } catch (RuntimeException e) {
+                for (Barcode barcode : Barcode.values()) {
+                    for (Quality quality : QUALITIES) {
+                        int quantity = manifest.getQuantity(barcode, quality);
+                        if (quantity > 0) {
+                            retract(barcode, quality, quantity, e);
+                        }
+                    }
+                }
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+        compactIfNeeded();
+    }
+
+    @Override
+    public boolean existsProduct(Barcode barcode) {
+        return inventory.existsProduct(barcode);
+    }
+
+    @Override
+    public List<Product> removeProduct(Barcode barcode) {
+        List<Product> removed;
+        compactionLock.readLock().lock();
+        try {
+            removed = inventory.removeProduct(barcode);
+            recordRemoved(barcode, removed);
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+        compactIfNeeded();
+        return removed;
+    }
+
+    @Override
+    public List<Product> removeProduct(Barcode barcode, int quantity)
+            throws FailedTransactionException {
+        List<Product> removed;
+        compactionLock.readLock().lock();
+        try {
+            removed = inventory.removeProduct(barcode, quantity);
+            recordRemoved(barcode, removed);
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+        compactIfNeeded();
+        return removed;
+    }
+
+    @Override
+    public List<Product> getAllProducts() {
+        return inventory.getAllProducts();
+    }
+
+    @Override
+    public InventoryView view() {
+        return inventory.view();
+    }
+
+    /**
+     * Writes every pending change to the journal.
+     * @throws IOException if the changes cannot be written.
+     */
+    public void flush() throws IOException {
+        journal.flush();
+    }
+
+    /**
+     * Saves the current stock as a new snapshot and empties the journal.
+     * <p>
+     * The snapshot replaces the old one atomically before the journal is emptied, and records the
+     * journal's next generation. If the program stops between the two,
+     * the old journal is recognised as already compacted and skipped when the inventory is next
+     * opened.
+     * @throws IOException if the snapshot cannot be saved or the journal cannot be emptied.
+     */
+    public void compact() throws IOException {
+        compactionLock.writeLock().lock();
+        try {
+            journal.flush();
+            long nextGeneration = journal.getGeneration() + 1;
+            snapshotter.save(snapshotFilename, inventory, nextGeneration);
+            journal.reset(nextGeneration);
+        } finally {
+            compactionLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes every pending change to the journal and closes it.
+     * @throws IOException if the changes cannot be written or the journal cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    /** Private Helper Methods **/
+
+    /**
+     * Journals products which have been removed from the wrapped inventory, putting them back if
+     * the journal cannot be written.
+     */
+    private void recordRemoved(Barcode barcode, List<Product> removed) {
+        int[] counts = new int[QUALITIES.length];
+        for (Product product : removed) {
+            counts[product.getQuality().ordinal()]++;
+        }
+        try {
+            for (Quality quality : QUALITIES) {
+                if (counts[quality.ordinal()] > 0) {
+                    journal.recordRemoved(barcode, quality, counts[quality.ordinal()]);
+                }
+            }
+        } catch (IOException e) {
+            for (Product product : removed) {
+                inventory.addProduct(barcode, product.getQuality());
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Journals that an addition which was journaled did not happen after all.
+     */
+    private void retract(Barcode barcode, Quality quality, int quantity, Exception cause) {
+        try {
+            journal.recordRemoved(barcode, quality, quantity);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private void compactIfNeeded() {
+        try {
+            if (journal.size() > compactionThresholdBytes) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static StockManifest toManifest(long[] counts) throws IOException {
+        StockManifest manifest = new StockManifest();
+        for (Barcode barcode : Barcode.values()) {
+            for (Quality quality : QUALITIES) {
+                long count = counts[slot(barcode, quality)];
+                if (count < 0 || count > Integer.MAX_VALUE) {
+                    throw new IOException("Journal does not match snapshot for "
+                            + barcode.getDisplayName() + " *" + quality + "*");
+                }
+                manifest.add(barcode, quality, (int) count);
+            }
+        }
+        return manifest;
+    }
+
+    private static int slot(Barcode barcode, Quality quality) {
+        return barcode.ordinal() * QUALITIES.length + quality.ordinal();
+    }
+}
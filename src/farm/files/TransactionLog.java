@@ -0,0 +1,645 @@
+package farm.files;
+
+import farm.customer.Customer;
+import farm.inventory.product.Product;
+import farm.inventory.product.ProductCatalog;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.promotion.BundleDiscount;
+import farm.sales.promotion.PercentageDiscount;
+import farm.sales.promotion.PromotionEngine;
+import farm.sales.promotion.PromotionRule;
+import farm.sales.promotion.QualityTierDiscount;
+import farm.sales.transaction.CategorisedTransaction;
+import farm.sales.transaction.SpecialSaleTransaction;
+import farm.sales.transaction.Transaction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent, append-only log of completed transactions, kept as a directory of segment files.
+ * <p>
+ * Each checkout is appended to the current segment as a single record. Once a segment reaches
+ * its size limit it is sealed with a small footer index and a new segment is started, so no
+ * file grows without bound and sealed segments are never written again. The files look like:
+ * <pre>
+ * segment: header, record*, [footer, trailer]
+ * header:  magic (int), segment number (int)
+ * record:  length (int), CRC32 of body (int), body
+ * body:    total (int), type count (byte), [barcode (byte), quantity (int), earnings (int)]*,
+ *          kind (byte), phone (int), name (string), address (string),
+ *          purchase count (int), [barcode (byte), quality (byte)]*,
+ *          rule count (byte), rule*                         (special sales only)
+ * footer:  record count (int), gross earnings (long), products sold (long),
+ *          highest total (int), offset of highest (int), offset of last (int),
+ *          [quantity (long), earnings (long)] per product type, product type count (int)
+ * trailer: offset of footer (int), footer magic (int)
+ * </pre>
+ * Strings are written as a length (int) followed by UTF-8 bytes.
+ * <p>
+ * Statistics are answered from the footers of sealed segments, plus an index of the current
+ * segment kept in memory, so they never read a record. Individual transactions are read back
+ * through memory-mapped buffers, decoding only the single record asked for. A recreated
+ * transaction has a new customer with the same details as the original, and is finalised with
+ * the same purchases.
+ * <p>
+ * Records are written straight to the file, but only forced to disk when a segment is sealed
+ * or on {@link TransactionLog#flush()}. A new segment's header is forced as soon as it is
+ * started. After a crash, the current segment is scanned and any record which was only partly
+ * written is discarded, and a current segment whose header never reached the disk is started
+ * again.
+ * <p>
+ * All methods are safe to call from multiple threads.
+ */
+public class TransactionLog implements AutoCloseable {
+    /** The default size limit of each segment, 4MB. */
+    public static final int DEFAULT_SEGMENT_BYTES = 4 << 20;
+
+    private static final int MAGIC = 0x4654584C; // "FTXL"
+    private static final int FOOTER_MAGIC = 0x46545846; // "FTXF"
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int TRAILER_BYTES = 2 * Integer.BYTES;
+    private static final String SEGMENT_FORMAT = "transactions-%08d.seg";
+    private static final String SEGMENT_GLOB = "transactions-*.seg";
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+
+    private static final byte BASIC = 0;
+    private static final byte CATEGORISED = 1;
+    private static final byte SPECIAL_SALE = 2;
+    private static final byte PERCENTAGE = 0;
+    private static final byte BUNDLE = 1;
+    private static final byte QUALITY_TIER = 2;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final List<Segment> segments = new ArrayList<>();
+    private FileChannel channel;
+
+    /**
+     * Opens the log in the specified directory, with segments of up to 4MB.
+     * @param directory the directory holding the segment files, created if it does not exist.
+     * @throws IOException if the log cannot be opened, or a segment is not valid.
+     */
+    public TransactionLog(String directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Opens the log in the specified directory.
+     * <p>
+     * Any existing segments are indexed from their footers, and the last segment is recovered
+     * if it was not sealed. A record larger than the size limit is given a segment of its own.
+     * @param directory the directory holding the segment files, created if it does not exist.
+     * @param segmentBytes the size limit of each segment, in bytes.
+     * @throws IOException if the log cannot be opened, or a segment is not valid.
+     * @throws IllegalArgumentException if the size limit cannot fit a footer.
+     */
+    public TransactionLog(String directory, int segmentBytes) throws IOException {
+        if (segmentBytes < HEADER_BYTES + footerBytes() + TRAILER_BYTES) {
+            throw new IllegalArgumentException("Segments are too small to hold a footer.");
+        }
+        this.directory = Path.of(directory);
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(this.directory);
+
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> files = Files.list(this.directory)) {
+            files.filter(path -> path.getFileSystem().getPathMatcher("glob:" + SEGMENT_GLOB)
+                    .matches(path.getFileName())).sorted().forEach(paths::add);
+        }
+        for (int i = 0; i < paths.size(); i++) {
+            if (i == paths.size() - 1 && Segment.isTorn(paths.get(i))) {
+                // started just before a crash, so it holds no records; started again below
+                Files.delete(paths.get(i));
+                FileSync.forceDirectory(this.directory);
+                break;
+            }
+            Segment segment = new Segment(i, paths.get(i));
+            if (!segment.readFooter()) {
+                if (i != paths.size() - 1) {
+                    throw new IOException("Segment " + paths.get(i) + " was never sealed");
+                }
+                segment.recover();
+            }
+            segments.add(segment);
+        }
+        if (segments.isEmpty() || segments.getLast().sealed) {
+            startSegment();
+        } else {
+            Segment current = segments.getLast();
+            channel = FileChannel.open(current.path, StandardOpenOption.WRITE);
+            channel.position(current.end);
+        }
+    }
+
+    /**
+     * Appends a completed transaction to the log, sealing the current segment and starting a
+     * new one if the transaction does not fit.
+     * <p>
+     * Transactions are logged as one of the three kinds of transaction in
+     * {@code farm.sales.transaction}, whichever they are an instance of.
+     * @param transaction the finalised transaction to log.
+     * @throws IOException if the transaction cannot be written.
+     * @throws IllegalArgumentException if the transaction has not been finalised.
+     */
+    public synchronized void append(Transaction transaction) throws IOException {
+        if (!transaction.isFinalised()) {
+            throw new IllegalArgumentException("Only finalised transactions can be logged.");
+        }
+        byte[] body = encode(transaction);
+        int recordBytes = RECORD_HEADER_BYTES + body.length;
+        Segment current = segments.getLast();
+        if (current.recordCount > 0
+                && current.end + recordBytes + footerBytes() + TRAILER_BYTES > segmentBytes) {
+            seal(current);
+            startSegment();
+            current = segments.getLast();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer record = ByteBuffer.allocate(recordBytes)
+                .putInt(body.length).putInt((int) crc.getValue()).put(body).flip();
+        writeFully(record, current.end);
+        current.index(current.end, ByteBuffer.wrap(body));
+        current.end += recordBytes;
+    }
+
+    /**
+     * Forces every record appended so far to disk.
+     * @throws IOException if the records cannot be forced to disk.
+     */
+    public synchronized void flush() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Retrieves the number of segment files making up the log.
+     * @return the number of segments, including the current one.
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Calculates the number of transactions logged.
+     * @return the number of transactions in total.
+     */
+    public synchronized int getTotalTransactionsMade() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.recordCount;
+        }
+        return (int) count;
+    }
+
+    /**
+     * Calculates the gross earnings, i.e. total income, from all logged transactions, as
+     * reported by each transaction's {@link Transaction#getTotal()}.
+     * @return the gross earnings from all transactions, in cents.
+     */
+    public synchronized long getGrossEarnings() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.grossEarnings;
+        }
+        return total;
+    }
+
+    /**
+     * Calculates the gross earnings from all logged sales of a particular product type, as
+     * defined by {@link farm.sales.TransactionHistory#getGrossEarnings(Barcode)}.
+     * @param type the Barcode of the item of interest.
+     * @return the gross earnings from all sales of the product type, in cents.
+     */
+    public synchronized long getGrossEarnings(Barcode type) {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.earnings[type.ordinal()];
+        }
+        return total;
+    }
+
+    /**
+     * Calculates the number of products sold over all logged transactions.
+     * @return the total number of products sold.
+     */
+    public synchronized long getTotalProductsSold() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.productsSold;
+        }
+        return total;
+    }
+
+    /**
+     * Calculates the number of products of a particular type sold over all logged transactions.
+     * @param type the Barcode for the product of interest.
+     * @return the total number of products sold, for that particular product.
+     */
+    public synchronized long getTotalProductsSold(Barcode type) {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.quantities[type.ordinal()];
+        }
+        return total;
+    }
+
+    /**
+     * Reads back the most recently logged transaction.
+     * @return the most recent transaction.
+     * @throws NoSuchElementException if no transactions have been logged.
+     * @throws IOException if the transaction cannot be read.
+     */
+    public synchronized Transaction getLastTransaction() throws IOException {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            if (segment.recordCount > 0) {
+                return segment.read(segment.lastOffset);
+            }
+        }
+        throw new NoSuchElementException();
+    }
+
+    /**
+     * Reads back the logged transaction with the highest reported total. If there are multiple,
+     * the one logged first is returned.
+     * @return the transaction with the highest gross earnings.
+     * @throws NoSuchElementException if no transactions have been logged.
+     * @throws IOException if the transaction cannot be read.
+     */
+    public synchronized Transaction getHighestGrossingTransaction() throws IOException {
+        Segment best = null;
+        for (Segment segment : segments) {
+            if (segment.recordCount > 0
+                    && (best == null || segment.highestTotal > best.highestTotal)) {
+                best = segment;
+            }
+        }
+        if (best == null) {
+            throw new NoSuchElementException();
+        }
+        return best.read(best.highestOffset);
+    }
+
+    /**
+     * Closes the log. The current segment is left unsealed, and is recovered when the log is
+     * next opened.
+     * @throws IOException if the log cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /** Private Helper Methods **/
+
+    private static int footerBytes() {
+        return Integer.BYTES + 2 * Long.BYTES + 3 * Integer.BYTES
+                + BARCODES.length * 2 * Long.BYTES + Integer.BYTES;
+    }
+
+    private void startSegment() throws IOException {
+        int number = segments.size();
+        Path path = directory.resolve(String.format(SEGMENT_FORMAT, number));
+        if (channel != null) {
+            channel.close();
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+        writeFully(ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(number).flip(), 0);
+        channel.force(true);
+        FileSync.forceDirectory(directory);
+        Segment segment = new Segment(number, path);
+        segment.end = HEADER_BYTES;
+        segments.add(segment);
+    }
+
+    private void seal(Segment segment) throws IOException {
+        ByteBuffer footer = ByteBuffer.allocate(footerBytes() + TRAILER_BYTES);
+        footer.putInt(segment.recordCount).putLong(segment.grossEarnings)
+                .putLong(segment.productsSold).putInt(segment.highestTotal)
+                .putInt(segment.highestOffset).putInt(segment.lastOffset);
+        for (int id = 0; id < BARCODES.length; id++) {
+            footer.putLong(segment.quantities[id]).putLong(segment.earnings[id]);
+        }
+        footer.putInt(BARCODES.length);
+        footer.putInt(segment.end).putInt(FOOTER_MAGIC).flip();
+        writeFully(footer, segment.end);
+        channel.force(true);
+        segment.sealed = true;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static byte[] encode(Transaction transaction) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(transaction.getTotal());
+
+        int[] quantities = new int[BARCODES.length];
+        int[] subtotals = new int[BARCODES.length];
+        for (Product purchase : transaction.getPurchases()) {
+            int id = purchase.getBarcode().ordinal();
+            quantities[id]++;
+            subtotals[id] += purchase.getBasePrice();
+        }
+        int types = 0;
+        for (int quantity : quantities) {
+            types += quantity > 0 ? 1 : 0;
+        }
+        out.writeByte(types);
+        for (Barcode type : Barcode.values()) {
+            int id = type.ordinal();
+            if (quantities[id] > 0) {
+                out.writeByte(id);
+                out.writeInt(quantities[id]);
+                out.writeInt(transaction instanceof CategorisedTransaction catSale
+                        ? catSale.getPurchaseSubtotal(type) : subtotals[id]);
+            }
+        }
+
+        byte kind = transaction instanceof SpecialSaleTransaction ? SPECIAL_SALE
+                : transaction instanceof CategorisedTransaction ? CATEGORISED : BASIC;
+        out.writeByte(kind);
+        Customer customer = transaction.getAssociatedCustomer();
+        out.writeInt(customer.getPhoneNumber());
+        writeString(out, customer.getName());
+        writeString(out, customer.getAddress());
+        out.writeInt(transaction.getPurchases().size());
+        for (Product purchase : transaction.getPurchases()) {
+            out.writeByte(purchase.getBarcode().ordinal());
+            out.writeByte(purchase.getQuality().ordinal());
+        }
+        if (transaction instanceof SpecialSaleTransaction specSale) {
+            List<PromotionRule> rules = specSale.getPromotions().getRules();
+            out.writeByte(rules.size());
+            for (PromotionRule rule : rules) {
+                switch (rule) {
+                    case PercentageDiscount percentage -> {
+                        out.writeByte(PERCENTAGE);
+                        out.writeByte(percentage.barcode().ordinal());
+                        out.writeInt(percentage.percent());
+                    }
+                    case BundleDiscount bundle -> {
+                        out.writeByte(BUNDLE);
+                        out.writeByte(bundle.barcode().ordinal());
+                        out.writeInt(bundle.buy());
+                        out.writeInt(bundle.free());
+                    }
+                    case QualityTierDiscount tier -> {
+                        out.writeByte(QUALITY_TIER);
+                        out.writeByte(tier.barcode().ordinal());
+                        out.writeByte(tier.quality().ordinal());
+                        out.writeInt(tier.percent());
+                    }
+                }
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Transaction decode(ByteBuffer body) {
+        body.getInt(); // total
+        int types = body.get();
+        body.position(body.position() + types * (Byte.BYTES + 2 * Integer.BYTES));
+        byte kind = body.get();
+        int phone = body.getInt();
+        String name = readString(body);
+        String address = readString(body);
+        Customer customer = new Customer(name, phone, address);
+        int purchases = body.getInt();
+        for (int i = 0; i < purchases; i++) {
+            Barcode barcode = BARCODES[body.get()];
+            customer.getCart().addProduct(ProductCatalog.getProduct(barcode, QUALITIES[body.get()]));
+        }
+
+        Transaction transaction = switch (kind) {
+            case CATEGORISED -> new CategorisedTransaction(customer);
+            case SPECIAL_SALE -> decodeSpecialSale(customer, body);
+            default -> new Transaction(customer);
+        };
+        transaction.finalise();
+        return transaction;
+    }
+
+    private static Transaction decodeSpecialSale(Customer customer, ByteBuffer body) {
+        int ruleCount = body.get();
+        List<PromotionRule> rules = new ArrayList<>(ruleCount);
+        // kept in the order they were given, as they are shown by SpecialSaleTransaction#toString
+        Map<Barcode, Integer> percentages = new LinkedHashMap<>();
+        for (int i = 0; i < ruleCount; i++) {
+            byte ruleKind = body.get();
+            Barcode barcode = BARCODES[body.get()];
+            switch (ruleKind) {
+                case PERCENTAGE -> {
+                    PercentageDiscount percentage = new PercentageDiscount(barcode, body.getInt());
+                    percentages.put(barcode, percentage.percent());
+                    rules.add(percentage);
+                }
+                case BUNDLE -> rules.add(new BundleDiscount(barcode, body.getInt(), body.getInt()));
+                default -> rules.add(new QualityTierDiscount(barcode, QUALITIES[body.get()],
+                        body.getInt()));
+            }
+        }
+        if (rules.size() == percentages.size()) {
+            return new SpecialSaleTransaction(customer, percentages);
+        }
+        return new SpecialSaleTransaction(customer, PromotionEngine.compile(rules));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * One segment file, and the index of the records in it.
+     */
+    private static class Segment {
+        private final int number;
+        private final Path path;
+        private boolean sealed = false;
+        private int end;
+        private int recordCount = 0;
+        private long grossEarnings = 0;
+        private long productsSold = 0;
+        private int highestTotal = 0;
+        private int highestOffset = -1;
+        private int lastOffset = -1;
+        // indexed by barcode ordinal
+        private final long[] quantities = new long[BARCODES.length];
+        private final long[] earnings = new long[BARCODES.length];
+        // mapped once sealed, since the file no longer changes
+        private MappedByteBuffer mapped;
+
+        private Segment(int number, Path path) {
+            this.number = number;
+            this.path = path;
+        }
+
+        /**
+         * Adds a record to the in-memory index.
+         * @param offset the offset of the record in the segment.
+         * @param body the body of the record, positioned at its start.
+         */
+        private void index(int offset, ByteBuffer body) {
+            int total = body.getInt();
+            if (recordCount == 0 || total > highestTotal) {
+                highestTotal = total;
+                highestOffset = offset;
+            }
+            int types = body.get();
+            for (int i = 0; i < types; i++) {
+                int id = body.get();
+                int quantity = body.getInt();
+                quantities[id] += quantity;
+                earnings[id] += body.getInt();
+                productsSold += quantity;
+            }
+            grossEarnings += total;
+            lastOffset = offset;
+            recordCount++;
+        }
+
+        /**
+         * Reads the footer index of a sealed segment.
+         * @return true if the segment was sealed, else false.
+         */
+        private boolean readFooter() throws IOException {
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = file.size();
+                checkHeader(file, size);
+                if (size < HEADER_BYTES + footerBytes() + TRAILER_BYTES) {
+                    return false;
+                }
+                ByteBuffer trailer = file.map(FileChannel.MapMode.READ_ONLY,
+                        size - TRAILER_BYTES, TRAILER_BYTES);
+                int footerOffset = trailer.getInt();
+                if (trailer.getInt() != FOOTER_MAGIC
+                        || footerOffset + footerBytes() + TRAILER_BYTES != size) {
+                    return false;
+                }
+                ByteBuffer footer = file.map(FileChannel.MapMode.READ_ONLY, footerOffset,
+                        footerBytes());
+                recordCount = footer.getInt();
+                grossEarnings = footer.getLong();
+                productsSold = footer.getLong();
+                highestTotal = footer.getInt();
+                highestOffset = footer.getInt();
+                lastOffset = footer.getInt();
+                for (int id = 0; id < BARCODES.length; id++) {
+                    quantities[id] = footer.getLong();
+                    earnings[id] = footer.getLong();
+                }
+                if (footer.getInt() != BARCODES.length) {
+                    throw new IOException("Segment " + path + " was written for other product types");
+                }
+                end = footerOffset;
+                sealed = true;
+                return true;
+            }
+        }
+
+        /**
+         * Indexes every complete record of an unsealed segment, discarding anything after the
+         * last complete record.
+         */
+        private void recover() throws IOException {
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+                int offset = HEADER_BYTES;
+                CRC32 crc = new CRC32();
+                while (buffer.limit() - offset >= RECORD_HEADER_BYTES) {
+                    int length = buffer.getInt(offset);
+                    if (length < 0 || buffer.limit() - offset - RECORD_HEADER_BYTES < length) {
+                        break;
+                    }
+                    ByteBuffer body = buffer.slice(offset + RECORD_HEADER_BYTES, length);
+                    crc.reset();
+                    crc.update(body.duplicate());
+                    if ((int) crc.getValue() != buffer.getInt(offset + Integer.BYTES)) {
+                        break;
+                    }
+                    index(offset, body);
+                    offset += RECORD_HEADER_BYTES + length;
+                }
+                end = offset;
+                file.truncate(end);
+            }
+        }
+
+        /**
+         * Reads back the transaction recorded at an offset.
+         * @param offset the offset of the record in the segment.
+         * @return the recreated transaction.
+         */
+        private Transaction read(int offset) throws IOException {
+            MappedByteBuffer buffer = mapped;
+            if (buffer == null) {
+                try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+                    buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, end);
+                }
+                if (sealed) {
+                    mapped = buffer;
+                }
+            }
+            int length = buffer.getInt(offset);
+            return decode(buffer.slice(offset + RECORD_HEADER_BYTES, length));
+        }
+
+        /**
+         * Determines whether a segment file was created but its header never reached the disk,
+         * as when the log crashed just after starting a segment.
+         * @param path the segment file.
+         * @return true if the file is shorter than a header, or its header is blank.
+         */
+        private static boolean isTorn(Path path) throws IOException {
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                if (file.size() < HEADER_BYTES || file.read(header, 0) < HEADER_BYTES) {
+                    return true;
+                }
+                return header.getInt(0) == 0 && header.getInt(Integer.BYTES) == 0;
+            }
+        }
+
+        private void checkHeader(FileChannel file, long size) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            if (size < HEADER_BYTES || file.read(header, 0) < HEADER_BYTES
+                    || header.getInt(0) != MAGIC || header.getInt(Integer.BYTES) != number) {
+                throw new IOException("Segment " + path + " is not a transaction log segment");
+            }
+        }
+    }
+}
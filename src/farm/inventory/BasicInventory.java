@@ -6,23 +6,79 @@ import farm.inventory.product.*;
 import farm.inventory.product.data.Barcode;
 import farm.inventory.product.data.Quality;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 /**
  * A very basic inventory that both stores and handles products individually.
  * <p>
  * Only supports operation on single Products at a time.
  * <p>
+ * Products are kept in the order they were added. Alongside that list, the inventory keeps an
+ * index of the positions of each product type and quality, oldest first, so checking for or
+ * removing a product never requires a scan. Removed products leave an empty position behind
+ * rather than shifting the list, and the list is compacted once half of it is empty.
+ * <p>
+ * Which product is removed is decided by each product type's {@link PickingPolicy}; by default,
+ * the product that was added first.
  * @stage2
  */
 public class BasicInventory implements Inventory {
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+
+    // stocked products in the order they were added; removed products leave a null behind
     private final ArrayList<Product> stockedProducts = new ArrayList<>();
+    // positions in stockedProducts of each product type and quality, oldest first
+    private final List<Deque<Integer>> positions = new ArrayList<>();
+    private final PickingPolicy[] pickingPolicies;
+    private final InventoryView view = new PositionView();
+    private int removedCount = 0;
+    private int modificationCount = 0;
+
+    /**
+     * Constructor for the BasicInventory
+     */
+    public BasicInventory() {
+        this(PickingPolicy.FIFO);
+    }
+
+    /**
+     * Creates an empty basic inventory.
+     * @param defaultPolicy the picking policy used for every product type, until changed with
+     *                      {@link BasicInventory#setPickingPolicy(Barcode, PickingPolicy)}.
+     */
+    public BasicInventory(PickingPolicy defaultPolicy) {
+        for (int i = 0; i < BARCODES.length * QUALITIES.length; i++) {
+            positions.add(new ArrayDeque<>());
+        }
+        pickingPolicies = new PickingPolicy[BARCODES.length];
+        Arrays.fill(pickingPolicies, Objects.requireNonNull(defaultPolicy));
+    }
+
+    /**
+     * Sets the policy used to choose which product of a type is removed first.
+     * @param barcode the product type.
+     * @param policy the picking policy for that type.
+     */
+    public void setPickingPolicy(Barcode barcode, PickingPolicy policy) {
+        pickingPolicies[barcode.ordinal()] = Objects.requireNonNull(policy);
+    }
+
+    /**
+     * Retrieves the policy used to choose which product of a type is removed first.
+     * @param barcode the product type.
+     * @return the picking policy for that type.
+     */
+    public PickingPolicy getPickingPolicy(Barcode barcode) {
+        return pickingPolicies[barcode.ordinal()];
+    }
 
     @Override
     public void addProduct(Barcode barcode, Quality quality) {
-        stockedProducts.add(createProduct(barcode, quality));
+        Product product = ProductCatalog.getProduct(barcode, quality);
+        getPositions(barcode, quality).addLast(stockedProducts.size());
+        stockedProducts.add(product);
+        modificationCount++;
     }
 
 
@@ -45,23 +101,45 @@ public class BasicInventory implements Inventory {
 
     @Override
     public boolean existsProduct(Barcode barcode) {
-        for (Product product : stockedProducts) {
-            if (product.getBarcode() == barcode) {
+        if (barcode == null) {
+            return false;
+        }
+        for (Quality quality : QUALITIES) {
+            if (!getPositions(barcode, quality).isEmpty()) {
                 return true;
             }
         }
         return false;
     }
     
+    /**
+     * Removes a product with corresponding barcode from the inventory, chosen by the product
+     * type's {@link PickingPolicy}.
+     * @param barcode The barcode of the product to be removed.
+     * @return A list containing the removed product if it exists, else an empty list.
+     */
     @Override
     public List<Product> removeProduct(Barcode barcode) {
-        for (Product product : stockedProducts) {
-            if (product.getBarcode() == barcode) {
-                stockedProducts.remove(product);
-                return List.of(product);
-            }
+        if (barcode == null) {
+            return Collections.emptyList();
         }
-        return Collections.emptyList();
+        long[] oldestArrivals = new long[QUALITIES.length];
+        for (int i = 0; i < QUALITIES.length; i++) {
+            Integer oldest = getPositions(barcode, QUALITIES[i]).peekFirst();
+            oldestArrivals[i] = oldest == null ? PickingPolicy.NONE : oldest;
+        }
+        int chosen = getPickingPolicy(barcode).choose(oldestArrivals);
+        if (chosen == PickingPolicy.NONE_STOCKED) {
+            return Collections.emptyList();
+        }
+        int position = getPositions(barcode, QUALITIES[chosen]).removeFirst();
+        Product product = stockedProducts.set(position, null);
+        removedCount++;
+        modificationCount++;
+        if (removedCount > stockedProducts.size() / 2) {
+            compact();
+        }
+        return List.of(product);
     }
     
     /**
@@ -81,17 +159,115 @@ public class BasicInventory implements Inventory {
 
     @Override
     public List<Product> getAllProducts() {
-        return new ArrayList<>(stockedProducts);
+        List<Product> allProducts = new ArrayList<>(stockedProducts.size() - removedCount);
+        for (Product product : stockedProducts) {
+            if (product != null) {
+                allProducts.add(product);
+            }
+        }
+        return allProducts;
     }
 
-    private Product createProduct(Barcode barcode, Quality quality) {
-        return switch (barcode) {
-            case Barcode.EGG -> new Egg(quality);
-            case Barcode.MILK -> new Milk(quality);
-            case Barcode.JAM -> new Jam(quality);
-            case Barcode.WOOL -> new Wool(quality);
-            case Barcode.BREAD -> new Bread(quality);
-            case Barcode.COFFEE -> new Coffee(quality);
-        };
+    /**
+     * Retrieves a read-only view of the stock currently held in the inventory.
+     * <p>
+     * Iterating over the view visits products in the order they were added. The view is
+     * fail-fast; iterating over it while the inventory is modified throws a
+     * {@link ConcurrentModificationException}. Products are counted directly from the index,
+     * without a scan.
+     * @return a live, read-only view of the inventory.
+     */
+    @Override
+    public InventoryView view() {
+        return view;
+    }
+
+    /** Private Helper Methods **/
+
+    private Deque<Integer> getPositions(Barcode barcode, Quality quality) {
+        return positions.get(barcode.ordinal() * QUALITIES.length + quality.ordinal());
+    }
+
+    /**
+     * Removes the empty positions left by removed products, and rebuilds the index to match.
+     * Products keep their relative order.
+     */
+    private void compact() {
+        int next = 0;
+        for (Product product : stockedProducts) {
+            if (product != null) {
+                stockedProducts.set(next++, product);
+            }
+        }
+        stockedProducts.subList(next, stockedProducts.size()).clear();
+        removedCount = 0;
+
+        for (Deque<Integer> typePositions : positions) {
+            typePositions.clear();
+        }
+        for (int i = 0; i < stockedProducts.size(); i++) {
+            Product product = stockedProducts.get(i);
+            getPositions(product.getBarcode(), product.getQuality()).addLast(i);
+        }
+    }
+
+    /**
+     * A view which counts stock from the index of positions, and iterates over the stocked
+     * products in the order they were added.
+     */
+    private class PositionView implements InventoryView {
+
+        @Override
+        public int getQuantity(Barcode barcode) {
+            if (barcode == null) {
+                return 0;
+            }
+            int quantity = 0;
+            for (Quality quality : QUALITIES) {
+                quantity += getPositions(barcode, quality).size();
+            }
+            return quantity;
+        }
+
+        @Override
+        public int getQuantity(Barcode barcode, Quality quality) {
+            if (barcode == null) {
+                return 0;
+            }
+            return getPositions(barcode, quality).size();
+        }
+
+        @Override
+        public int getTotalQuantity() {
+            return stockedProducts.size() - removedCount;
+        }
+
+        @Override
+        public Iterator<Product> iterator() {
+            return new Iterator<>() {
+                private final int expectedModificationCount = modificationCount;
+                private int position = 0;
+
+                @Override
+                public boolean hasNext() {
+                    if (modificationCount != expectedModificationCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    while (position < stockedProducts.size()
+                            && stockedProducts.get(position) == null) {
+                        position++;
+                    }
+                    return position < stockedProducts.size();
+                }
+
+                @Override
+                public Product next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return stockedProducts.get(position++);
+                }
+            };
+        }
     }
-}
+}
\ No newline at end of file
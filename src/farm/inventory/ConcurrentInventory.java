@@ -0,0 +1,385 @@
+package farm.inventory;
+
+import farm.core.FailedTransactionException;
+import farm.core.InvalidStockRequestException;
+import farm.inventory.product.Product;
+import farm.inventory.product.ProductCatalog;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.inventory.timing.TimingWheel;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A fancy inventory which can safely be shared between threads, such as several checkout lanes
+ * selling stock while harvests are being stocked.
+ * <p>
+ * Stock is kept as a count for each {@link Barcode} and {@link Quality} pair, with every count held
+ * in its own atomic slot. Each barcode's slots are padded onto cache lines of their own, so
+ * operations on different barcodes never contend with each other, not even through false sharing,
+ * and operations on the same barcode never block; they simply retry if another thread changed the
+ * count first. Each unit removed is claimed by exactly one caller, so two lanes can never both take
+ * the last unit of a product.
+ * <p>
+ * As with a {@link CountingInventory}, the highest quality products are always removed first.
+ * <p>
+ * Stock can also be reserved for a customer before it is sold (see {@link ReservableInventory}).
+ * Reservations claim stock from the same counters as removals, so lanes holding reservations never
+ * block one another. Reservations which are neither committed nor released expire after a timeout,
+ * tracked on a {@link TimingWheel} so that expiring them never requires a scan of every
+ * reservation. Expired reservations are swept by whichever call first notices that a tick of the
+ * wheel has passed, whether it reserves, commits, releases, removes or reads stock, so expired
+ * stock never stays hidden just because no lane is reserving that product.
+ */
+public class ConcurrentInventory implements ReservableInventory {
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+    private static final Duration DEFAULT_RESERVATION_TIMEOUT = Duration.ofMinutes(15);
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SIZE = 1024;
+
+    // ints between the starts of neighbouring barcodes' slots; 128 bytes keeps every barcode off
+    // the cache lines of the others, including the line a CPU may prefetch alongside
+    private static final int STRIPE = 32;
+
+    // the first stripe is left empty, keeping the counts off the array header's cache line
+    private final AtomicIntegerArray stockedCounts =
+            new AtomicIntegerArray((BARCODES.length + 1) * STRIPE);
+    private final Clock clock;
+    private final long reservationTimeoutMillis;
+    private final TimingWheel<Reservation> reservationExpiries;
+    // the earliest time at which the next tick of the wheel may have reservations due
+    private volatile long nextExpiryMillis;
+    private final InventoryView view = new SweepingView();
+
+    /**
+     * Creates an empty concurrent inventory whose reservations expire after fifteen minutes.
+     */
+    public ConcurrentInventory() {
+        this(DEFAULT_RESERVATION_TIMEOUT, Clock.systemUTC());
+    }
+
+    /**
+     * Creates an empty concurrent inventory.
+     * @param reservationTimeout how long a reservation is held before it expires.
+     * @param clock the clock used to determine when reservations expire.
+     */
+    public ConcurrentInventory(Duration reservationTimeout, Clock clock) {
+        this.clock = clock;
+        this.reservationTimeoutMillis = reservationTimeout.toMillis();
+        this.reservationExpiries = new TimingWheel<>(TICK_MILLIS, WHEEL_SIZE, clock.millis());
+    }
+
+    @Override
+    public void addProduct(Barcode barcode, Quality quality) {
+        try {
+            addProduct(barcode, quality, 1);
+        } catch (InvalidStockRequestException ignored) {
+            // never thrown by a concurrent inventory
+        }
+    }
+
+    /**
+     * Adds multiple of the product with corresponding barcode to the inventory.
+     * @param barcode the barcode of the product to add.
+     * @param quality the quality of added product.
+     * @param quantity the amount of the product to add.
+     * @throws IllegalArgumentException if a negative quantity is provided.
+     */
+    @Override
+    public void addProduct(Barcode barcode, Quality quality, int quantity)
+            throws InvalidStockRequestException {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative.");
+        }
+        stockedCounts.addAndGet(slot(barcode, quality), quantity);
+    }
+
+    /**
+     * Adds every product listed in the given manifest to the inventory in a single pass.
+     * <p>
+     * Each count is updated atomically, but the manifest as a whole is not; other threads may
+     * see some of its products before the rest have been added.
+     * @param manifest the products to add.
+     */
+    @Override
+    public void addProducts(StockManifest manifest) {
+        for (Barcode barcode : Barcode.values()) {
+            for (Quality quality : QUALITIES) {
+                int quantity = manifest.getQuantity(barcode, quality);
+                if (quantity > 0) {
+                    stockedCounts.addAndGet(slot(barcode, quality), quantity);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean existsProduct(Barcode barcode) {
+        expireDueReservations();
+        return barcode != null && countAll(barcode) > 0;
+    }
+
+    /**
+     * Removes the highest quality product with corresponding barcode from the inventory.
+     * @param barcode The barcode of the product to be removed.
+     * @return A list containing the removed product if it exists, else an empty list.
+     */
+    @Override
+    public List<Product> removeProduct(Barcode barcode) {
+        try {
+            return removeProduct(barcode, 1);
+        } catch (FailedTransactionException ignored) {
+            // never thrown by a concurrent inventory
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Removes a given number of products with corresponding barcode from the inventory, choosing
+     * the highest quality products possible.
+     * <p>
+     * If there are not enough of a given product in the inventory it will return as many of said
+     * product as possible.
+     * @param barcode The barcode of the product to be removed.
+     * @param quantity The total amount of the product to remove from the inventory.
+     * @return A list containing the removed products, ordered from highest to lowest quality.
+     */
+    @Override
+    public List<Product> removeProduct(Barcode barcode, int quantity)
+            throws FailedTransactionException {
+        if (barcode == null || quantity <= 0) {
+            return Collections.emptyList();
+        }
+        expireDueReservations();
+        return toProducts(barcode, claimHighestQuality(barcode, quantity));
+    }
+
+    @Override
+    public Reservation reserve(Barcode barcode, int quantity) {
+        expireDueReservations();
+        int[] claimed = barcode == null || quantity <= 0
+                ? new int[QUALITIES.length] : claimHighestQuality(barcode, quantity);
+        Reservation reservation = new Reservation(barcode, claimed, toProducts(barcode, claimed));
+        if (reservation.getQuantity() > 0) {
+            // an empty reservation holds no stock, so there is nothing for it to return
+            reservation.setExpiry(reservationExpiries.schedule(reservation,
+                    clock.millis() + reservationTimeoutMillis));
+        }
+        return reservation;
+    }
+
+    @Override
+    public boolean commit(Reservation reservation) {
+        // a reservation past its deadline expires rather than being committed late
+        expireDueReservations();
+        return reservation.complete(Reservation.State.COMMITTED);
+    }
+
+    @Override
+    public boolean release(Reservation reservation) {
+        expireDueReservations();
+        return returnReserved(reservation);
+    }
+
+    @Override
+    public int expireReservations() {
+        return releaseExpired(clock.millis());
+    }
+
+    /**
+     * Retrieves the full stock currently held in the inventory.
+     * <p>
+     * The returned list is grouped by product type as per the order defined in {@link Barcode},
+     * and within each type ordered from highest to lowest quality. Each count is read
+     * individually, so the list may not reflect a single instant if the inventory is being
+     * modified at the same time.
+     * @return An organised list containing all products currently stored in the inventory.
+     */
+    @Override
+    public List<Product> getAllProducts() {
+        expireDueReservations();
+        List<Product> allProducts = new ArrayList<>();
+        for (Barcode type : Barcode.values()) {
+            for (int i = QUALITIES.length - 1; i >= 0; i--) {
+                Product product = ProductCatalog.getProduct(type, QUALITIES[i]);
+                allProducts.addAll(Collections.nCopies(count(type, QUALITIES[i]), product));
+            }
+        }
+        return allProducts;
+    }
+
+    /**
+     * Retrieves a read-only view of the stock currently held in the inventory.
+     * <p>
+     * Unlike the views of single-threaded inventories, this view is <em>weakly consistent</em>
+     * rather than fail-fast: iterating over it while other threads modify the inventory never
+     * throws, but may or may not reflect their changes. Tracking modifications for a fail-fast
+     * view would force every lane to update one shared counter.
+     * @return a live, read-only view of the inventory.
+     */
+    @Override
+    public InventoryView view() {
+        return view;
+    }
+
+    /**
+     * Get the quantity of a specific product in the inventory.
+     * @param barcode The barcode of the product.
+     * @return The amount of the corresponding product currently in the inventory.
+     */
+    public int getStockedQuantity(Barcode barcode) {
+        if (barcode == null) {
+            return 0;
+        }
+        expireDueReservations();
+        return countAll(barcode);
+    }
+
+    /**
+     * Get the quantity of a specific product of a given quality in the inventory.
+     * @param barcode The barcode of the product.
+     * @param quality The quality of the product.
+     * @return The amount of the corresponding product and quality currently in the inventory.
+     */
+    public int getStockedQuantity(Barcode barcode, Quality quality) {
+        expireDueReservations();
+        return count(barcode, quality);
+    }
+
+    /** Private Helper Methods **/
+
+    /**
+     * Reads a count without expiring reservations, for operations which have already done so.
+     */
+    private int count(Barcode barcode, Quality quality) {
+        if (barcode == null) {
+            return 0;
+        }
+        return stockedCounts.get(slot(barcode, quality));
+    }
+
+    private int countAll(Barcode barcode) {
+        int quantity = 0;
+        for (Quality quality : QUALITIES) {
+            quantity += stockedCounts.get(slot(barcode, quality));
+        }
+        return quantity;
+    }
+
+    /**
+     * Expires reservations if a tick of the wheel may have passed since they were last expired.
+     * Otherwise costs one read of the clock and one volatile read. Every public operation calls
+     * it exactly once, before reading or changing any count.
+     */
+    private void expireDueReservations() {
+        long now = clock.millis();
+        if (now >= nextExpiryMillis) {
+            releaseExpired(now);
+        }
+    }
+
+    private int releaseExpired(long now) {
+        int released = 0;
+        for (Reservation reservation : reservationExpiries.advance(now)) {
+            if (returnReserved(reservation)) {
+                released++;
+            }
+        }
+        nextExpiryMillis = (now / TICK_MILLIS + 1) * TICK_MILLIS;
+        return released;
+    }
+
+    private boolean returnReserved(Reservation reservation) {
+        if (!reservation.complete(Reservation.State.RELEASED)) {
+            return false;
+        }
+        for (Quality quality : QUALITIES) {
+            int count = reservation.getReservedCount(quality);
+            if (count > 0) {
+                stockedCounts.addAndGet(slot(reservation.getBarcode(), quality), count);
+            }
+        }
+        return true;
+    }
+
+    private static int slot(Barcode barcode, Quality quality) {
+        return (barcode.ordinal() + 1) * STRIPE + quality.ordinal();
+    }
+
+    /**
+     * Claims up to the requested amount of a product, highest quality first.
+     * @return the amount claimed of each quality, indexed by quality ordinal.
+     */
+    private int[] claimHighestQuality(Barcode barcode, int quantity) {
+        int[] claimed = new int[QUALITIES.length];
+        int remaining = quantity;
+        for (int i = QUALITIES.length - 1; i >= 0 && remaining > 0; i--) {
+            claimed[i] = claim(slot(barcode, QUALITIES[i]), remaining);
+            remaining -= claimed[i];
+        }
+        return claimed;
+    }
+
+    private static List<Product> toProducts(Barcode barcode, int[] counts) {
+        List<Product> products = new ArrayList<>();
+        for (int i = QUALITIES.length - 1; i >= 0; i--) {
+            if (counts[i] > 0) {
+                products.addAll(Collections.nCopies(counts[i],
+                        ProductCatalog.getProduct(barcode, QUALITIES[i])));
+            }
+        }
+        return products;
+    }
+
+    /**
+     * A weakly consistent view which expires due reservations once at the start of each query or
+     * iteration, then reads the counts directly.
+     */
+    private class SweepingView implements InventoryView {
+        private final InventoryView counts =
+                new CountedInventoryView(ConcurrentInventory.this::count, null);
+
+        @Override
+        public int getQuantity(Barcode barcode) {
+            expireDueReservations();
+            return counts.getQuantity(barcode);
+        }
+
+        @Override
+        public int getQuantity(Barcode barcode, Quality quality) {
+            expireDueReservations();
+            return counts.getQuantity(barcode, quality);
+        }
+
+        @Override
+        public int getTotalQuantity() {
+            expireDueReservations();
+            return counts.getTotalQuantity();
+        }
+
+        @Override
+        public Iterator<Product> iterator() {
+            expireDueReservations();
+            return counts.iterator();
+        }
+    }
+
+    /**
+     * Atomically takes up to the requested amount from a slot, retrying if another thread
+     * changes the slot in the meantime.
+     * @return the amount actually taken.
+     */
+    private int claim(int slot, int requested) {
+        while (true) {
+            int available = stockedCounts.get(slot);
+            int taken = Math.min(available, requested);
+            if (taken == 0 || stockedCounts.compareAndSet(slot, available, available - taken)) {
+                return taken;
+            }
+        }
+    }
+}
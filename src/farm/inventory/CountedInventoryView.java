@@ -0,0 +1,104 @@
+package farm.inventory;
+
+import farm.inventory.product.Product;
+import farm.inventory.product.ProductCatalog;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntSupplier;
+
+/**
+ * A view over an inventory which can report how many products of each type and quality it holds.
+ * <p>
+ * Iteration walks the counts directly, handing out the shared {@link ProductCatalog} instance
+ * once for every unit counted, so no products are copied or created.
+ */
+class CountedInventoryView implements InventoryView {
+
+    /**
+     * Reports the quantity of a product of a given quality held in an inventory.
+     */
+    @FunctionalInterface
+    interface StockCounter {
+        int count(Barcode barcode, Quality quality);
+    }
+
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+
+    private final StockCounter counter;
+    private final IntSupplier modificationCount;
+
+    /**
+     * Creates a fail-fast view over an inventory.
+     * @param counter reports the inventory's current stock counts.
+     * @param modificationCount reports how many times the inventory has been modified, or null if
+     *                          iterators should be weakly consistent rather than fail-fast.
+     */
+    CountedInventoryView(StockCounter counter, IntSupplier modificationCount) {
+        this.counter = counter;
+        this.modificationCount = modificationCount;
+    }
+
+    @Override
+    public int getQuantity(Barcode barcode) {
+        int quantity = 0;
+        for (Quality quality : QUALITIES) {
+            quantity += counter.count(barcode, quality);
+        }
+        return quantity;
+    }
+
+    @Override
+    public int getQuantity(Barcode barcode, Quality quality) {
+        return counter.count(barcode, quality);
+    }
+
+    @Override
+    public Iterator<Product> iterator() {
+        return new CountIterator();
+    }
+
+    private class CountIterator implements Iterator<Product> {
+        private final int expectedModificationCount =
+                modificationCount == null ? 0 : modificationCount.getAsInt();
+        private int barcodeIndex = 0;
+        private int qualityIndex = QUALITIES.length;
+        private int remaining = 0;
+
+        @Override
+        public boolean hasNext() {
+            checkForModification();
+            while (remaining == 0) {
+                if (--qualityIndex < 0) {
+                    qualityIndex = QUALITIES.length - 1;
+                    barcodeIndex++;
+                }
+                if (barcodeIndex >= BARCODES.length) {
+                    return false;
+                }
+                remaining = counter.count(BARCODES[barcodeIndex], QUALITIES[qualityIndex]);
+            }
+            return true;
+        }
+
+        @Override
+        public Product next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            remaining--;
+            return ProductCatalog.getProduct(BARCODES[barcodeIndex], QUALITIES[qualityIndex]);
+        }
+
+        private void checkForModification() {
+            if (modificationCount != null
+                    && modificationCount.getAsInt() != expectedModificationCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+}
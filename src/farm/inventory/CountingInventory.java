@@ -0,0 +1,203 @@
+package farm.inventory;
+
+import farm.core.FailedTransactionException;
+import farm.core.InvalidStockRequestException;
+import farm.inventory.product.*;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+import java.util.*;
+
+/**
+ * A fancy inventory which only keeps count of how many products of each type and quality it holds.
+ * <p>
+ * Rather than storing one product object per unit of stock, a counting inventory keeps a primitive
+ * count for every {@link Barcode} and {@link Quality} pair, in a single array indexed by the
+ * barcode's ordinal. Products are only handed out (from the
+ * {@link ProductCatalog}) as they leave the inventory, so adding or removing stock costs the same
+ * no matter how much is stocked.
+ * <p>
+ * Supports the same operations on multiple Products as a {@link FancyInventory}, including always
+ * removing the highest quality products first.
+ * <p>
+ * A {@link FancyInventory} keeps its stock as runs in arrival order, so that it can support other
+ * {@link PickingPolicy}s; its memory grows with the number of runs, and every addition may
+ * allocate one. A counting inventory gives up the choice of policy in return for a fixed-size
+ * array which is never reallocated, whatever is stocked. It is also the single-threaded model of
+ * the count-based inventories, such as {@link ConcurrentInventory} and
+ * {@link VersionedInventory}, which remove stock in the same order.
+ */
+public class CountingInventory implements Inventory {
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+
+    // one count per quality for each product type, indexed by slot(barcode, quality)
+    private final int[] stockedCounts = new int[BARCODES.length * QUALITIES.length];
+    private int modificationCount = 0;
+    private final InventoryView view = new CountedInventoryView(
+            this::count, () -> modificationCount);
+
+    @Override
+    public void addProduct(Barcode barcode, Quality quality) {
+        try {
+            addProduct(barcode, quality, 1);
+        } catch (InvalidStockRequestException ignored) {
+            // never thrown by a counting inventory
+        }
+    }
+
+    /**
+     * Adds multiple of the product with corresponding barcode to the inventory.
+     * @param barcode the barcode of the product to add.
+     * @param quality the quality of added product.
+     * @param quantity the amount of the product to add.
+     * @throws IllegalArgumentException if a negative quantity is provided.
+     */
+    @Override
+    public void addProduct(Barcode barcode, Quality quality, int quantity)
+            throws InvalidStockRequestException {
+        Objects.requireNonNull(barcode);
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative.");
+        }
+        stockedCounts[slot(barcode, quality)] += quantity;
+        modificationCount++;
+    }
+
+    /**
+     * Adds every product listed in the given manifest to the inventory in a single pass.
+     * @param manifest the products to add.
+     */
+    @Override
+    public void addProducts(StockManifest manifest) {
+        for (Barcode barcode : Barcode.values()) {
+            if (manifest.getQuantity(barcode) == 0) {
+                continue;
+            }
+            for (Quality quality : QUALITIES) {
+                stockedCounts[slot(barcode, quality)] += manifest.getQuantity(barcode, quality);
+            }
+        }
+        modificationCount++;
+    }
+
+    @Override
+    public boolean existsProduct(Barcode barcode) {
+        return getStockedQuantity(barcode) > 0;
+    }
+
+    /**
+     * Removes the highest quality product with corresponding barcode from the inventory.
+     * @param barcode The barcode of the product to be removed.
+     * @return A list containing the removed product if it exists, else an empty list.
+     */
+    @Override
+    public List<Product> removeProduct(Barcode barcode) {
+        try {
+            return removeProduct(barcode, 1);
+        } catch (FailedTransactionException ignored) {
+            // never thrown by a counting inventory
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Removes a given number of products with corresponding barcode from the inventory, choosing
+     * the highest quality products possible.
+     * <p>
+     * If there are not enough of a given product in the inventory it will return as many of said
+     * product as possible.
+     * @param barcode The barcode of the product to be removed.
+     * @param quantity The total amount of the product to remove from the inventory.
+     * @return A list containing the removed products, ordered from highest to lowest quality.
+     */
+    @Override
+    public List<Product> removeProduct(Barcode barcode, int quantity)
+            throws FailedTransactionException {
+        if (quantity <= 0 || !existsProduct(barcode)) {
+            return Collections.emptyList();
+        }
+        List<Product> removed =
+                new ArrayList<>(Math.min(quantity, getStockedQuantity(barcode)));
+        for (int i = QUALITIES.length - 1; i >= 0 && removed.size() < quantity; i--) {
+            int slot = slot(barcode, QUALITIES[i]);
+            int taken = Math.min(stockedCounts[slot], quantity - removed.size());
+            stockedCounts[slot] -= taken;
+            Product product = ProductCatalog.getProduct(barcode, QUALITIES[i]);
+            removed.addAll(Collections.nCopies(taken, product));
+        }
+        modificationCount++;
+        return removed;
+    }
+
+    /**
+     * Retrieves the full stock currently held in the inventory.
+     * <p>
+     * The returned list is grouped by product type as per the order defined in {@link Barcode},
+     * and within each type ordered from highest to lowest quality.
+     * @return An organised list containing all products currently stored in the inventory.
+     */
+    @Override
+    public List<Product> getAllProducts() {
+        List<Product> allProducts = new ArrayList<>();
+        for (Barcode type : Barcode.values()) {
+            for (int i = QUALITIES.length - 1; i >= 0; i--) {
+                Product product = ProductCatalog.getProduct(type, QUALITIES[i]);
+                allProducts.addAll(
+                        Collections.nCopies(stockedCounts[slot(type, QUALITIES[i])], product));
+            }
+        }
+        return allProducts;
+    }
+
+    /**
+     * Retrieves a read-only view of the stock currently held in the inventory.
+     * <p>
+     * The view is fail-fast; iterating over it while the inventory is modified throws a
+     * {@link ConcurrentModificationException}.
+     * @return a live, read-only view of the inventory.
+     */
+    @Override
+    public InventoryView view() {
+        return view;
+    }
+
+    /**
+     * Get the quantity of a specific product in the inventory.
+     * @param barcode The barcode of the product.
+     * @return The amount of the corresponding product currently in the inventory.
+     */
+    public int getStockedQuantity(Barcode barcode) {
+        if (barcode == null) {
+            return 0;
+        }
+        int quantity = 0;
+        for (Quality quality : QUALITIES) {
+            quantity += stockedCounts[slot(barcode, quality)];
+        }
+        return quantity;
+    }
+
+    /**
+     * Get the quantity of a specific product of a given quality in the inventory.
+     * @param barcode The barcode of the product.
+     * @param quality The quality of the product.
+     * @return The amount of the corresponding product and quality currently in the inventory.
+     */
+    public int getStockedQuantity(Barcode barcode, Quality quality) {
+        return count(barcode, quality);
+    }
+
+    /** Private Helper Methods **/
+
+    private int count(Barcode barcode, Quality quality) {
+        if (barcode == null) {
+            return 0;
+        }
+        return stockedCounts[slot(barcode, quality)];
+    }
+
+    private static int slot(Barcode barcode, Quality quality) {
+        return barcode.ordinal() * QUALITIES.length + quality.ordinal();
+    }
+}
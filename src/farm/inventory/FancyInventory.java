@@ -12,10 +12,70 @@ import java.util.*;
  * A fancy inventory which stores products in stacks, enabling quantity information.
  * <p>
  * Introduces the concept of performing operations on multiple Products, such as removing 4 Eggs.
+ * <p>
+ * Stock of each product type and quality is kept as a queue of runs, where a run is a count of
+ * units which arrived together. Which unit is handed out next is decided by each product type's
+ * {@link PickingPolicy}: highest quality first (the default), lowest quality first, or first in
+ * first out. Every policy only needs to look at the oldest run of each quality, so picking a unit
+ * costs the same no matter how much stock is held.
  * @stage3
  */
 public class FancyInventory implements Inventory {
-    private final Map<Barcode, List<Product>> stockedProducts = new HashMap<>();
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+
+    // runs of products for each product type and quality, oldest first, indexed by slot()
+    private final List<Deque<Run>> stockedRuns;
+    private final int[] stockedCounts;
+    private final PickingPolicy[] pickingPolicies;
+    // the arrival of the most recently stocked run of each product type, indexed by barcode ordinal
+    private final long[] lastArrivals;
+    private long nextArrival = 0;
+    private int modificationCount = 0;
+    private final InventoryView view = new ArrivalOrderView();
+
+    /**
+     * Creates an empty fancy inventory which hands out the highest quality products first.
+     */
+    public FancyInventory() {
+        this(PickingPolicy.HIGHEST_QUALITY);
+    }
+
+    /**
+     * Creates an empty fancy inventory.
+     * @param defaultPolicy the picking policy used for every product type, until changed with
+     *                      {@link FancyInventory#setPickingPolicy(Barcode, PickingPolicy)}.
+     */
+    public FancyInventory(PickingPolicy defaultPolicy) {
+        int slotCount = BARCODES.length * QUALITIES.length;
+        this.stockedRuns = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            stockedRuns.add(new ArrayDeque<>());
+        }
+        this.stockedCounts = new int[slotCount];
+        this.pickingPolicies = new PickingPolicy[BARCODES.length];
+        Arrays.fill(pickingPolicies, Objects.requireNonNull(defaultPolicy));
+        this.lastArrivals = new long[BARCODES.length];
+        Arrays.fill(lastArrivals, PickingPolicy.NONE);
+    }
+
+    /**
+     * Sets the policy used to choose which products of a type are removed first.
+     * @param barcode the product type.
+     * @param policy the picking policy for that type.
+     */
+    public void setPickingPolicy(Barcode barcode, PickingPolicy policy) {
+        pickingPolicies[barcode.ordinal()] = Objects.requireNonNull(policy);
+    }
+
+    /**
+     * Retrieves the policy used to choose which products of a type are removed first.
+     * @param barcode the product type.
+     * @return the picking policy for that type.
+     */
+    public PickingPolicy getPickingPolicy(Barcode barcode) {
+        return pickingPolicies[barcode.ordinal()];
+    }
 
     @Override
     public void addProduct(Barcode barcode, Quality quality) {
@@ -31,38 +91,68 @@ public class FancyInventory implements Inventory {
      * @param barcode the barcode of the product to add.
      * @param quality the quality of added product.
      * @param quantity the amount of the product to add.
+     * @throws IllegalArgumentException if a negative quantity is provided.
      */
     public void addProduct(Barcode barcode, Quality quality, int quantity)
             throws InvalidStockRequestException {
-        List<Product> stock = stockedProducts.getOrDefault(barcode, new ArrayList<>());
-        stock.addAll(createProducts(barcode, quality, quantity));
-        stockedProducts.putIfAbsent(barcode, stock);
+        Objects.requireNonNull(barcode);
+        Objects.requireNonNull(quality);
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative.");
+        }
+        stock(barcode, quality, quantity);
+        modificationCount++;
+    }
+
+    /**
+     * Adds every product listed in the given manifest to the inventory in a single pass.
+     * <p>
+     * Each product type and quality in the manifest is stocked as a single run.
+     * @param manifest the products to add.
+     */
+    @Override
+    public void addProducts(StockManifest manifest) {
+        for (Barcode barcode : Barcode.values()) {
+            if (manifest.getQuantity(barcode) == 0) {
+                continue;
+            }
+            for (Quality quality : QUALITIES) {
+                stock(barcode, quality, manifest.getQuantity(barcode, quality));
+            }
+        }
+        modificationCount++;
     }
 
     @Override
     public boolean existsProduct(Barcode barcode) {
-        return stockedProducts.containsKey(barcode) && !stockedProducts.get(barcode).isEmpty();
+        return getStockedQuantity(barcode) > 0;
     }
 
     /**
      * Removes the highest quality product with corresponding barcode from the inventory.
      * <p>
      * Removes the product with the highest quality first. That is, if the inventory contains a REGULAR Egg and a GOLD Egg, the GOLD egg will be returned.
+     * If the product type has a different {@link PickingPolicy}, the product is instead chosen
+     * by that policy.
      * @param barcode The barcode of the product to be removed.
      * @return A list containing the removed product if it exists, else an empty list.
      */
     @Override
     public List<Product> removeProduct(Barcode barcode) {
-        if (!existsProduct(barcode) || stockedProducts.get(barcode).isEmpty()) {
+        try {
+            return removeProduct(barcode, 1);
+        } catch (FailedTransactionException ignored) {
+            // never thrown by a fancy inventory
             return Collections.emptyList();
         }
-        return List.of(getHighestQualityProduct(stockedProducts.get(barcode)));
     }
 
     /**
      * Removes a given number of products with corresponding barcode from the inventory, choosing the highest quality products possible.
      * <p>
      * Removes the products with the highest quality first. That is, if the inventory contains two REGULAR Eggs and a GOLD Egg, and two Eggs are removed the returned list will contain a GOLD Egg and a REGULAR Egg.
+     * If the product type has a different {@link PickingPolicy}, products are instead chosen by
+     * that policy, and returned in the order they were chosen.
      * <p>
      * If there are not enough of a given product in the inventory it will return as many of said product as possible. That is if someone attempts to remove five Eggs but the Inventory only has four, all four Eggs will be removed. i.e {@code removeProduct(Barcode.EGG, quantity).size() <= quantity}.
      * @param barcode The barcode of the product to be removed.
@@ -71,18 +161,34 @@ public class FancyInventory implements Inventory {
      */
     public List<Product> removeProduct(Barcode barcode, int quantity)
             throws FailedTransactionException {
-        if (!existsProduct(barcode)) {
+        if (!existsProduct(barcode) || quantity <= 0) {
             return Collections.emptyList();
         }
-        List<Product> toRemove = new ArrayList<>();
-        if (getStockedQuantity(barcode) <= quantity) {
-            toRemove = stockedProducts.get(barcode);
-            stockedProducts.put(barcode, new ArrayList<>()); // remove all matching products
-        } else { // remove matching products one by one
-            for (int i = 0; i < quantity; i++) {
-                toRemove.add(getHighestQualityProduct(stockedProducts.get(barcode)));
+        PickingPolicy policy = getPickingPolicy(barcode);
+        List<Product> toRemove = new ArrayList<>(Math.min(quantity, getStockedQuantity(barcode)));
+        long[] oldestArrivals = new long[QUALITIES.length];
+        // each pick either empties a run or completes the removal
+        while (toRemove.size() < quantity) {
+            for (int i = 0; i < QUALITIES.length; i++) {
+                Run oldest = getRuns(barcode, QUALITIES[i]).peekFirst();
+                oldestArrivals[i] = oldest == null ? PickingPolicy.NONE : oldest.arrival;
+            }
+            int chosen = policy.choose(oldestArrivals);
+            if (chosen == PickingPolicy.NONE_STOCKED) {
+                break;
+            }
+            Quality quality = QUALITIES[chosen];
+            Deque<Run> runs = getRuns(barcode, quality);
+            Run run = runs.peekFirst();
+            int taken = Math.min(run.remaining, quantity - toRemove.size());
+            run.remaining -= taken;
+            if (run.remaining == 0) {
+                runs.removeFirst();
             }
+            stockedCounts[slot(barcode, quality)] -= taken;
+            toRemove.addAll(Collections.nCopies(taken, ProductCatalog.getProduct(barcode, quality)));
         }
+        modificationCount++;
         return toRemove;
     }
 
@@ -92,6 +198,9 @@ public class FancyInventory implements Inventory {
      * The returned list must be grouped by product type as per the order defined in {@link Barcode}.
      * <br>
      * That is, if there is 1 Wool, 1 Egg, and 2 Milk in the inventory, the returned list will be organised into 1 Egg, 2 Milk, 1 Wool. i.e {@code getAllProducts() == [Egg(), Milk(), Milk(), Wool()]}
+     * <p>
+     * Within each product type, products are listed in the order they arrived, whatever their
+     * quality. This is the order a {@link PickingPolicy#FIFO} policy hands them out.
      *
      * @hint See {@link Barcode#values()} about the order
      * @return An organised list containing all products currently stored in the inventory.
@@ -99,54 +208,183 @@ public class FancyInventory implements Inventory {
     @Override
     public List<Product> getAllProducts() {
         List<Product> allProducts = new ArrayList<>();
-        for (Barcode type : Barcode.values()) {
-            if (existsProduct(type)) {
-                allProducts.addAll(stockedProducts.getOrDefault(type, Collections.emptyList()));
-            }
+        for (Product product : view) {
+            allProducts.add(product);
         }
         return allProducts;
     }
 
+    /**
+     * Retrieves a read-only view of the stock currently held in the inventory.
+     * <p>
+     * Iterating over the view visits products in the same order as
+     * {@link FancyInventory#getAllProducts()}. The view is fail-fast; iterating over it while the
+     * inventory is modified throws a {@link ConcurrentModificationException}.
+     * @return a live, read-only view of the inventory.
+     */
+    @Override
+    public InventoryView view() {
+        return view;
+    }
+
     /**
      * Get the quantity of a specific product in the inventory.
      * @param barcode The barcode of the product.
      * @return The amount of the corresponding product currently in the inventory.
      */
     public int getStockedQuantity(Barcode barcode) {
-        return stockedProducts.getOrDefault(barcode, Collections.emptyList()).size();
+        if (barcode == null) {
+            return 0;
+        }
+        int quantity = 0;
+        for (Quality quality : QUALITIES) {
+            quantity += stockedCounts[slot(barcode, quality)];
+        }
+        return quantity;
+    }
+
+    /**
+     * Get the quantity of a specific product of a given quality in the inventory.
+     * @param barcode The barcode of the product.
+     * @param quality The quality of the product.
+     * @return The amount of the corresponding product and quality currently in the inventory.
+     */
+    public int getStockedQuantity(Barcode barcode, Quality quality) {
+        return count(barcode, quality);
     }
 
     /** Private Helper Methods **/
 
-    private List<Product> createProducts(Barcode barcode, Quality quality, int quantity) {
-        List<Product> products = new ArrayList<>(quantity);
-        for (int i = 0; i < quantity; i++) {
-            products.addLast(
-                switch (barcode) {
-                    case Barcode.EGG -> new Egg(quality);
-                    case Barcode.MILK -> new Milk(quality);
-                    case Barcode.JAM -> new Jam(quality);
-                    case Barcode.WOOL -> new Wool(quality);
-                    case Barcode.BREAD -> new Bread(quality);
-                    case Barcode.COFFEE -> new Coffee(quality);
-                }
-            );
+    private int count(Barcode barcode, Quality quality) {
+        if (barcode == null) {
+            return 0;
         }
-        return products;
+        return stockedCounts[slot(barcode, quality)];
+    }
+
+    private void stock(Barcode barcode, Quality quality, int quantity) {
+        if (quantity == 0) {
+            return;
+        }
+        int id = barcode.ordinal();
+        Deque<Run> runs = getRuns(barcode, quality);
+        Run newest = runs.peekLast();
+        if (newest != null && newest.arrival == lastArrivals[id]) {
+            // nothing else of this type has arrived since, so the run can simply grow
+            newest.remaining += quantity;
+        } else {
+            runs.addLast(new Run(nextArrival, quantity));
+            lastArrivals[id] = nextArrival++;
+        }
+        stockedCounts[slot(barcode, quality)] += quantity;
+    }
+
+    private Deque<Run> getRuns(Barcode barcode, Quality quality) {
+        return stockedRuns.get(slot(barcode, quality));
     }
 
-    private Product getHighestQualityProduct(List<Product> products) {
-        Product best = products.getFirst();
-        for (Product candidate : products) {
-            if (candidate.getQuality().equals(Quality.IRIDIUM)) {
-                products.remove(candidate);
-                return candidate; // early exit on first iridium candidate
+    private static Run nextRun(Iterator<Run> runs) {
+        return runs.hasNext() ? runs.next() : null;
+    }
+
+    private static int slot(Barcode barcode, Quality quality) {
+        return barcode.ordinal() * QUALITIES.length + quality.ordinal();
+    }
+
+    /**
+     * A view which counts stock directly, and iterates over each product type's stock in the
+     * order it arrived.
+     */
+    private class ArrivalOrderView implements InventoryView {
+
+        @Override
+        public int getQuantity(Barcode barcode) {
+            int quantity = 0;
+            for (Quality quality : QUALITIES) {
+                quantity += count(barcode, quality);
             }
-            if (candidate.getQuality().compareTo(best.getQuality()) > 0) {
-                best = candidate;
+            return quantity;
+        }
+
+        @Override
+        public int getQuantity(Barcode barcode, Quality quality) {
+            return count(barcode, quality);
+        }
+
+        @Override
+        public Iterator<Product> iterator() {
+            return new ArrivalIterator();
+        }
+    }
+
+    /**
+     * Walks the runs of each product type in turn, merging the runs of every quality by arrival.
+     * Each quality's runs are already oldest first, so only the oldest remaining run of each
+     * quality needs to be compared.
+     */
+    private class ArrivalIterator implements Iterator<Product> {
+        private final int expectedModificationCount = modificationCount;
+        private final List<Iterator<Run>> runs = new ArrayList<>(QUALITIES.length);
+        private final Run[] oldestRuns = new Run[QUALITIES.length];
+        private int barcodeIndex = -1;
+        private Product product;
+        private int remaining = 0;
+
+        @Override
+        public boolean hasNext() {
+            if (modificationCount != expectedModificationCount) {
+                throw new ConcurrentModificationException();
             }
+            while (remaining == 0) {
+                int oldest = -1;
+                for (int i = 0; i < QUALITIES.length; i++) {
+                    if (oldestRuns[i] != null && (oldest == -1
+                            || oldestRuns[i].arrival < oldestRuns[oldest].arrival)) {
+                        oldest = i;
+                    }
+                }
+                if (oldest == -1) {
+                    if (++barcodeIndex >= BARCODES.length) {
+                        return false;
+                    }
+                    startType(BARCODES[barcodeIndex]);
+                    continue;
+                }
+                product = ProductCatalog.getProduct(BARCODES[barcodeIndex], QUALITIES[oldest]);
+                remaining = oldestRuns[oldest].remaining;
+                oldestRuns[oldest] = nextRun(runs.get(oldest));
+            }
+            return true;
+        }
+
+        @Override
+        public Product next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            remaining--;
+            return product;
+        }
+
+        private void startType(Barcode type) {
+            runs.clear();
+            for (int i = 0; i < QUALITIES.length; i++) {
+                runs.add(getRuns(type, QUALITIES[i]).iterator());
+                oldestRuns[i] = nextRun(runs.get(i));
+            }
+        }
+    }
+
+    /**
+     * Units of one product type and quality which arrived together.
+     */
+    private static class Run {
+        private final long arrival;
+        private int remaining;
+
+        private Run(long arrival, int remaining) {
+            this.arrival = arrival;
+            this.remaining = remaining;
         }
-        products.remove(best);
-        return best;
     }
-}
\ No newline at end of file
+}
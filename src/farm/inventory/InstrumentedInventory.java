@@ -0,0 +1,158 @@
+package farm.inventory;
+
+import farm.core.FailedTransactionException;
+import farm.core.InvalidStockRequestException;
+import farm.inventory.metrics.InventoryMetrics;
+import farm.inventory.metrics.MetricsSnapshot;
+import farm.inventory.metrics.Operation;
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * An inventory which measures every operation performed on another inventory.
+ * <p>
+ * Each call is timed and recorded in an {@link InventoryMetrics}, along with the product type it
+ * concerned and the number of units it added or removed. Calls which fail are timed as well.
+ * Recording never allocates or locks, so the measurements can be left on in production; use
+ * {@link InstrumentedInventory#getMetrics()} to take snapshots or to start a
+ * {@link farm.inventory.metrics.MetricsReporter}.
+ * <p>
+ * The view is not instrumented, since reading it never changes stock.
+ * An instrumented inventory is exactly as thread-safe as the inventory it wraps.
+ */
+public class InstrumentedInventory implements Inventory {
+    private final Inventory inventory;
+    private final InventoryMetrics metrics;
+    private final LongSupplier nanoTime;
+
+    /**
+     * Creates an instrumented inventory which records into a new set of metrics.
+     * @param inventory the inventory to measure.
+     */
+    public InstrumentedInventory(Inventory inventory) {
+        this(inventory, new InventoryMetrics());
+    }
+
+    /**
+     * Creates an instrumented inventory.
+     * @param inventory the inventory to measure.
+     * @param metrics the metrics to record into, which may be shared with other inventories.
+     */
+    public InstrumentedInventory(Inventory inventory, InventoryMetrics metrics) {
+        this(inventory, metrics, System::nanoTime);
+    }
+
+    InstrumentedInventory(Inventory inventory, InventoryMetrics metrics, LongSupplier nanoTime) {
+        this.inventory = inventory;
+        this.metrics = metrics;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Retrieves the metrics this inventory records into.
+     * @return the live metrics.
+     */
+    public InventoryMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Takes a copy of everything recorded so far.
+     * @return an immutable snapshot of the metrics.
+     */
+    public MetricsSnapshot snapshot() {
+        return metrics.snapshot();
+    }
+
+    @Override
+    public void addProduct(Barcode barcode, Quality quality) {
+        long start = nanoTime.getAsLong();
+        try {
+            inventory.addProduct(barcode, quality);
+            metrics.recordAdded(barcode, 1);
+        } finally {
+            metrics.record(Operation.ADD_PRODUCT, barcode, nanoTime.getAsLong() - start);
+        }
+    }
+
+    @Override
+    public void addProduct(Barcode barcode, Quality quality, int quantity)
+            throws InvalidStockRequestException {
+        long start = nanoTime.getAsLong();
+        try {
+            inventory.addProduct(barcode, quality, quantity);
+            metrics.recordAdded(barcode, quantity);
+        } finally {
+            metrics.record(Operation.ADD_PRODUCT_QUANTITY, barcode,
+                    nanoTime.getAsLong() - start);
+        }
+    }
+
+    @Override
+    public void addProducts(StockManifest manifest) {
+        long start = nanoTime.getAsLong();
+        try {
+            inventory.addProducts(manifest);
+            for (Barcode barcode : Barcode.values()) {
+                metrics.recordAdded(barcode, manifest.getQuantity(barcode));
+            }
+        } finally {
+            metrics.record(Operation.ADD_PRODUCTS, nanoTime.getAsLong() - start);
+        }
+    }
+
+    @Override
+    public boolean existsProduct(Barcode barcode) {
+        long start = nanoTime.getAsLong();
+        try {
+            return inventory.existsProduct(barcode);
+        } finally {
+            metrics.record(Operation.EXISTS_PRODUCT, barcode, nanoTime.getAsLong() - start);
+        }
+    }
+
+    @Override
+    public List<Product> removeProduct(Barcode barcode) {
+        long start = nanoTime.getAsLong();
+        try {
+            List<Product> removed = inventory.removeProduct(barcode);
+            metrics.recordRemoved(barcode, removed.size());
+            return removed;
+        } finally {
+            metrics.record(Operation.REMOVE_PRODUCT, barcode, nanoTime.getAsLong() - start);
+        }
+    }
+
+    @Override
+    public List<Product> removeProduct(Barcode barcode, int quantity)
+            throws FailedTransactionException {
+        long start = nanoTime.getAsLong();
+        try {
+            List<Product> removed = inventory.removeProduct(barcode, quantity);
+            metrics.recordRemoved(barcode, removed.size());
+            return removed;
+        } finally {
+            metrics.record(Operation.REMOVE_PRODUCT_QUANTITY, barcode,
+                    nanoTime.getAsLong() - start);
+        }
+    }
+
+    @Override
+    public List<Product> getAllProducts() {
+        long start = nanoTime.getAsLong();
+        try {
+            return inventory.getAllProducts();
+        } finally {
+            metrics.record(Operation.GET_ALL_PRODUCTS, nanoTime.getAsLong() - start);
+        }
+    }
+
+    @Override
+    public InventoryView view() {
+        return inventory.view();
+    }
+}
@@ -33,6 +33,25 @@ public interface Inventory {
      */
     void addProduct(Barcode barcode, Quality quality, int quantity)
             throws InvalidStockRequestException;
+
+    /**
+     * Adds every product listed in the given manifest to the inventory.
+     * <p>
+     * By default, each product is added one at a time using
+     * {@link Inventory#addProduct(Barcode, Quality)}, so that inventories which only support
+     * single products can still be stocked from a manifest. Inventories which support quantities
+     * should instead apply the whole manifest in one pass.
+     * @param manifest the products to add.
+     */
+    default void addProducts(StockManifest manifest) {
+        for (Barcode barcode : Barcode.values()) {
+            for (Quality quality : Quality.values()) {
+                for (int i = 0; i < manifest.getQuantity(barcode, quality); i++) {
+                    addProduct(barcode, quality);
+                }
+            }
+        }
+    }
     
     /**
      * Determines if a product exists in the inventory with the given barcode.
@@ -65,4 +84,13 @@ public interface Inventory {
      * @return A list containing all products currently stored in the inventory.
      */
     List<Product> getAllProducts();
+
+    /**
+     * Retrieves a read-only view of the stock currently held in the inventory.
+     * <p>
+     * Unlike {@link Inventory#getAllProducts()}, the view does not copy the stock, and always
+     * reflects the inventory's current contents.
+     * @return a live, read-only view of the inventory.
+     */
+    InventoryView view();
 }
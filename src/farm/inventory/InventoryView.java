@@ -0,0 +1,76 @@
+package farm.inventory;
+
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A read-only view of the stock held in an inventory.
+ * <p>
+ * A view does not copy the inventory; every query and iteration reads the inventory's current
+ * contents. Iterating over a view visits products in the same order as
+ * {@link Inventory#getAllProducts()}.
+ * <p>
+ * Unless an inventory states otherwise, its views are <em>fail-fast</em>: if the inventory is
+ * modified while an iteration or stream is in progress, the iterator throws a
+ * {@link ConcurrentModificationException} rather than returning inconsistent stock.
+ */
+public interface InventoryView extends Iterable<Product> {
+
+    /**
+     * Retrieves the quantity of a specific product in the inventory, of any quality.
+     * @param barcode the barcode of the product.
+     * @return the amount of the corresponding product currently in the inventory.
+     */
+    int getQuantity(Barcode barcode);
+
+    /**
+     * Retrieves the quantity of a specific product of a given quality in the inventory.
+     * @param barcode the barcode of the product.
+     * @param quality the quality of the product.
+     * @return the amount of the corresponding product and quality currently in the inventory.
+     */
+    int getQuantity(Barcode barcode, Quality quality);
+
+    /**
+     * Retrieves the total number of products in the inventory.
+     * @return the amount of products currently in the inventory.
+     */
+    default int getTotalQuantity() {
+        int total = 0;
+        for (Barcode barcode : Barcode.values()) {
+            total += getQuantity(barcode);
+        }
+        return total;
+    }
+
+    /**
+     * Determines if the inventory holds no products.
+     * @return true iff the inventory is empty, else false.
+     */
+    default boolean isEmpty() {
+        return !iterator().hasNext();
+    }
+
+    /**
+     * Iterates over every product in the inventory without copying it.
+     * <p>
+     * The returned iterator does not support removal.
+     * @return an iterator over the products in the inventory.
+     */
+    @Override
+    Iterator<Product> iterator();
+
+    /**
+     * Creates a lazily-evaluated stream over every product in the inventory.
+     * @return a sequential stream of the products in the inventory.
+     */
+    default Stream<Product> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+}
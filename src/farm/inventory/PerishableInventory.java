@@ -0,0 +1,381 @@
+package farm.inventory;
+
+import farm.core.FailedTransactionException;
+import farm.core.InvalidStockRequestException;
+import farm.inventory.product.Product;
+import farm.inventory.product.ProductCatalog;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.inventory.timing.HierarchicalTimingWheel;
+import farm.inventory.timing.Timeout;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * A fancy inventory whose stock spoils once it has been stocked for longer than its shelf life.
+ * <p>
+ * Products are stocked in batches, where every unit in a batch was stocked at the same time and
+ * so expires at the same time. Each perishable batch is scheduled on a
+ * {@link HierarchicalTimingWheel}, and expired batches are moved out of the inventory whenever
+ * stock is checked or removed. Expiring stock therefore only costs as much as the number of
+ * batches which are due, no matter how much stock is held. Product types without a shelf life
+ * never expire.
+ * <p>
+ * Expiry is tracked to the minute, rounded down, so stock may be discarded up to a minute early
+ * but is never sold after it has expired. The number of units that have expired is kept for
+ * each product type and quality, for reporting.
+ * <p>
+ * As with a {@link FancyInventory}, the highest quality products are always removed first. Within
+ * a quality, the oldest stock (which expires soonest) is removed first.
+ */
+public class PerishableInventory implements Inventory {
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+    private static final long TICK_MILLIS = 60_000;
+    private static final int WHEEL_SIZE = 64;
+    private static final int WHEEL_LEVELS = 4;
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private final Map<Barcode, Duration> shelfLives = new EnumMap<>(Barcode.class);
+    private final Clock clock;
+    private final HierarchicalTimingWheel<Batch> expiries;
+    // the batches for each product type and quality, indexed by slot(), oldest first
+    private final List<Deque<Batch>> stockedBatches;
+    private final int[] stockedCounts;
+    private final int[] expiredCounts;
+    private int modificationCount = 0;
+    private final InventoryView view = new CountedInventoryView(
+            this::count, () -> modificationCount);
+
+    /**
+     * Creates an empty perishable inventory using the system clock, in which eggs keep for four
+     * weeks, milk for ten days and bread for five days. All other products never expire.
+     */
+    public PerishableInventory() {
+        this(Map.of(Barcode.EGG, Duration.ofDays(28),
+                Barcode.MILK, Duration.ofDays(10),
+                Barcode.BREAD, Duration.ofDays(5)), Clock.systemUTC());
+    }
+
+    /**
+     * Creates an empty perishable inventory.
+     * @param shelfLives how long each perishable product type keeps once stocked. Product types
+     *                   which are not included never expire.
+     * @param clock the clock used to determine when stock was stocked and when it expires.
+     * @throws IllegalArgumentException if any shelf life is not positive.
+     */
+    public PerishableInventory(Map<Barcode, Duration> shelfLives, Clock clock) {
+        for (Map.Entry<Barcode, Duration> shelfLife : shelfLives.entrySet()) {
+            if (shelfLife.getValue().isNegative() || shelfLife.getValue().isZero()) {
+                throw new IllegalArgumentException("Shelf life of "
+                        + shelfLife.getKey().getDisplayName() + " must be positive.");
+            }
+            this.shelfLives.put(shelfLife.getKey(), shelfLife.getValue());
+        }
+        this.clock = clock;
+        this.expiries = new HierarchicalTimingWheel<>(TICK_MILLIS, WHEEL_SIZE, WHEEL_LEVELS,
+                clock.millis());
+
+        int slotCount = BARCODES.length * QUALITIES.length;
+        this.stockedBatches = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            stockedBatches.add(new ArrayDeque<>());
+        }
+        this.stockedCounts = new int[slotCount];
+        this.expiredCounts = new int[slotCount];
+    }
+
+    @Override
+    public void addProduct(Barcode barcode, Quality quality) {
+        try {
+            addProduct(barcode, quality, 1);
+        } catch (InvalidStockRequestException ignored) {
+            // never thrown by a perishable inventory
+        }
+    }
+
+    /**
+     * Adds multiple of the product with corresponding barcode to the inventory, all of which
+     * expire together.
+     * @param barcode the barcode of the product to add.
+     * @param quality the quality of added product.
+     * @param quantity the amount of the product to add.
+     * @throws IllegalArgumentException if a negative quantity is provided.
+     */
+    @Override
+    public void addProduct(Barcode barcode, Quality quality, int quantity)
+            throws InvalidStockRequestException {
+        Objects.requireNonNull(barcode);
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative.");
+        }
+        stock(barcode, quality, quantity, clock.millis());
+        modificationCount++;
+    }
+
+    /**
+     * Adds every product listed in the given manifest to the inventory in a single pass, all of
+     * which are treated as stocked at the same time.
+     * @param manifest the products to add.
+     */
+    @Override
+    public void addProducts(StockManifest manifest) {
+        long now = clock.millis();
+        for (Barcode barcode : Barcode.values()) {
+            if (manifest.getQuantity(barcode) == 0) {
+                continue;
+            }
+            for (Quality quality : QUALITIES) {
+                stock(barcode, quality, manifest.getQuantity(barcode, quality), now);
+            }
+        }
+        modificationCount++;
+    }
+
+    @Override
+    public boolean existsProduct(Barcode barcode) {
+        expireStock();
+        return getStockedQuantity(barcode) > 0;
+    }
+
+    /**
+     * Removes the highest quality product with corresponding barcode from the inventory.
+     * <p>
+     * Expired stock is never returned.
+     * @param barcode The barcode of the product to be removed.
+     * @return A list containing the removed product if it exists, else an empty list.
+     */
+    @Override
+    public List<Product> removeProduct(Barcode barcode) {
+        try {
+            return removeProduct(barcode, 1);
+        } catch (FailedTransactionException ignored) {
+            // never thrown by a perishable inventory
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Removes a given number of products with corresponding barcode from the inventory, choosing
+     * the highest quality products possible, and the oldest products within each quality.
+     * <p>
+     * Expired stock is never returned. If there are not enough unexpired products in the
+     * inventory it will return as many of said product as possible.
+     * @param barcode The barcode of the product to be removed.
+     * @param quantity The total amount of the product to remove from the inventory.
+     * @return A list containing the removed products, ordered from highest to lowest quality.
+     */
+    @Override
+    public List<Product> removeProduct(Barcode barcode, int quantity)
+            throws FailedTransactionException {
+        if (quantity <= 0 || !existsProduct(barcode)) {
+            return Collections.emptyList();
+        }
+        List<Product> removed =
+                new ArrayList<>(Math.min(quantity, getStockedQuantity(barcode)));
+        for (int i = QUALITIES.length - 1; i >= 0 && removed.size() < quantity; i--) {
+            int slot = slot(barcode, QUALITIES[i]);
+            int taken = takeOldest(slot, quantity - removed.size());
+            stockedCounts[slot] -= taken;
+            removed.addAll(
+                    Collections.nCopies(taken, ProductCatalog.getProduct(barcode, QUALITIES[i])));
+        }
+        modificationCount++;
+        return removed;
+    }
+
+    /**
+     * Retrieves the full stock currently held in the inventory, excluding any expired stock.
+     * <p>
+     * The returned list is grouped by product type as per the order defined in {@link Barcode},
+     * and within each type ordered from highest to lowest quality.
+     * @return An organised list containing all products currently stored in the inventory.
+     */
+    @Override
+    public List<Product> getAllProducts() {
+        expireStock();
+        List<Product> allProducts = new ArrayList<>();
+        for (Barcode type : Barcode.values()) {
+            for (int i = QUALITIES.length - 1; i >= 0; i--) {
+                Product product = ProductCatalog.getProduct(type, QUALITIES[i]);
+                allProducts.addAll(
+                        Collections.nCopies(stockedCounts[slot(type, QUALITIES[i])], product));
+            }
+        }
+        return allProducts;
+    }
+
+    /**
+     * Retrieves a read-only view of the stock currently held in the inventory.
+     * <p>
+     * The view shows stock as of the last time expired stock was removed; call
+     * {@link PerishableInventory#expireStock()} first for up to date quantities. The view is
+     * fail-fast; iterating over it while the inventory is modified throws a
+     * {@link ConcurrentModificationException}.
+     * @return a live, read-only view of the inventory.
+     */
+    @Override
+    public InventoryView view() {
+        return view;
+    }
+
+    /**
+     * Removes every unit of stock whose shelf life has passed.
+     * <p>
+     * This happens automatically whenever stock is checked or removed, but may also be called
+     * periodically so that expiry counts stay up to date.
+     * @return the number of units which expired.
+     */
+    public int expireStock() {
+        int expiredTotal = 0;
+        for (Batch batch : expiries.advance(clock.millis())) {
+            if (batch.remaining == 0) {
+                continue;
+            }
+            stockedCounts[batch.slot] -= batch.remaining;
+            expiredCounts[batch.slot] += batch.remaining;
+            expiredTotal += batch.remaining;
+            batch.remaining = 0;
+            stockedBatches.get(batch.slot).remove(batch);
+        }
+        if (expiredTotal > 0) {
+            modificationCount++;
+        }
+        return expiredTotal;
+    }
+
+    /**
+     * Get the quantity of a specific product in the inventory, as of the last time expired stock
+     * was removed.
+     * @param barcode The barcode of the product.
+     * @return The amount of the corresponding product currently in the inventory.
+     */
+    public int getStockedQuantity(Barcode barcode) {
+        if (barcode == null) {
+            return 0;
+        }
+        int quantity = 0;
+        for (Quality quality : QUALITIES) {
+            quantity += stockedCounts[slot(barcode, quality)];
+        }
+        return quantity;
+    }
+
+    /**
+     * Get the quantity of a specific product of a given quality in the inventory, as of the last
+     * time expired stock was removed.
+     * @param barcode The barcode of the product.
+     * @param quality The quality of the product.
+     * @return The amount of the corresponding product and quality currently in the inventory.
+     */
+    public int getStockedQuantity(Barcode barcode, Quality quality) {
+        return count(barcode, quality);
+    }
+
+    /**
+     * Get the number of units of a specific product which have expired in the inventory.
+     * @param barcode The barcode of the product.
+     * @return The amount of the corresponding product which has expired.
+     */
+    public int getExpiredQuantity(Barcode barcode) {
+        int quantity = 0;
+        for (Quality quality : QUALITIES) {
+            quantity += expiredCounts[slot(barcode, quality)];
+        }
+        return quantity;
+    }
+
+    /**
+     * Get the number of units of a specific product of a given quality which have expired in
+     * the inventory.
+     * @param barcode The barcode of the product.
+     * @param quality The quality of the product.
+     * @return The amount of the corresponding product and quality which has expired.
+     */
+    public int getExpiredQuantity(Barcode barcode, Quality quality) {
+        return expiredCounts[slot(barcode, quality)];
+    }
+
+    /**
+     * Get the total number of units which have expired in the inventory.
+     * @return The amount of stock which has expired, of any type and quality.
+     */
+    public int getTotalExpiredQuantity() {
+        int quantity = 0;
+        for (int count : expiredCounts) {
+            quantity += count;
+        }
+        return quantity;
+    }
+
+    /** Private Helper Methods **/
+
+    private int count(Barcode barcode, Quality quality) {
+        if (barcode == null) {
+            return 0;
+        }
+        return stockedCounts[slot(barcode, quality)];
+    }
+
+    private void stock(Barcode barcode, Quality quality, int quantity, long now) {
+        if (quantity == 0) {
+            return;
+        }
+        int slot = slot(barcode, quality);
+        Duration shelfLife = shelfLives.get(barcode);
+        long expiresAt = shelfLife == null ? NEVER : now + shelfLife.toMillis();
+
+        Deque<Batch> batches = stockedBatches.get(slot);
+        Batch newest = batches.peekLast();
+        if (newest != null && newest.expiresAt == expiresAt) {
+            newest.remaining += quantity; // stocked in the same instant, so expires together
+        } else {
+            Batch batch = new Batch(slot, expiresAt, quantity);
+            if (expiresAt != NEVER) {
+                batch.expiry = expiries.schedule(batch, expiresAt);
+            }
+            batches.addLast(batch);
+        }
+        stockedCounts[slot] += quantity;
+    }
+
+    private int takeOldest(int slot, int quantity) {
+        Deque<Batch> batches = stockedBatches.get(slot);
+        int taken = 0;
+        while (taken < quantity && !batches.isEmpty()) {
+            Batch oldest = batches.peekFirst();
+            int fromBatch = Math.min(oldest.remaining, quantity - taken);
+            oldest.remaining -= fromBatch;
+            taken += fromBatch;
+            if (oldest.remaining == 0) {
+                batches.removeFirst();
+                if (oldest.expiry != null) {
+                    oldest.expiry.cancel();
+                }
+            }
+        }
+        return taken;
+    }
+
+    private static int slot(Barcode barcode, Quality quality) {
+        return barcode.ordinal() * QUALITIES.length + quality.ordinal();
+    }
+
+    /**
+     * Units of one product type and quality which were stocked together and expire together.
+     */
+    private static class Batch {
+        private final int slot;
+        private final long expiresAt;
+        private int remaining;
+        private Timeout<Batch> expiry;
+
+        private Batch(int slot, long expiresAt, int remaining) {
+            this.slot = slot;
+            this.expiresAt = expiresAt;
+            this.remaining = remaining;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package farm.inventory;
+
+/**
+ * Strategies for choosing which unit of a product an inventory hands out next.
+ * <p>
+ * Inventories supporting picking policies keep the stock of each product type and quality in
+ * the order it arrived, so every policy can choose its next unit by looking only at the oldest
+ * unit of each quality.
+ */
+public enum PickingPolicy {
+    /**
+     * Hands out the highest quality units first, such as for premium customers. Units of the same
+     * quality are handed out oldest first.
+     */
+    HIGHEST_QUALITY {
+        @Override
+        int choose(long[] oldestArrivals) {
+            for (int i = oldestArrivals.length - 1; i >= 0; i--) {
+                if (oldestArrivals[i] != NONE) {
+                    return i;
+                }
+            }
+            return NONE_STOCKED;
+        }
+    },
+    /**
+     * Hands out the lowest quality units first, such as for clearance sales. Units of the same
+     * quality are handed out oldest first.
+     */
+    LOWEST_QUALITY {
+        @Override
+        int choose(long[] oldestArrivals) {
+            for (int i = 0; i < oldestArrivals.length; i++) {
+                if (oldestArrivals[i] != NONE) {
+                    return i;
+                }
+            }
+            return NONE_STOCKED;
+        }
+    },
+    /**
+     * Hands out units in the order they arrived, regardless of quality, such as for perishable
+     * products.
+     */
+    FIFO {
+        @Override
+        int choose(long[] oldestArrivals) {
+            int chosen = NONE_STOCKED;
+            for (int i = 0; i < oldestArrivals.length; i++) {
+                if (oldestArrivals[i] != NONE
+                        && (chosen == NONE_STOCKED || oldestArrivals[i] < oldestArrivals[chosen])) {
+                    chosen = i;
+                }
+            }
+            return chosen;
+        }
+    };
+
+    /** Marks a quality with no stock in the arrival orders passed to a policy. */
+    static final long NONE = -1;
+    /** Returned by a policy when no quality has any stock. */
+    static final int NONE_STOCKED = -1;
+
+    /**
+     * Chooses the quality to hand out the next unit from.
+     * @param oldestArrivals the arrival order of the oldest unit stocked at each quality, indexed
+     *                       by quality ordinal, or {@link PickingPolicy#NONE} if the quality has
+     *                       no stock.
+     * @return the ordinal of the chosen quality, or {@link PickingPolicy#NONE_STOCKED} if there
+     * is no stock at all.
+     */
+    abstract int choose(long[] oldestArrivals);
+}
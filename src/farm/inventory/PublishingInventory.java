@@ -0,0 +1,223 @@
+package farm.inventory;
+
+import farm.core.FailedTransactionException;
+import farm.core.InvalidStockRequestException;
+import farm.inventory.changes.StockAdded;
+import farm.inventory.changes.StockChangeRing;
+import farm.inventory.changes.StockChangeSubscription;
+import farm.inventory.changes.StockRemoved;
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An inventory which publishes every change made to another inventory as a stream of
+ * {@link StockAdded} and {@link StockRemoved} records.
+ * <p>
+ * Changes are published on a {@link StockChangeRing}, so publishing never blocks sales, and
+ * any number of readers (such as a {@link ReplicaInventory} serving reports) can follow the
+ * stream without querying the inventory itself. Each addition or removal publishes one record
+ * per quality affected.
+ * <p>
+ * Each change is made and published while holding a lock for its product type, so the changes to
+ * any one type are published in exactly the order they were made, and a reader applying the
+ * stream in sequence order never sees a removal before the addition it depends on. Changes to
+ * different types still run concurrently.
+ * <p>
+ * A publishing inventory is exactly as thread-safe as the inventory it wraps.
+ */
+public class PublishingInventory implements Inventory {
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+
+    private final Inventory inventory;
+    private final StockChangeRing changes;
+    // one per product type, indexed by barcode ordinal; held while a change is made and published
+    private final ReentrantLock[] locks = new ReentrantLock[BARCODES.length];
+
+    /**
+     * Creates a publishing inventory whose change stream holds the latest 4096 changes.
+     * @param inventory the inventory whose changes should be published.
+     */
+    public PublishingInventory(Inventory inventory) {
+        this(inventory, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a publishing inventory.
+     * @param inventory the inventory whose changes should be published.
+     * @param capacity the number of changes held in the stream before it wraps around; must be
+     *                 a power of two.
+     * @throws IllegalArgumentException if the capacity is not a positive power of two.
+     */
+    public PublishingInventory(Inventory inventory, int capacity) {
+        this.inventory = inventory;
+        this.changes = new StockChangeRing(capacity);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Subscribes to every change made to the inventory from now on.
+     * @return a new subscription to the inventory's changes.
+     */
+    public StockChangeSubscription subscribe() {
+        return changes.subscribe();
+    }
+
+    /**
+     * Copies the inventory's current stock and subscribes to every change made after the copy
+     * was taken.
+     * <p>
+     * No change is made while the copy is taken, so applying the subscription's changes to the
+     * copy reproduces the inventory's stock exactly, with no change missed or counted twice.
+     * @param copy an empty manifest, which receives the stock of every product type and quality.
+     * @return a subscription starting at the first change not reflected in the copy.
+     */
+    public StockChangeSubscription copyAndSubscribe(StockManifest copy) {
+        lockAll();
+        try {
+            InventoryView stock = inventory.view();
+            for (Barcode barcode : Barcode.values()) {
+                for (Quality quality : QUALITIES) {
+                    copy.add(barcode, quality, stock.getQuantity(barcode, quality));
+                }
+            }
+            return changes.subscribe();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public void addProduct(Barcode barcode, Quality quality) {
+        ReentrantLock lock = lockFor(barcode);
+        lock.lock();
+        try {
+            inventory.addProduct(barcode, quality);
+            publishAdded(barcode, quality, 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void addProduct(Barcode barcode, Quality quality, int quantity)
+            throws InvalidStockRequestException {
+        ReentrantLock lock = lockFor(barcode);
+        lock.lock();
+        try {
+            inventory.addProduct(barcode, quality, quantity);
+            publishAdded(barcode, quality, quantity);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void addProducts(StockManifest manifest) {
+        lockAll();
+        try {
+            inventory.addProducts(manifest);
+            for (Barcode barcode : Barcode.values()) {
+                for (Quality quality : QUALITIES) {
+                    publishAdded(barcode, quality, manifest.getQuantity(barcode, quality));
+                }
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public boolean existsProduct(Barcode barcode) {
+        return inventory.existsProduct(barcode);
+    }
+
+    @Override
+    public List<Product> removeProduct(Barcode barcode) {
+        if (barcode == null) {
+            return Collections.emptyList();
+        }
+        ReentrantLock lock = lockFor(barcode);
+        lock.lock();
+        try {
+            List<Product> removed = inventory.removeProduct(barcode);
+            publishRemoved(barcode, removed);
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Product> removeProduct(Barcode barcode, int quantity)
+            throws FailedTransactionException {
+        if (barcode == null) {
+            return Collections.emptyList();
+        }
+        ReentrantLock lock = lockFor(barcode);
+        lock.lock();
+        try {
+            List<Product> removed = inventory.removeProduct(barcode, quantity);
+            publishRemoved(barcode, removed);
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Product> getAllProducts() {
+        return inventory.getAllProducts();
+    }
+
+    @Override
+    public InventoryView view() {
+        return inventory.view();
+    }
+
+    /** Private Helper Methods **/
+
+    private ReentrantLock lockFor(Barcode barcode) {
+        return locks[barcode.ordinal()];
+    }
+
+    private void lockAll() {
+        // always in id order, so two threads locking every type can never deadlock
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    private void publishAdded(Barcode barcode, Quality quality, int quantity) {
+        if (quantity > 0) {
+            changes.publish(sequence -> new StockAdded(barcode, quality, quantity, sequence));
+        }
+    }
+
+    private void publishRemoved(Barcode barcode, List<Product> removed) {
+        int[] counts = new int[QUALITIES.length];
+        for (Product product : removed) {
+            counts[product.getQuality().ordinal()]++;
+        }
+        for (Quality quality : QUALITIES) {
+            int count = counts[quality.ordinal()];
+            if (count > 0) {
+                changes.publish(sequence -> new StockRemoved(barcode, quality, count, sequence));
+            }
+        }
+    }
+}
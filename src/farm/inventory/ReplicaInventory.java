@@ -0,0 +1,216 @@
+package farm.inventory;
+
+import farm.inventory.changes.StockChange;
+import farm.inventory.changes.StockChangeSubscription;
+import farm.inventory.product.Product;
+import farm.inventory.product.ProductCatalog;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A read-only follower copy of a {@link PublishingInventory}, kept up to date by applying the
+ * primary's stream of stock changes.
+ * <p>
+ * Read-heavy work such as reports and dashboards can query a replica instead of the primary
+ * inventory used for sales. Before answering a query, the replica applies any changes published
+ * since its last query, which costs only as much as the number of new changes. If the replica
+ * falls so far behind that changes were overwritten before it read them, it copies the primary's
+ * current stock instead. Every copy, including the one a replica starts from, is taken together
+ * with the sequence number of the first change it does not reflect (see
+ * {@link PublishingInventory#copyAndSubscribe(StockManifest)}), so no change is ever applied
+ * twice or missed, even while the primary is being modified.
+ * <p>
+ * Products cannot be added to or removed from a replica; those methods throw an
+ * {@link UnsupportedOperationException}. All methods are safe to call from multiple threads.
+ */
+public class ReplicaInventory implements Inventory {
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+
+    private final PublishingInventory primary;
+    private StockChangeSubscription changes;
+    private final int[] stockedCounts = new int[BARCODES.length * QUALITIES.length];
+    private final InventoryView view = new CountedInventoryView(this::count, null);
+
+    /**
+     * Creates a replica of the given inventory, starting from a copy of its current stock.
+     * @param primary the inventory to follow.
+     */
+    public ReplicaInventory(PublishingInventory primary) {
+        this.primary = primary;
+        copyPrimary();
+    }
+
+    /**
+     * Applies every change the primary has published since the replica last caught up.
+     * <p>
+     * This happens automatically before every query.
+     * @return the number of changes applied, or -1 if the replica had fallen too far behind and
+     * copied the primary's stock instead.
+     */
+    public synchronized int catchUp() {
+        return applyPublished();
+    }
+
+    /**
+     * Retrieves the sequence number of the next change the replica will apply.
+     * @return the replica's position in the primary's change stream.
+     */
+    public synchronized long getPosition() {
+        return changes.getCursor();
+    }
+
+    /**
+     * Replicas are read-only.
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public void addProduct(Barcode barcode, Quality quality) {
+        throw new UnsupportedOperationException("Replica inventories are read-only.");
+    }
+
+    /**
+     * Replicas are read-only.
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public void addProduct(Barcode barcode, Quality quality, int quantity) {
+        throw new UnsupportedOperationException("Replica inventories are read-only.");
+    }
+
+    /**
+     * Replicas are read-only.
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public void addProducts(StockManifest manifest) {
+        throw new UnsupportedOperationException("Replica inventories are read-only.");
+    }
+
+    @Override
+    public synchronized boolean existsProduct(Barcode barcode) {
+        return getStockedQuantity(barcode) > 0;
+    }
+
+    /**
+     * Replicas are read-only.
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public List<Product> removeProduct(Barcode barcode) {
+        throw new UnsupportedOperationException("Replica inventories are read-only.");
+    }
+
+    /**
+     * Replicas are read-only.
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public List<Product> removeProduct(Barcode barcode, int quantity) {
+        throw new UnsupportedOperationException("Replica inventories are read-only.");
+    }
+
+    /**
+     * Retrieves the full stock held in the primary, as of the changes applied so far.
+     * <p>
+     * The returned list is grouped by product type as per the order defined in {@link Barcode},
+     * and within each type ordered from highest to lowest quality.
+     * @return An organised list containing all products currently stored in the inventory.
+     */
+    @Override
+    public synchronized List<Product> getAllProducts() {
+        catchUp();
+        List<Product> allProducts = new ArrayList<>();
+        for (Barcode type : Barcode.values()) {
+            for (int i = QUALITIES.length - 1; i >= 0; i--) {
+                Product product = ProductCatalog.getProduct(type, QUALITIES[i]);
+                allProducts.addAll(
+                        Collections.nCopies(stockedCounts[slot(type, QUALITIES[i])], product));
+            }
+        }
+        return allProducts;
+    }
+
+    /**
+     * Retrieves a read-only view of the replicated stock.
+     * <p>
+     * Quantities read through the view are caught up first. Since the replica catches up as the
+     * view is read, iterating over it is <em>weakly consistent</em> rather than fail-fast: changes
+     * the primary makes during the iteration may or may not be reflected, but never cause the
+     * iterator to throw.
+     * @return a live, read-only view of the replica.
+     */
+    @Override
+    public InventoryView view() {
+        return view;
+    }
+
+    /**
+     * Get the quantity of a specific product in the primary, as of the latest published change.
+     * @param barcode The barcode of the product.
+     * @return The amount of the corresponding product currently in the inventory.
+     */
+    public synchronized int getStockedQuantity(Barcode barcode) {
+        if (barcode == null) {
+            return 0;
+        }
+        catchUp();
+        int quantity = 0;
+        for (Quality quality : QUALITIES) {
+            quantity += stockedCounts[slot(barcode, quality)];
+        }
+        return quantity;
+    }
+
+    /**
+     * Get the quantity of a specific product of a given quality in the primary, as of the latest
+     * published change.
+     * @param barcode The barcode of the product.
+     * @param quality The quality of the product.
+     * @return The amount of the corresponding product and quality currently in the inventory.
+     */
+    public synchronized int getStockedQuantity(Barcode barcode, Quality quality) {
+        return count(barcode, quality);
+    }
+
+    /** Private Helper Methods **/
+
+    private synchronized int count(Barcode barcode, Quality quality) {
+        if (barcode == null) {
+            return 0;
+        }
+        applyPublished();
+        return stockedCounts[slot(barcode, quality)];
+    }
+
+    private int applyPublished() {
+        int applied = changes.drain(this::apply);
+        if (changes.isOverrun()) {
+            copyPrimary();
+            return -1;
+        }
+        return applied;
+    }
+
+    private void apply(StockChange change) {
+        stockedCounts[slot(change.barcode(), change.quality())] += change.signedDelta();
+    }
+
+    private void copyPrimary() {
+        StockManifest copy = new StockManifest();
+        changes = primary.copyAndSubscribe(copy);
+        for (Barcode barcode : Barcode.values()) {
+            for (Quality quality : QUALITIES) {
+                stockedCounts[slot(barcode, quality)] = copy.getQuantity(barcode, quality);
+            }
+        }
+    }
+
+    private static int slot(Barcode barcode, Quality quality) {
+        return barcode.ordinal() * QUALITIES.length + quality.ordinal();
+    }
+}
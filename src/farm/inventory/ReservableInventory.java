@@ -0,0 +1,49 @@
+package farm.inventory;
+
+import farm.inventory.product.data.Barcode;
+
+/**
+ * An inventory which can set stock aside for a customer before it is sold.
+ * <p>
+ * Reserving stock takes it out of the inventory straight away, so that no one else can buy it,
+ * but the stock is only gone for good once the reservation is committed. Releasing a reservation,
+ * or letting it expire, returns the stock to the inventory.
+ */
+public interface ReservableInventory extends Inventory {
+
+    /**
+     * Reserves up to the given number of products with corresponding barcode, choosing the
+     * highest quality products possible.
+     * <p>
+     * If there are not enough of a given product in the inventory it will reserve as many of
+     * said product as possible. The reservation expires after the inventory's reservation
+     * timeout if it has not been committed or released by then, unless it holds no products, in
+     * which case it never expires. Nothing is reserved for a null barcode, as for a product which
+     * is not stocked.
+     * @param barcode the barcode of the products to reserve.
+     * @param quantity the number of products to reserve.
+     * @return a handle to the reserved products, which may hold no products at all.
+     */
+    Reservation reserve(Barcode barcode, int quantity);
+
+    /**
+     * Commits a reservation, permanently removing its products from the inventory.
+     * @param reservation the reservation to commit.
+     * @return true iff the reservation was still held and has now been committed; false if it
+     * had already been released or had expired.
+     */
+    boolean commit(Reservation reservation);
+
+    /**
+     * Releases a reservation, returning its products to the inventory.
+     * @param reservation the reservation to release.
+     * @return true iff the reservation was still held and has now been released.
+     */
+    boolean release(Reservation reservation);
+
+    /**
+     * Releases every reservation whose timeout has passed.
+     * @return the number of reservations released.
+     */
+    int expireReservations();
+}
@@ -0,0 +1,103 @@
+package farm.inventory;
+
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.inventory.timing.Timeout;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A handle to stock which has been set aside by a {@link ReservableInventory}.
+ * <p>
+ * Reserved stock is no longer available to anyone else, but has not yet been sold. A reservation
+ * is either <em>committed</em>, where the stock is sold and leaves the inventory for good, or
+ * <em>released</em>, where the stock is returned to the inventory. Whichever happens first wins;
+ * a reservation can never be both committed and released.
+ */
+public class Reservation {
+
+    /**
+     * The states a reservation can be in.
+     */
+    public enum State {
+        HELD,
+        COMMITTED,
+        RELEASED
+    }
+
+    private final Barcode barcode;
+    private final int[] reservedCounts;
+    private final List<Product> products;
+    private final AtomicReference<State> state = new AtomicReference<>(State.HELD);
+    private volatile Timeout<Reservation> expiry;
+
+    /**
+     * Creates a reservation for the given products.
+     * @param barcode the barcode of the reserved products.
+     * @param reservedCounts the number of products reserved for each quality, indexed by
+     *                       {@link Quality#ordinal()}.
+     * @param products the reserved products.
+     */
+    Reservation(Barcode barcode, int[] reservedCounts, List<Product> products) {
+        this.barcode = barcode;
+        this.reservedCounts = reservedCounts;
+        this.products = List.copyOf(products);
+    }
+
+    /**
+     * Retrieves the barcode of the reserved products.
+     * @return the barcode of the reserved products.
+     */
+    public Barcode getBarcode() {
+        return barcode;
+    }
+
+    /**
+     * Retrieves the reserved products.
+     * @return an unmodifiable list of the reserved products.
+     */
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    /**
+     * Retrieves the number of products reserved.
+     * @return the number of products held by this reservation.
+     */
+    public int getQuantity() {
+        return products.size();
+    }
+
+    /**
+     * Retrieves the current state of the reservation.
+     * @return whether the reservation is held, committed or released.
+     */
+    public State getState() {
+        return state.get();
+    }
+
+    int getReservedCount(Quality quality) {
+        return reservedCounts[quality.ordinal()];
+    }
+
+    void setExpiry(Timeout<Reservation> expiry) {
+        this.expiry = expiry;
+    }
+
+    /**
+     * Moves the reservation out of the held state, cancelling its pending expiry.
+     * @return true iff the reservation was held and is now in the given state.
+     */
+    boolean complete(State outcome) {
+        if (!state.compareAndSet(State.HELD, outcome)) {
+            return false;
+        }
+        Timeout<Reservation> pending = expiry;
+        if (pending != null) {
+            pending.cancel();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,56 @@
+package farm.inventory;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides which shard of a {@link ShardedInventory} new stock is added to.
+ */
+@FunctionalInterface
+public interface ShardRouter {
+
+    /**
+     * Chooses the shard to stock products of the given type and quality in.
+     * @param barcode the type of the products being stocked.
+     * @param quality the quality of the products being stocked.
+     * @param shardCount the number of shards available.
+     * @return the index of the chosen shard, from 0 to {@code shardCount - 1}.
+     */
+    int route(Barcode barcode, Quality quality, int shardCount);
+
+    /**
+     * Creates a router which keeps all stock of a product type in the same shard, spreading the
+     * product types evenly across the shards.
+     * @return a router which routes by barcode.
+     */
+    static ShardRouter byBarcode() {
+        return (barcode, quality, shardCount) -> barcode.ordinal() % shardCount;
+    }
+
+    /**
+     * Creates a router which stocks each product type in a nominated warehouse. Product types
+     * without a nominated warehouse are stocked in the first warehouse.
+     * @param warehouses the index of the warehouse (shard) each product type is stocked in.
+     * @return a router which routes by warehouse.
+     */
+    static ShardRouter byWarehouse(Map<Barcode, Integer> warehouses) {
+        Map<Barcode, Integer> assignments = new EnumMap<>(Barcode.class);
+        assignments.putAll(warehouses);
+        return (barcode, quality, shardCount) -> assignments.getOrDefault(barcode, 0);
+    }
+
+    /**
+     * Creates a router which spreads stock evenly across the shards, sending each addition to
+     * the next shard in turn.
+     * @return a round-robin router.
+     */
+    static ShardRouter roundRobin() {
+        AtomicInteger next = new AtomicInteger();
+        return (barcode, quality, shardCount) ->
+                Math.floorMod(next.getAndIncrement(), shardCount);
+    }
+}
@@ -0,0 +1,341 @@
+package farm.inventory;
+
+import farm.core.FailedTransactionException;
+import farm.core.InvalidStockRequestException;
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+import java.util.*;
+
+/**
+ * An inventory made up of several child inventories (shards), such as the stock rooms of several
+ * physical stores, which is used as if it were a single inventory.
+ * <p>
+ * New stock is added to the shard chosen by a {@link ShardRouter}. Queries over the whole
+ * inventory, such as {@link ShardedInventory#existsProduct(Barcode)} and
+ * {@link ShardedInventory#getAllProducts()}, are fanned out to every shard in parallel. Removals
+ * are filled from as many shards as necessary, always taking the highest quality products
+ * available in any shard first.
+ * <p>
+ * The sharded inventory picks which shard to remove from, but each shard picks which of its own
+ * products to hand out, so every shard must hand out its highest quality products first. Shards
+ * with a {@link PickingPolicy} must use {@link PickingPolicy#HIGHEST_QUALITY} for every product
+ * type, and any shard found handing out a lower quality product than it holds has the product
+ * put back and the removal rejected.
+ * <p>
+ * A sharded inventory supports quantities if and only if all of its shards do. Shards are only
+ * ever used by one thread at a time for a single call, but the sharded inventory as a whole is
+ * not safe to modify from several threads at once unless its shards are.
+ */
+public class ShardedInventory implements Inventory {
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+
+    private final List<Inventory> shards;
+    private final ShardRouter router;
+    private int modificationCount = 0;
+    private final InventoryView view = new CountedInventoryView(
+            this::count, () -> modificationCount);
+
+    /**
+     * Creates a sharded inventory over the given shards.
+     * @param shards the inventories making up the sharded inventory.
+     * @param router decides which shard new stock is added to.
+     * @throws IllegalArgumentException if no shards are provided, or a shard's picking policy for
+     * any product type is not {@link PickingPolicy#HIGHEST_QUALITY}.
+     */
+    public ShardedInventory(List<? extends Inventory> shards, ShardRouter router) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("A sharded inventory needs at least one shard.");
+        }
+        for (Inventory shard : shards) {
+            for (Barcode barcode : Barcode.values()) {
+                if (getPickingPolicy(shard, barcode) != PickingPolicy.HIGHEST_QUALITY) {
+                    throw new IllegalArgumentException(
+                            "Shards must hand out the highest quality products first.");
+                }
+            }
+        }
+        this.shards = List.copyOf(shards);
+        this.router = Objects.requireNonNull(router);
+    }
+
+    /**
+     * Retrieves one of the shards making up the inventory.
+     * @param index the index of the shard.
+     * @return the shard at that index.
+     */
+    public Inventory getShard(int index) {
+        return shards.get(index);
+    }
+
+    /**
+     * Retrieves the number of shards making up the inventory.
+     * @return the number of shards.
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public void addProduct(Barcode barcode, Quality quality) {
+        route(barcode, quality).addProduct(barcode, quality);
+        modificationCount++;
+    }
+
+    @Override
+    public void addProduct(Barcode barcode, Quality quality, int quantity)
+            throws InvalidStockRequestException {
+        route(barcode, quality).addProduct(barcode, quality, quantity);
+        modificationCount++;
+    }
+
+    /**
+     * Adds every product listed in the given manifest to the inventory, splitting the manifest
+     * into one manifest per shard.
+     * <p>
+     * Each product type and quality in the manifest is routed as a single addition.
+     * @param manifest the products to add.
+     */
+    @Override
+    public void addProducts(StockManifest manifest) {
+        StockManifest[] split = new StockManifest[shards.size()];
+        for (Barcode barcode : Barcode.values()) {
+            for (Quality quality : QUALITIES) {
+                int quantity = manifest.getQuantity(barcode, quality);
+                if (quantity > 0) {
+                    int shard = routeIndex(barcode, quality);
+                    if (split[shard] == null) {
+                        split[shard] = new StockManifest();
+                    }
+                    split[shard].add(barcode, quality, quantity);
+                }
+            }
+        }
+        for (int i = 0; i < split.length; i++) {
+            if (split[i] != null) {
+                shards.get(i).addProducts(split[i]);
+            }
+        }
+        modificationCount++;
+    }
+
+    /**
+     * Determines if a product exists in any shard, checking the shards in parallel.
+     * @param barcode The barcode of the product to check.
+     * @return true iff a product exists in at least one shard, else false.
+     */
+    @Override
+    public boolean existsProduct(Barcode barcode) {
+        return shards.parallelStream().anyMatch(shard -> shard.existsProduct(barcode));
+    }
+
+    /**
+     * Removes the highest quality product with corresponding barcode from whichever shard holds
+     * it.
+     * @param barcode The barcode of the product to be removed.
+     * @return A list containing the removed product if it exists, else an empty list.
+     * @throws IllegalStateException if the shard holding it does not hand out its highest quality
+     * products first.
+     */
+    @Override
+    public List<Product> removeProduct(Barcode barcode) {
+        for (int i = QUALITIES.length - 1; i >= 0; i--) {
+            for (Inventory shard : shards) {
+                if (shard.view().getQuantity(barcode, QUALITIES[i]) > 0) {
+                    checkHighestQualityFirst(shard, barcode);
+                    List<Product> removed = shard.removeProduct(barcode);
+                    checkRemovedQuality(shard, barcode, QUALITIES[i], removed);
+                    modificationCount++;
+                    return removed;
+                }
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Removes a given number of products with corresponding barcode from the inventory, taking
+     * them from as many shards as necessary.
+     * <p>
+     * Products are taken highest quality first across all shards. That is, every GOLD egg in
+     * every shard is taken before any SILVER egg is. If there are not enough of a given product in
+     * all shards combined it will return as many of said product as possible.
+     * <p>
+     * If any shard fails part way through, every product already taken from the shards is put
+     * back before the failure is thrown, so a failed removal never loses stock.
+     * @param barcode The barcode of the product to be removed.
+     * @param quantity The total amount of the product to remove from the inventory.
+     * @return A list containing the removed products, ordered from highest to lowest quality.
+     * @throws FailedTransactionException if a shard does not support removing quantities.
+     * @throws IllegalStateException if a shard does not hand out its highest quality products
+     * first.
+     */
+    @Override
+    public List<Product> removeProduct(Barcode barcode, int quantity)
+            throws FailedTransactionException {
+        if (barcode == null || quantity <= 0) {
+            return Collections.emptyList();
+        }
+        for (Inventory shard : shards) {
+            checkHighestQualityFirst(shard, barcode);
+        }
+        List<Product> removed = new ArrayList<>();
+        // the shard each removed product came from, so they can be put back on failure
+        List<Inventory> sources = new ArrayList<>();
+        try {
+            for (int i = QUALITIES.length - 1; i >= 0 && removed.size() < quantity; i--) {
+                for (Inventory shard : shards) {
+                    int available = shard.view().getQuantity(barcode, QUALITIES[i]);
+                    int take = Math.min(available, quantity - removed.size());
+                    if (take > 0) {
+                        // every better quality has been emptied, so this shard's best is
+                        // QUALITIES[i]
+                        List<Product> taken = shard.removeProduct(barcode, take);
+                        checkRemovedQuality(shard, barcode, QUALITIES[i], taken);
+                        removed.addAll(taken);
+                        sources.addAll(Collections.nCopies(taken.size(), shard));
+                    }
+                }
+            }
+        } catch (FailedTransactionException | RuntimeException e) {
+            // a shard failed part way through, so return what the earlier shards handed out
+            for (int i = 0; i < removed.size(); i++) {
+                sources.get(i).addProduct(barcode, removed.get(i).getQuality());
+            }
+            throw e;
+        }
+        modificationCount++;
+        return removed;
+    }
+
+    /**
+     * Retrieves the full stock currently held in every shard, collecting each shard's stock in
+     * parallel.
+     * <p>
+     * The returned list is grouped by product type as per the order defined in {@link Barcode},
+     * and within each type ordered from highest to lowest quality.
+     * @return An organised list containing all products currently stored in the inventory.
+     */
+    @Override
+    public List<Product> getAllProducts() {
+        List<List<Product>> shardProducts = shards.parallelStream()
+                .map(Inventory::getAllProducts)
+                .toList();
+
+        // merge the shards' stock into one bucket per product type and quality
+        List<List<Product>> buckets = new ArrayList<>();
+        for (int i = 0; i < BARCODES.length * QUALITIES.length; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        int total = 0;
+        for (List<Product> products : shardProducts) {
+            for (Product product : products) {
+                buckets.get(slot(product.getBarcode(), product.getQuality())).add(product);
+            }
+            total += products.size();
+        }
+
+        List<Product> allProducts = new ArrayList<>(total);
+        for (Barcode type : Barcode.values()) {
+            for (int i = QUALITIES.length - 1; i >= 0; i--) {
+                allProducts.addAll(buckets.get(slot(type, QUALITIES[i])));
+            }
+        }
+        return allProducts;
+    }
+
+    /**
+     * Retrieves a read-only view of the combined stock of every shard.
+     * <p>
+     * The view is fail-fast with respect to changes made through this inventory; changes made
+     * directly to a shard are reflected in the view but are not detected during iteration.
+     * @return a live, read-only view of the inventory.
+     */
+    @Override
+    public InventoryView view() {
+        return view;
+    }
+
+    /**
+     * Get the quantity of a specific product across all shards.
+     * @param barcode The barcode of the product.
+     * @return The amount of the corresponding product currently in the inventory.
+     */
+    public int getStockedQuantity(Barcode barcode) {
+        int quantity = 0;
+        for (Inventory shard : shards) {
+            quantity += shard.view().getQuantity(barcode);
+        }
+        return quantity;
+    }
+
+    /**
+     * Get the quantity of a specific product of a given quality across all shards.
+     * @param barcode The barcode of the product.
+     * @param quality The quality of the product.
+     * @return The amount of the corresponding product and quality currently in the inventory.
+     */
+    public int getStockedQuantity(Barcode barcode, Quality quality) {
+        return count(barcode, quality);
+    }
+
+    /** Private Helper Methods **/
+
+    private int count(Barcode barcode, Quality quality) {
+        int quantity = 0;
+        for (Inventory shard : shards) {
+            quantity += shard.view().getQuantity(barcode, quality);
+        }
+        return quantity;
+    }
+
+    private Inventory route(Barcode barcode, Quality quality) {
+        return shards.get(routeIndex(barcode, quality));
+    }
+
+    private int routeIndex(Barcode barcode, Quality quality) {
+        Objects.requireNonNull(barcode);
+        return Objects.checkIndex(router.route(barcode, quality, shards.size()), shards.size());
+    }
+
+    private static PickingPolicy getPickingPolicy(Inventory shard, Barcode barcode) {
+        return switch (shard) {
+            case FancyInventory fancy -> fancy.getPickingPolicy(barcode);
+            case BasicInventory basic -> basic.getPickingPolicy(barcode);
+            default -> PickingPolicy.HIGHEST_QUALITY;
+        };
+    }
+
+    /**
+     * Rejects a removal from a shard whose picking policy has been changed since it was added.
+     */
+    private static void checkHighestQualityFirst(Inventory shard, Barcode barcode) {
+        if (getPickingPolicy(shard, barcode) != PickingPolicy.HIGHEST_QUALITY) {
+            throw new IllegalStateException(
+                    "Shards must hand out the highest quality products first.");
+        }
+    }
+
+    /**
+     * Puts back the products removed from a shard, and rejects the removal, if the shard handed
+     * out a lower quality than the best it held.
+     */
+    private static void checkRemovedQuality(Inventory shard, Barcode barcode, Quality expected,
+                                            List<Product> removed) {
+        for (Product product : removed) {
+            if (product.getQuality() != expected) {
+                for (Product putBack : removed) {
+                    shard.addProduct(barcode, putBack.getQuality());
+                }
+                throw new IllegalStateException(
+                        "Shards must hand out the highest quality products first.");
+            }
+        }
+    }
+
+    private static int slot(Barcode barcode, Quality quality) {
+        return barcode.ordinal() * QUALITIES.length + quality.ordinal();
+    }
+}
@@ -0,0 +1,79 @@
+package farm.inventory;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+/**
+ * A list of stock to be added to an inventory in one go, such as the produce from a harvest or
+ * a delivery from a supplier.
+ * <p>
+ * A manifest records how many products of each type and quality are to be stocked. Adding the
+ * same type and quality more than once accumulates the quantities.
+ */
+public class StockManifest {
+    private static final int BARCODE_COUNT = Barcode.values().length;
+    private static final int QUALITY_COUNT = Quality.values().length;
+
+    private final int[] quantities = new int[BARCODE_COUNT * QUALITY_COUNT];
+    private int totalQuantity = 0;
+
+    /**
+     * Adds some quantity of products of the specified type and quality to the manifest.
+     * @param barcode the product type to add.
+     * @param quality the quality of the products to add.
+     * @param quantity the number of products to add.
+     * @return this manifest, so that calls can be chained.
+     * @throws IllegalArgumentException if a negative quantity is provided.
+     */
+    public StockManifest add(Barcode barcode, Quality quality, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative.");
+        }
+        quantities[slot(barcode, quality)] += quantity;
+        totalQuantity += quantity;
+        return this;
+    }
+
+    /**
+     * Retrieves the quantity of products of the specified type and quality in the manifest.
+     * @param barcode the product type.
+     * @param quality the quality of the products.
+     * @return the number of products of that type and quality to be stocked.
+     */
+    public int getQuantity(Barcode barcode, Quality quality) {
+        return quantities[slot(barcode, quality)];
+    }
+
+    /**
+     * Retrieves the quantity of products of the specified type in the manifest, of any quality.
+     * @param barcode the product type.
+     * @return the number of products of that type to be stocked.
+     */
+    public int getQuantity(Barcode barcode) {
+        int quantity = 0;
+        for (int i = 0; i < QUALITY_COUNT; i++) {
+            quantity += quantities[barcode.ordinal() * QUALITY_COUNT + i];
+        }
+        return quantity;
+    }
+
+    /**
+     * Retrieves the total number of products in the manifest.
+     * @return the number of products to be stocked.
+     */
+    public int getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    /**
+     * Determines if the manifest contains no products.
+     * @return true iff there is nothing to be stocked, else false.
+     */
+    public boolean isEmpty() {
+        return totalQuantity == 0;
+    }
+
+    private static int slot(Barcode barcode, Quality quality) {
+        return barcode.ordinal() * QUALITY_COUNT + quality.ordinal();
+    }
+}
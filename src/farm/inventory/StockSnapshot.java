@@ -0,0 +1,171 @@
+package farm.inventory;
+
+import farm.inventory.product.Product;
+import farm.inventory.product.ProductCatalog;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An immutable, point-in-time copy of the stock held in a {@link VersionedInventory}.
+ * <p>
+ * A snapshot keeps one small bucket of counts per product type. Each new version of the inventory
+ * only replaces the buckets for the product types that changed and shares every other bucket with
+ * the version before it, so taking a snapshot never copies the stock, and holding on to an old
+ * snapshot only retains the buckets that have since changed.
+ * <p>
+ * Since a snapshot never changes, it can be read and iterated from any thread, for as long as
+ * needed, without blocking or being affected by changes to the inventory.
+ */
+public final class StockSnapshot implements InventoryView {
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+
+    static final StockSnapshot EMPTY = new StockSnapshot(0,
+            new int[BARCODES.length][], 0);
+
+    private final long version;
+    // counts per quality for each product type, indexed by barcode ordinal; null if none stocked
+    private final int[][] buckets;
+    private final int totalQuantity;
+    private final InventoryView counts = new CountedInventoryView(this::count, null);
+
+    private StockSnapshot(long version, int[][] buckets, int totalQuantity) {
+        this.version = version;
+        this.buckets = buckets;
+        this.totalQuantity = totalQuantity;
+    }
+
+    /**
+     * Retrieves the version of the inventory this snapshot was taken at.
+     * @return the number of changes made to the inventory before this snapshot was taken.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public int getQuantity(Barcode barcode) {
+        if (barcode == null) {
+            return 0;
+        }
+        int[] bucket = buckets[barcode.ordinal()];
+        if (bucket == null) {
+            return 0;
+        }
+        int quantity = 0;
+        for (int count : bucket) {
+            quantity += count;
+        }
+        return quantity;
+    }
+
+    @Override
+    public int getQuantity(Barcode barcode, Quality quality) {
+        return count(barcode, quality);
+    }
+
+    @Override
+    public int getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return totalQuantity == 0;
+    }
+
+    /**
+     * Iterates over every product in the snapshot, grouped by product type as per the order
+     * defined in {@link Barcode}, and within each type from highest to lowest quality.
+     * @return an iterator over the products in the snapshot.
+     */
+    @Override
+    public Iterator<Product> iterator() {
+        return counts.iterator();
+    }
+
+    /**
+     * Lists every product in the snapshot, in the same order as
+     * {@link Inventory#getAllProducts()}.
+     * @return a new list containing the products in the snapshot.
+     */
+    public List<Product> getAllProducts() {
+        List<Product> allProducts = new ArrayList<>(totalQuantity);
+        for (Barcode type : Barcode.values()) {
+            for (int i = QUALITIES.length - 1; i >= 0; i--) {
+                Product product = ProductCatalog.getProduct(type, QUALITIES[i]);
+                allProducts.addAll(Collections.nCopies(count(type, QUALITIES[i]), product));
+            }
+        }
+        return allProducts;
+    }
+
+    /**
+     * Creates the next version of the stock, replacing the counts of one product type and
+     * sharing every other type's counts with this snapshot.
+     * @param barcode the product type whose counts changed.
+     * @param bucket the new counts for the product type, indexed by quality ordinal, which must
+     *               not be modified afterwards.
+     * @return the new snapshot.
+     */
+    StockSnapshot withBucket(Barcode barcode, int[] bucket) {
+        int id = barcode.ordinal();
+        int[][] newBuckets = buckets.clone();
+        newBuckets[id] = bucket;
+        int change = sum(bucket) - getQuantity(barcode);
+        return new StockSnapshot(version + 1, newBuckets, totalQuantity + change);
+    }
+
+    /**
+     * Creates the next version of the stock with every product in the manifest added, sharing
+     * the counts of any product type the manifest does not include.
+     * @param manifest the products to add.
+     * @return the new snapshot.
+     */
+    StockSnapshot withManifest(StockManifest manifest) {
+        int[][] newBuckets = buckets.clone();
+        for (Barcode barcode : Barcode.values()) {
+            if (manifest.getQuantity(barcode) == 0) {
+                continue;
+            }
+            int[] bucket = copyBucket(barcode);
+            for (Quality quality : QUALITIES) {
+                bucket[quality.ordinal()] += manifest.getQuantity(barcode, quality);
+            }
+            newBuckets[barcode.ordinal()] = bucket;
+        }
+        return new StockSnapshot(version + 1, newBuckets,
+                totalQuantity + manifest.getTotalQuantity());
+    }
+
+    /**
+     * Copies the counts of one product type, so that they can be changed for a new version.
+     * @param barcode the product type.
+     * @return a new array of counts, indexed by quality ordinal.
+     */
+    int[] copyBucket(Barcode barcode) {
+        int[] bucket = buckets[barcode.ordinal()];
+        return bucket == null ? new int[QUALITIES.length] : bucket.clone();
+    }
+
+    private int count(Barcode barcode, Quality quality) {
+        if (barcode == null) {
+            return 0;
+        }
+        int[] bucket = buckets[barcode.ordinal()];
+        return bucket == null ? 0 : bucket[quality.ordinal()];
+    }
+
+    private static int sum(int[] bucket) {
+        int total = 0;
+        for (int count : bucket) {
+            total += count;
+        }
+        return total;
+    }
+}
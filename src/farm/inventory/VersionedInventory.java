@@ -0,0 +1,195 @@
+package farm.inventory;
+
+import farm.core.FailedTransactionException;
+import farm.core.InvalidStockRequestException;
+import farm.inventory.product.Product;
+import farm.inventory.product.ProductCatalog;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A fancy inventory which keeps every version of its stock as an immutable {@link StockSnapshot},
+ * so that reports can read a consistent point-in-time view while sales carry on.
+ * <p>
+ * Every change builds the next version from the current one, copying only the counts for the
+ * product type being changed (see {@link StockSnapshot}), and then publishes it with a single
+ * atomic compare-and-set. If another thread published a version in the meantime, the change is
+ * simply retried against the newer version. Readers never block writers and writers never block
+ * readers: {@link VersionedInventory#snapshot()} just returns the current version, which stays
+ * valid and unchanged for as long as the reader needs it.
+ * <p>
+ * As with a {@link CountingInventory}, the highest quality products are always removed first.
+ * All methods are safe to call from multiple threads.
+ */
+public class VersionedInventory implements Inventory {
+    private static final Quality[] QUALITIES = Quality.values();
+
+    private final AtomicReference<StockSnapshot> current =
+            new AtomicReference<>(StockSnapshot.EMPTY);
+    private final InventoryView view = new InventoryView() {
+        @Override
+        public int getQuantity(Barcode barcode) {
+            return snapshot().getQuantity(barcode);
+        }
+
+        @Override
+        public int getQuantity(Barcode barcode, Quality quality) {
+            return snapshot().getQuantity(barcode, quality);
+        }
+
+        @Override
+        public int getTotalQuantity() {
+            return snapshot().getTotalQuantity();
+        }
+
+        @Override
+        public Iterator<Product> iterator() {
+            return snapshot().iterator();
+        }
+    };
+
+    /**
+     * Retrieves an immutable snapshot of the stock currently held in the inventory.
+     * <p>
+     * This does not copy any stock, and the snapshot is unaffected by later changes.
+     * @return the current version of the inventory's stock.
+     */
+    public StockSnapshot snapshot() {
+        return current.get();
+    }
+
+    @Override
+    public void addProduct(Barcode barcode, Quality quality) {
+        try {
+            addProduct(barcode, quality, 1);
+        } catch (InvalidStockRequestException ignored) {
+            // never thrown by a versioned inventory
+        }
+    }
+
+    /**
+     * Adds multiple of the product with corresponding barcode to the inventory.
+     * @param barcode the barcode of the product to add.
+     * @param quality the quality of added product.
+     * @param quantity the amount of the product to add.
+     * @throws IllegalArgumentException if a negative quantity is provided.
+     */
+    @Override
+    public void addProduct(Barcode barcode, Quality quality, int quantity)
+            throws InvalidStockRequestException {
+        Objects.requireNonNull(barcode);
+        Objects.requireNonNull(quality);
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative.");
+        }
+        StockSnapshot version;
+        StockSnapshot next;
+        do {
+            version = current.get();
+            int[] bucket = version.copyBucket(barcode);
+            bucket[quality.ordinal()] += quantity;
+            next = version.withBucket(barcode, bucket);
+        } while (!current.compareAndSet(version, next));
+    }
+
+    /**
+     * Adds every product listed in the given manifest to the inventory as a single new version,
+     * so that no snapshot ever contains only part of the manifest.
+     * @param manifest the products to add.
+     */
+    @Override
+    public void addProducts(StockManifest manifest) {
+        StockSnapshot version;
+        do {
+            version = current.get();
+        } while (!current.compareAndSet(version, version.withManifest(manifest)));
+    }
+
+    @Override
+    public boolean existsProduct(Barcode barcode) {
+        return snapshot().getQuantity(barcode) > 0;
+    }
+
+    /**
+     * Removes the highest quality product with corresponding barcode from the inventory.
+     * @param barcode The barcode of the product to be removed.
+     * @return A list containing the removed product if it exists, else an empty list.
+     */
+    @Override
+    public List<Product> removeProduct(Barcode barcode) {
+        try {
+            return removeProduct(barcode, 1);
+        } catch (FailedTransactionException ignored) {
+            // never thrown by a versioned inventory
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Removes a given number of products with corresponding barcode from the inventory, choosing
+     * the highest quality products possible.
+     * <p>
+     * If there are not enough of a given product in the inventory it will return as many of said
+     * product as possible.
+     * @param barcode The barcode of the product to be removed.
+     * @param quantity The total amount of the product to remove from the inventory.
+     * @return A list containing the removed products, ordered from highest to lowest quality.
+     */
+    @Override
+    public List<Product> removeProduct(Barcode barcode, int quantity)
+            throws FailedTransactionException {
+        if (quantity <= 0) {
+            return Collections.emptyList();
+        }
+        while (true) {
+            StockSnapshot version = current.get();
+            if (version.getQuantity(barcode) == 0) {
+                return Collections.emptyList();
+            }
+            int[] bucket = version.copyBucket(barcode);
+            int[] taken = new int[QUALITIES.length];
+            int remaining = quantity;
+            for (int i = QUALITIES.length - 1; i >= 0 && remaining > 0; i--) {
+                taken[i] = Math.min(bucket[i], remaining);
+                bucket[i] -= taken[i];
+                remaining -= taken[i];
+            }
+            if (current.compareAndSet(version, version.withBucket(barcode, bucket))) {
+                List<Product> removed = new ArrayList<>(quantity - remaining);
+                for (int i = QUALITIES.length - 1; i >= 0; i--) {
+                    Product product = ProductCatalog.getProduct(barcode, QUALITIES[i]);
+                    removed.addAll(Collections.nCopies(taken[i], product));
+                }
+                return removed;
+            }
+        }
+    }
+
+    /**
+     * Retrieves the full stock currently held in the inventory, as of a single version.
+     * <p>
+     * The returned list is grouped by product type as per the order defined in {@link Barcode},
+     * and within each type ordered from highest to lowest quality.
+     * @return An organised list containing all products currently stored in the inventory.
+     */
+    @Override
+    public List<Product> getAllProducts() {
+        return snapshot().getAllProducts();
+    }
+
+    /**
+     * Retrieves a read-only view of the stock currently held in the inventory.
+     * <p>
+     * Each query through the view reads the latest version, and each iteration walks the
+     * version that was current when it began. Iterating therefore never fails, and never mixes
+     * products from different versions, even while the inventory is being changed.
+     * @return a live, read-only view of the inventory.
+     */
+    @Override
+    public InventoryView view() {
+        return view;
+    }
+}
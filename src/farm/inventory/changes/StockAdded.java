@@ -0,0 +1,15 @@
+package farm.inventory.changes;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+/**
+ * Records that products were added to an inventory.
+ * @param barcode the type of the products added.
+ * @param quality the quality of the products added.
+ * @param delta the number of products added.
+ * @param sequence the sequence number of the change.
+ */
+public record StockAdded(Barcode barcode, Quality quality, int delta, long sequence)
+        implements StockChange {
+}
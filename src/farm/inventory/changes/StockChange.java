@@ -0,0 +1,45 @@
+package farm.inventory.changes;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+/**
+ * A change made to the stock held in an inventory.
+ * <p>
+ * Every change is numbered with the sequence number it was published under on a
+ * {@link StockChangeRing}, so subscribers can tell whether they have missed any.
+ */
+public sealed interface StockChange permits StockAdded, StockRemoved {
+
+    /**
+     * Retrieves the type of the products which changed.
+     * @return the barcode of the products.
+     */
+    Barcode barcode();
+
+    /**
+     * Retrieves the quality of the products which changed.
+     * @return the quality of the products.
+     */
+    Quality quality();
+
+    /**
+     * Retrieves the number of products which changed.
+     * @return the (positive) number of products added or removed.
+     */
+    int delta();
+
+    /**
+     * Retrieves the sequence number of the change.
+     * @return the position of the change in the stream of changes.
+     */
+    long sequence();
+
+    /**
+     * Retrieves the change in the stock count caused by this change.
+     * @return the delta for additions, or the negated delta for removals.
+     */
+    default int signedDelta() {
+        return this instanceof StockRemoved ? -delta() : delta();
+    }
+}
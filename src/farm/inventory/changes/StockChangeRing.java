@@ -0,0 +1,79 @@
+package farm.inventory.changes;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+/**
+ * A bounded, lock-free ring buffer which broadcasts stock changes to any number of subscribers.
+ * <p>
+ * Publishers claim the next sequence number and write their change into the ring slot for that
+ * number, overwriting whatever change was there one lap earlier. Publishing never blocks and
+ * never waits for subscribers. Each {@link StockChangeSubscription} keeps its own position in the
+ * ring; a subscriber which falls more than one full lap behind has missed changes, and is told
+ * so rather than being handed later changes out of order.
+ * <p>
+ * All methods are safe to call from multiple threads.
+ */
+public class StockChangeRing {
+    private final AtomicReferenceArray<StockChange> entries;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    /**
+     * Creates an empty ring.
+     * @param capacity the number of changes the ring holds before it wraps around; must be a
+     *                 power of two.
+     * @throws IllegalArgumentException if the capacity is not a positive power of two.
+     */
+    public StockChangeRing(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two.");
+        }
+        this.entries = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Publishes a change to every subscriber.
+     * @param change creates the change to publish, given the sequence number claimed for it.
+     * @return the sequence number of the published change.
+     */
+    public long publish(LongFunction<? extends StockChange> change) {
+        long sequence = nextSequence.getAndIncrement();
+        StockChange published = change.apply(sequence);
+        // a publisher from a later lap may already have filled this slot; never overwrite it
+        entries.accumulateAndGet((int) (sequence & mask), published,
+                (current, mine) -> current == null || current.sequence() < mine.sequence()
+                        ? mine : current);
+        return sequence;
+    }
+
+    /**
+     * Subscribes to every change published from now on.
+     * @return a new subscription.
+     */
+    public StockChangeSubscription subscribe() {
+        return new StockChangeSubscription(this, nextSequence.get());
+    }
+
+    /**
+     * Retrieves the sequence number the next published change will receive.
+     * @return the number of changes published so far.
+     */
+    public long getNextSequence() {
+        return nextSequence.get();
+    }
+
+    /**
+     * Retrieves the number of changes the ring holds before it wraps around.
+     * @return the capacity of the ring.
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    StockChange get(long sequence) {
+        return entries.get((int) (sequence & mask));
+    }
+}
@@ -0,0 +1,84 @@
+package farm.inventory.changes;
+
+import java.util.function.Consumer;
+
+/**
+ * A subscriber's position in a {@link StockChangeRing}.
+ * <p>
+ * A subscription hands out changes in sequence order, without gaps. If the subscriber falls so
+ * far behind that the ring has overwritten changes it has not yet read, the subscription is
+ * marked as overrun and hands out nothing further; the subscriber must then rebuild its state
+ * some other way and {@link StockChangeSubscription#resubscribe() resubscribe}.
+ * <p>
+ * A subscription should only be used by one thread at a time.
+ */
+public class StockChangeSubscription {
+    private final StockChangeRing ring;
+    private long cursor;
+    private boolean overrun = false;
+
+    StockChangeSubscription(StockChangeRing ring, long cursor) {
+        this.ring = ring;
+        this.cursor = cursor;
+    }
+
+    /**
+     * Retrieves the next change, if it has been published.
+     * @return the next change, or null if there is none yet or the subscription is overrun.
+     */
+    public StockChange poll() {
+        if (overrun) {
+            return null;
+        }
+        StockChange change = ring.get(cursor);
+        if (change == null || change.sequence() < cursor) {
+            return null; // not published yet
+        }
+        if (change.sequence() > cursor) {
+            overrun = true; // overwritten before it was read
+            return null;
+        }
+        cursor++;
+        return change;
+    }
+
+    /**
+     * Passes every change published so far to the given consumer, in order.
+     * @param consumer the consumer of the changes.
+     * @return the number of changes consumed.
+     */
+    public int drain(Consumer<? super StockChange> consumer) {
+        int drained = 0;
+        StockChange change;
+        while ((change = poll()) != null) {
+            consumer.accept(change);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Determines if the subscriber fell too far behind and missed changes.
+     * @return true iff changes were overwritten before they were read, else false.
+     */
+    public boolean isOverrun() {
+        return overrun;
+    }
+
+    /**
+     * Skips to the latest change, clearing any overrun, so that only changes published from now
+     * on are handed out.
+     */
+    public void resubscribe() {
+        cursor = ring.getNextSequence();
+        overrun = false;
+    }
+
+    /**
+     * Retrieves the sequence number of the next change this subscription will hand out.
+     * @return the subscription's position in the ring.
+     */
+    public long getCursor() {
+        return cursor;
+    }
+}
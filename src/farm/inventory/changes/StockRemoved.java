@@ -0,0 +1,15 @@
+package farm.inventory.changes;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+/**
+ * Records that products were removed from an inventory.
+ * @param barcode the type of the products removed.
+ * @param quality the quality of the products removed.
+ * @param delta the number of products removed.
+ * @param sequence the sequence number of the change.
+ */
+public record StockRemoved(Barcode barcode, Quality quality, int delta, long sequence)
+        implements StockChange {
+}
@@ -0,0 +1,79 @@
+package farm.inventory.metrics;
+
+/**
+ * An immutable copy of the latencies recorded by a {@link LatencyHistogram}.
+ */
+public final class HistogramSnapshot {
+    private final long[] counts;
+    private final long totalCount;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    HistogramSnapshot(long[] counts, long totalCount, long totalNanos, long maxNanos) {
+        this.counts = counts;
+        this.totalCount = totalCount;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * Retrieves the number of latencies recorded.
+     * @return the number of latencies recorded.
+     */
+    public long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * Retrieves the sum of every latency recorded.
+     * @return the total latency in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Retrieves the mean of the latencies recorded.
+     * @return the mean latency in nanoseconds, or 0 if nothing has been recorded.
+     */
+    public double getMeanNanos() {
+        return totalCount == 0 ? 0 : (double) totalNanos / totalCount;
+    }
+
+    /**
+     * Retrieves the largest latency recorded, exactly.
+     * @return the largest latency in nanoseconds, or 0 if nothing has been recorded.
+     */
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * Finds the latency which the given percentage of recorded latencies do not exceed, to
+     * within the precision of the histogram.
+     * @param percentile the percentage of latencies, from 0 to 100.
+     * @return the latency in nanoseconds at the percentile, or 0 if nothing has been recorded.
+     * @throws IllegalArgumentException if the percentile is not between 0 and 100.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+        }
+        long recorded = 0;
+        for (long count : counts) {
+            recorded += count;
+        }
+        if (recorded == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * recorded));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(LatencyHistogram.highestValueAt(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+}
@@ -0,0 +1,126 @@
+package farm.inventory.metrics;
+
+import farm.inventory.product.data.Barcode;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Live measurements of the operations performed on an inventory: a {@link LatencyHistogram} for
+ * each {@link Operation}, and, for each product type, the number of calls and the time spent on
+ * each operation along with the number of units added and removed.
+ * <p>
+ * Every counter is a plain atomic, indexed by operation ordinal and barcode ordinal, so
+ * recording an operation never allocates or locks. Use {@link InventoryMetrics#snapshot()} to
+ * read the measurements.
+ * <p>
+ * All methods are safe to call from multiple threads.
+ */
+public class InventoryMetrics {
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final Barcode[] BARCODES = Barcode.values();
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    // calls and nanoseconds per operation and product type, indexed by cell()
+    private final AtomicLongArray barcodeCalls;
+    private final AtomicLongArray barcodeNanos;
+    // units moved per product type, indexed by barcode ordinal
+    private final AtomicLongArray unitsAdded;
+    private final AtomicLongArray unitsRemoved;
+
+    /**
+     * Creates a set of metrics with nothing recorded.
+     */
+    public InventoryMetrics() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        barcodeCalls = new AtomicLongArray(OPERATIONS.length * BARCODES.length);
+        barcodeNanos = new AtomicLongArray(OPERATIONS.length * BARCODES.length);
+        unitsAdded = new AtomicLongArray(BARCODES.length);
+        unitsRemoved = new AtomicLongArray(BARCODES.length);
+    }
+
+    /**
+     * Records an operation which does not concern a single product type, such as adding a
+     * manifest or listing all products.
+     * @param operation the operation performed.
+     * @param nanos how long the operation took, in nanoseconds.
+     */
+    public void record(Operation operation, long nanos) {
+        latencies[operation.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records an operation on a single product type.
+     * @param operation the operation performed.
+     * @param barcode the product type the operation was performed on, or null if the operation
+     *                was given no product type; only its latency is then recorded.
+     * @param nanos how long the operation took, in nanoseconds.
+     */
+    public void record(Operation operation, Barcode barcode, long nanos) {
+        latencies[operation.ordinal()].record(nanos);
+        if (barcode == null) {
+            return;
+        }
+        int cell = cell(operation, barcode);
+        barcodeCalls.incrementAndGet(cell);
+        barcodeNanos.addAndGet(cell, Math.max(0, nanos));
+    }
+
+    /**
+     * Records units of a product type being added to the inventory.
+     * @param barcode the product type added.
+     * @param units the number of units added.
+     */
+    public void recordAdded(Barcode barcode, int units) {
+        if (units > 0) {
+            unitsAdded.addAndGet(barcode.ordinal(), units);
+        }
+    }
+
+    /**
+     * Records units of a product type being removed from the inventory.
+     * @param barcode the product type removed.
+     * @param units the number of units removed.
+     */
+    public void recordRemoved(Barcode barcode, int units) {
+        if (units > 0) {
+            unitsRemoved.addAndGet(barcode.ordinal(), units);
+        }
+    }
+
+    /**
+     * Takes a copy of everything recorded so far.
+     * @return an immutable snapshot of the metrics.
+     */
+    public MetricsSnapshot snapshot() {
+        Map<Operation, HistogramSnapshot> histograms = new EnumMap<>(Operation.class);
+        for (Operation operation : OPERATIONS) {
+            histograms.put(operation, latencies[operation.ordinal()].snapshot());
+        }
+        return new MetricsSnapshot(histograms, copy(barcodeCalls), copy(barcodeNanos),
+                copy(unitsAdded), copy(unitsRemoved));
+    }
+
+    /**
+     * Finds the counter for an operation on a product type.
+     * @param operation the operation.
+     * @param barcode the product type.
+     * @return the index of the counter in the per product type counters.
+     */
+    static int cell(Operation operation, Barcode barcode) {
+        return operation.ordinal() * BARCODES.length + barcode.ordinal();
+    }
+
+    /** Private Helper Methods **/
+
+    private static long[] copy(AtomicLongArray counters) {
+        long[] copy = new long[counters.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counters.get(i);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,82 @@
+package farm.inventory.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size histogram of latencies in nanoseconds, in the style of HdrHistogram.
+ * <p>
+ * Latencies below 32ns are counted exactly. Above that, each power of two is split into 32
+ * equally sized buckets, so every recorded latency is counted to within about 3% of its true
+ * value, from nanoseconds up to years, in fewer than two thousand counters. Finding a latency's
+ * bucket takes a couple of shifts, and recording never allocates or locks, so the histogram is
+ * cheap enough to sit on the inventory's hot path.
+ * <p>
+ * All methods are safe to call from multiple threads. A snapshot taken while latencies are being
+ * recorded may include some of those latencies and not others.
+ */
+public class LatencyHistogram {
+    // number of bits of each latency that are kept exactly
+    private static final int PRECISION_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << PRECISION_BITS;
+    private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+    private static final int BUCKET_COUNT =
+            (Long.SIZE - PRECISION_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records a single latency.
+     * @param nanos the latency in nanoseconds; negative latencies are recorded as zero.
+     */
+    public void record(long nanos) {
+        long latency = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(latency));
+        totalCount.incrementAndGet();
+        totalNanos.addAndGet(latency);
+        maxNanos.accumulateAndGet(latency, Math::max);
+    }
+
+    /**
+     * Takes a copy of the latencies recorded so far.
+     * @return an immutable snapshot of the histogram.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new HistogramSnapshot(copy, totalCount.get(), totalNanos.get(), maxNanos.get());
+    }
+
+    /**
+     * Finds the bucket a latency is counted in.
+     * @param nanos a non-negative latency in nanoseconds.
+     * @return the index of the latency's bucket.
+     */
+    static int indexOf(long nanos) {
+        if (nanos < SUB_BUCKET_COUNT) {
+            return (int) nanos;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos)) - PRECISION_BITS;
+        return ((shift + 1) << PRECISION_BITS) | (int) ((nanos >>> shift) & SUB_BUCKET_MASK);
+    }
+
+    /**
+     * Finds the largest latency counted in a bucket.
+     * @param index the index of the bucket.
+     * @return the largest latency in nanoseconds which {@link LatencyHistogram#indexOf(long)}
+     * maps to the bucket.
+     */
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >>> PRECISION_BITS) - 1;
+        long lowest = (long) (SUB_BUCKET_COUNT | (index & SUB_BUCKET_MASK)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,67 @@
+package farm.inventory.metrics;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Periodically dumps a text report of an {@link InventoryMetrics} from a background thread, for
+ * example to a log or standard error.
+ * <p>
+ * Reporters are started with {@link MetricsReporter#start(InventoryMetrics, Consumer, long,
+ * TimeUnit)}. The reporter runs on a single daemon thread, so it never keeps the program alive.
+ * Closing the reporter stops it.
+ */
+public final class MetricsReporter implements AutoCloseable {
+    private final InventoryMetrics metrics;
+    private final Consumer<String> output;
+    private final ScheduledExecutorService scheduler;
+
+    private MetricsReporter(InventoryMetrics metrics, Consumer<String> output) {
+        this.metrics = metrics;
+        this.output = output;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "inventory-metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts reporting metrics.
+     * <p>
+     * The first report is written once the first period has passed.
+     * @param metrics the metrics to report.
+     * @param output receives each report, formatted by {@link MetricsSnapshot#format()}.
+     * @param period the time between reports.
+     * @param unit the unit of the period.
+     * @return the running reporter, which must be closed to stop reporting.
+     * @throws IllegalArgumentException if the period is not positive.
+     */
+    public static MetricsReporter start(InventoryMetrics metrics, Consumer<String> output,
+                                        long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive.");
+        }
+        // only scheduled once fully constructed, so no report can see a partly built reporter
+        MetricsReporter reporter = new MetricsReporter(metrics, output);
+        reporter.scheduler.scheduleAtFixedRate(reporter::report, period, period, unit);
+        return reporter;
+    }
+
+    /**
+     * Dumps a report immediately, on the calling thread.
+     */
+    public void report() {
+        output.accept(metrics.snapshot().format());
+    }
+
+    /**
+     * Stops reporting. A report which is already being written is allowed to finish.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+    }
+}
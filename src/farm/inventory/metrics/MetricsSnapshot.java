@@ -0,0 +1,132 @@
+package farm.inventory.metrics;
+
+import farm.inventory.product.data.Barcode;
+
+import java.util.Map;
+
+/**
+ * An immutable copy of the measurements held by an {@link InventoryMetrics}.
+ */
+public final class MetricsSnapshot {
+    private final Map<Operation, HistogramSnapshot> histograms;
+    private final long[] barcodeCalls;
+    private final long[] barcodeNanos;
+    private final long[] unitsAdded;
+    private final long[] unitsRemoved;
+
+    MetricsSnapshot(Map<Operation, HistogramSnapshot> histograms, long[] barcodeCalls,
+                    long[] barcodeNanos, long[] unitsAdded, long[] unitsRemoved) {
+        this.histograms = histograms;
+        this.barcodeCalls = barcodeCalls;
+        this.barcodeNanos = barcodeNanos;
+        this.unitsAdded = unitsAdded;
+        this.unitsRemoved = unitsRemoved;
+    }
+
+    /**
+     * Retrieves the latencies recorded for an operation.
+     * @param operation the operation.
+     * @return the operation's latency histogram.
+     */
+    public HistogramSnapshot getLatencies(Operation operation) {
+        return histograms.get(operation);
+    }
+
+    /**
+     * Retrieves the number of times an operation was performed, on any product type.
+     * @param operation the operation.
+     * @return the number of calls recorded.
+     */
+    public long getCalls(Operation operation) {
+        return histograms.get(operation).getCount();
+    }
+
+    /**
+     * Retrieves the number of times an operation was performed on a product type.
+     * @param operation the operation.
+     * @param barcode the product type.
+     * @return the number of calls recorded.
+     */
+    public long getCalls(Operation operation, Barcode barcode) {
+        return barcodeCalls[InventoryMetrics.cell(operation, barcode)];
+    }
+
+    /**
+     * Retrieves the total time spent performing an operation on a product type.
+     * @param operation the operation.
+     * @param barcode the product type.
+     * @return the total time in nanoseconds.
+     */
+    public long getNanos(Operation operation, Barcode barcode) {
+        return barcodeNanos[InventoryMetrics.cell(operation, barcode)];
+    }
+
+    /**
+     * Retrieves the total time spent on every operation on a product type.
+     * @param barcode the product type.
+     * @return the total time in nanoseconds.
+     */
+    public long getNanos(Barcode barcode) {
+        long nanos = 0;
+        for (Operation operation : Operation.values()) {
+            nanos += getNanos(operation, barcode);
+        }
+        return nanos;
+    }
+
+    /**
+     * Retrieves the number of units of a product type added to the inventory.
+     * @param barcode the product type.
+     * @return the number of units added.
+     */
+    public long getUnitsAdded(Barcode barcode) {
+        return unitsAdded[barcode.ordinal()];
+    }
+
+    /**
+     * Retrieves the number of units of a product type removed from the inventory.
+     * @param barcode the product type.
+     * @return the number of units removed.
+     */
+    public long getUnitsRemoved(Barcode barcode) {
+        return unitsRemoved[barcode.ordinal()];
+    }
+
+    /**
+     * Formats the snapshot as a plain text report, with one row per operation giving its call
+     * count and latency percentiles in microseconds, followed by one row per product type giving
+     * the units moved and the time spent on it.
+     * @return the report.
+     */
+    public String format() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-24s %10s %10s %10s %10s %10s %10s%n", "operation",
+                "calls", "mean(us)", "p50(us)", "p99(us)", "p99.9(us)", "max(us)"));
+        for (Operation operation : Operation.values()) {
+            HistogramSnapshot latencies = getLatencies(operation);
+            report.append(String.format("%-24s %10d %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                    operation, latencies.getCount(), latencies.getMeanNanos() / 1000,
+                    micros(latencies.getValueAtPercentile(50)),
+                    micros(latencies.getValueAtPercentile(99)),
+                    micros(latencies.getValueAtPercentile(99.9)),
+                    micros(latencies.getMaxNanos())));
+        }
+        report.append(String.format("%-24s %10s %10s %10s%n", "barcode", "added", "removed",
+                "time(ms)"));
+        for (Barcode barcode : Barcode.values()) {
+            report.append(String.format("%-24s %10d %10d %10.3f%n", barcode,
+                    getUnitsAdded(barcode), getUnitsRemoved(barcode),
+                    getNanos(barcode) / 1_000_000.0));
+        }
+        return report.toString();
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
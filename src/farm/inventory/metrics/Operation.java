@@ -0,0 +1,22 @@
+package farm.inventory.metrics;
+
+/**
+ * The inventory operations which are measured by {@link InventoryMetrics}, one for each method
+ * of {@link farm.inventory.Inventory} that reads or changes stock.
+ */
+public enum Operation {
+    /** Adding a single product. */
+    ADD_PRODUCT,
+    /** Adding several products of one type and quality. */
+    ADD_PRODUCT_QUANTITY,
+    /** Adding every product in a delivery manifest. */
+    ADD_PRODUCTS,
+    /** Checking whether a product type is stocked. */
+    EXISTS_PRODUCT,
+    /** Removing a single product. */
+    REMOVE_PRODUCT,
+    /** Removing several products of one type. */
+    REMOVE_PRODUCT_QUANTITY,
+    /** Listing all stocked products. */
+    GET_ALL_PRODUCTS
+}
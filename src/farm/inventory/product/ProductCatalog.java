@@ -0,0 +1,50 @@
+package farm.inventory.product;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+/**
+ * A catalog of shared product instances, one for every barcode and quality pair.
+ * <p>
+ * Products are immutable and are considered equal whenever their barcode and quality match,
+ * so there is no need for more than one instance of each. Anything that needs to produce a
+ * product (e.g. an inventory handing out stock, or an animal being harvested) should retrieve it
+ * from the catalog rather than constructing a new one.
+ */
+public class ProductCatalog {
+    private static final Product[][] PRODUCTS =
+            new Product[Barcode.values().length][Quality.values().length];
+
+    static {
+        for (Barcode barcode : Barcode.values()) {
+            for (Quality quality : Quality.values()) {
+                PRODUCTS[barcode.ordinal()][quality.ordinal()] = createProduct(barcode, quality);
+            }
+        }
+    }
+
+    private ProductCatalog() {
+    }
+
+    /**
+     * Retrieves the shared product instance with the given barcode and quality.
+     * @param barcode the barcode of the product.
+     * @param quality the quality of the product.
+     * @return the product matching the barcode and quality.
+     * @throws NullPointerException if the barcode or quality is null.
+     */
+    public static Product getProduct(Barcode barcode, Quality quality) {
+        return PRODUCTS[barcode.ordinal()][quality.ordinal()];
+    }
+
+    private static Product createProduct(Barcode barcode, Quality quality) {
+        return switch (barcode) {
+            case Barcode.EGG -> new Egg(quality);
+            case Barcode.MILK -> new Milk(quality);
+            case Barcode.JAM -> new Jam(quality);
+            case Barcode.WOOL -> new Wool(quality);
+            case Barcode.BREAD -> new Bread(quality);
+            case Barcode.COFFEE -> new Coffee(quality);
+        };
+    }
+}
@@ -0,0 +1,171 @@
+package farm.inventory.timing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * A hierarchical timing wheel which schedules items to expire at a given time, for deadlines
+ * that may be much further away than one turn of a single {@link TimingWheel}.
+ * <p>
+ * The wheel is made of several levels, each with the same number of slots. A slot on the lowest
+ * level covers one tick; a slot on each higher level covers one full turn of the level below it.
+ * An item is placed on the lowest level that can hold its deadline without wrapping around. As
+ * time passes, the items in a higher level slot are moved down ("cascaded") once that slot is
+ * reached, until they land on the lowest level and expire. Advancing the wheel therefore only
+ * touches items which are expiring or being cascaded, never the whole schedule.
+ * <p>
+ * Deadlines are rounded down to the start of their tick, so items may expire up to one tick early
+ * but never late.
+ * <p>
+ * All methods are synchronized, so a wheel may be shared between threads.
+ * @param <T> the type of item being scheduled.
+ */
+public class HierarchicalTimingWheel<T> {
+    private final long tickMillis;
+    private final int wheelSize;
+    private final List<List<Queue<Timeout<T>>>> levels;
+    private long currentTick;
+    private int scheduled = 0;
+
+    /**
+     * Creates a new hierarchical timing wheel.
+     * <p>
+     * Deadlines up to {@code tickMillis * wheelSize^levelCount} milliseconds away are placed
+     * exactly; later deadlines wait on the highest level until they come into range.
+     * @param tickMillis the length of each tick on the lowest level, in milliseconds.
+     * @param wheelSize the number of slots on each level.
+     * @param levelCount the number of levels.
+     * @param startMillis the time at which the wheel starts, in milliseconds.
+     * @throws IllegalArgumentException if the tick length or level count is not positive, or
+     * the wheel size is less than 2.
+     */
+    public HierarchicalTimingWheel(long tickMillis, int wheelSize, int levelCount,
+                                   long startMillis) {
+        if (tickMillis <= 0 || wheelSize < 2 || levelCount <= 0) {
+            throw new IllegalArgumentException("Tick length and level count must be positive, "
+                    + "and levels must have at least two slots.");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.levels = new ArrayList<>(levelCount);
+        for (int level = 0; level < levelCount; level++) {
+            List<Queue<Timeout<T>>> slots = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                slots.add(new ArrayDeque<>());
+            }
+            levels.add(slots);
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * Schedules an item to expire at the given time.
+     * <p>
+     * Items whose deadline has already passed expire on the next call to
+     * {@link HierarchicalTimingWheel#advance(long)}.
+     * @param item the item to schedule.
+     * @param deadlineMillis the time at which the item expires, in milliseconds.
+     * @return a handle which can be used to cancel the scheduled expiry.
+     */
+    public synchronized Timeout<T> schedule(T item, long deadlineMillis) {
+        Timeout<T> timeout = new Timeout<>(item, Math.max(deadlineMillis / tickMillis,
+                currentTick + 1));
+        place(timeout);
+        scheduled++;
+        return timeout;
+    }
+
+    /**
+     * Advances the wheel to the given time, expiring every item whose deadline has passed.
+     * <p>
+     * Cancelled items are discarded without being returned.
+     * @param nowMillis the current time, in milliseconds.
+     * @return the expired items, in order of their deadlines.
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            if (scheduled == 0) {
+                currentTick = targetTick; // nothing to cascade or expire on the way
+                break;
+            }
+            currentTick++;
+            cascade();
+            Queue<Timeout<T>> slot = levels.getFirst().get(slotIndex(currentTick, 1));
+            while (!slot.isEmpty()) {
+                Timeout<T> timeout = slot.remove();
+                scheduled--;
+                if (timeout.expire()) {
+                    expired.add(timeout.getItem());
+                }
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Retrieves the number of items on the wheel, including those cancelled but not yet
+     * discarded.
+     * @return the number of scheduled items.
+     */
+    public synchronized int size() {
+        return scheduled;
+    }
+
+    /**
+     * Moves the items in every higher level slot which begins at the current tick down to the
+     * levels below, highest level first.
+     */
+    private void cascade() {
+        long span = 1; // ticks covered by one slot on the current level
+        int reached = 0; // the highest level with a slot beginning at the current tick
+        for (int level = 1; level < levels.size(); level++) {
+            span *= wheelSize;
+            if (currentTick % span != 0) {
+                break;
+            }
+            reached = level;
+        }
+
+        for (int level = reached; level >= 1; level--) {
+            Queue<Timeout<T>> slot = levels.get(level).get(slotIndex(currentTick, spanOf(level)));
+            List<Timeout<T>> moving = new ArrayList<>(slot);
+            slot.clear();
+            for (Timeout<T> timeout : moving) {
+                if (timeout.isCancelled()) {
+                    scheduled--;
+                } else {
+                    place(timeout);
+                }
+            }
+        }
+    }
+
+    private void place(Timeout<T> timeout) {
+        long deadlineTick = timeout.getDeadlineTick();
+        int top = levels.size() - 1;
+        int level = 0;
+        long span = 1;
+        // use the lowest level whose current turn also contains the deadline
+        while (level < top && deadlineTick / (span * wheelSize) != currentTick / (span * wheelSize)) {
+            level++;
+            span *= wheelSize;
+        }
+        levels.get(level).get(slotIndex(deadlineTick, span)).add(timeout);
+    }
+
+    private long spanOf(int level) {
+        long span = 1;
+        for (int i = 0; i < level; i++) {
+            span *= wheelSize;
+        }
+        return span;
+    }
+
+    private int slotIndex(long tick, long span) {
+        return (int) Math.floorMod(tick / span, (long) wheelSize);
+    }
+}
@@ -0,0 +1,57 @@
+package farm.inventory.timing;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A handle to an item scheduled on a {@link TimingWheel}.
+ * <p>
+ * A timeout either expires or is cancelled, never both.
+ * @param <T> the type of item being scheduled.
+ */
+public class Timeout<T> {
+    private final T item;
+    private final long deadlineTick;
+    private final AtomicBoolean done = new AtomicBoolean(false);
+    private volatile boolean cancelled = false;
+
+    Timeout(T item, long deadlineTick) {
+        this.item = item;
+        this.deadlineTick = deadlineTick;
+    }
+
+    /**
+     * Retrieves the scheduled item.
+     * @return the item this timeout was scheduled for.
+     */
+    public T getItem() {
+        return item;
+    }
+
+    /**
+     * Cancels the timeout, provided it has not already expired.
+     * @return true iff the timeout was cancelled by this call.
+     */
+    public boolean cancel() {
+        if (done.compareAndSet(false, true)) {
+            cancelled = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Determines if the timeout has been cancelled.
+     * @return true iff the timeout was cancelled before it expired.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    long getDeadlineTick() {
+        return deadlineTick;
+    }
+
+    boolean expire() {
+        return done.compareAndSet(false, true);
+    }
+}
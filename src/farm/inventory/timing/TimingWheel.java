@@ -0,0 +1,127 @@
+package farm.inventory.timing;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A hashed timing wheel which schedules items to expire at a given time.
+ * <p>
+ * Time is divided into ticks of a fixed length, and the wheel holds one slot per tick. An item
+ * is placed in the slot for the tick it expires on, wrapping around the wheel if its deadline is
+ * further away than one full turn. Deadlines are rounded up to the next tick, so an item never
+ * expires before its deadline, but may expire up to one tick after it. Advancing the wheel only visits the slots for the ticks that
+ * have passed, so the cost of expiring items depends on how many items are due rather than on
+ * how many items are scheduled.
+ * <p>
+ * Items may be scheduled and cancelled from any thread without blocking. Newly scheduled items are
+ * queued, and only placed on the wheel by the thread advancing it, so an item scheduled while the
+ * wheel is being advanced can never land in a slot which has just been passed. Only one thread
+ * advances the wheel at a time; if another thread is already advancing it, a call to
+ * {@link TimingWheel#advance(long)} returns immediately without expiring anything.
+ * @param <T> the type of item being scheduled.
+ */
+public class TimingWheel<T> {
+    private final long tickMillis;
+    private final List<Queue<Timeout<T>>> slots;
+    // scheduled but not yet placed in a slot
+    private final Queue<Timeout<T>> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean advancing = new AtomicBoolean(false);
+    // only read and written by the thread advancing the wheel
+    private long currentTick;
+
+    /**
+     * Creates a new timing wheel.
+     * @param tickMillis the length of each tick, in milliseconds.
+     * @param wheelSize the number of slots (ticks) in one turn of the wheel.
+     * @param startMillis the time at which the wheel starts, in milliseconds.
+     * @throws IllegalArgumentException if the tick length or wheel size is not positive.
+     */
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick length and wheel size must be positive.");
+        }
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            slots.add(new ConcurrentLinkedQueue<>());
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * Schedules an item to expire at the given time.
+     * <p>
+     * Items whose deadline has already passed expire on the next call to
+     * {@link TimingWheel#advance(long)}.
+     * @param item the item to schedule.
+     * @param deadlineMillis the time at which the item expires, in milliseconds.
+     * @return a handle which can be used to cancel the scheduled expiry.
+     */
+    public Timeout<T> schedule(T item, long deadlineMillis) {
+        Timeout<T> timeout = new Timeout<>(item, Math.ceilDiv(deadlineMillis, tickMillis));
+        incoming.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Advances the wheel to the given time, expiring every item whose deadline has passed.
+     * <p>
+     * Cancelled items are discarded without being returned.
+     * @param nowMillis the current time, in milliseconds.
+     * @return the expired items, in no particular order.
+     */
+    public List<T> advance(long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        if (!advancing.compareAndSet(false, true)) {
+            return expired;
+        }
+        try {
+            long targetTick = Math.max(currentTick, nowMillis / tickMillis);
+            Timeout<T> timeout;
+            while ((timeout = incoming.poll()) != null) {
+                if (timeout.isCancelled()) {
+                    continue;
+                }
+                if (timeout.getDeadlineTick() <= targetTick) {
+                    if (timeout.expire()) {
+                        expired.add(timeout.getItem());
+                    }
+                } else {
+                    slotFor(timeout.getDeadlineTick()).add(timeout);
+                }
+            }
+            // visiting more than one full turn would only revisit the same slots
+            long firstTick = Math.max(currentTick + 1, targetTick - slots.size() + 1);
+            for (long tick = firstTick; tick <= targetTick; tick++) {
+                expireSlot(slotFor(tick), targetTick, expired);
+            }
+            currentTick = targetTick;
+        } finally {
+            advancing.set(false);
+        }
+        return expired;
+    }
+
+    private void expireSlot(Queue<Timeout<T>> slot, long targetTick, List<T> expired) {
+        Iterator<Timeout<T>> iterator = slot.iterator();
+        while (iterator.hasNext()) {
+            Timeout<T> timeout = iterator.next();
+            if (timeout.isCancelled()) {
+                iterator.remove();
+            } else if (timeout.getDeadlineTick() <= targetTick) {
+                iterator.remove();
+                if (timeout.expire()) {
+                    expired.add(timeout.getItem());
+                }
+            } // otherwise due on a later turn of the wheel
+        }
+    }
+
+    private Queue<Timeout<T>> slotFor(long tick) {
+        return slots.get((int) Math.floorMod(tick, (long) slots.size()));
+    }
+}
@@ -3,36 +3,90 @@ package farm.sales;
 import farm.inventory.product.Product;
 import farm.inventory.product.data.Barcode;
 import farm.sales.transaction.CategorisedTransaction;
+import farm.sales.transaction.HistoryReport;
 import farm.sales.transaction.SpecialSaleTransaction;
 import farm.sales.transaction.Transaction;
+import farm.sales.transaction.TransactionStore;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A record of all past transactions.
  * <p>
  * Handles retrieval of statistics about past transactions, such as earnings and popular products.
+ * <p>
+ * Every statistic is kept as a running total, updated as each transaction is recorded, so
+ * retrieving statistics takes the same time no matter how long the history is.
+ * <p>
+ * The transactions themselves are packed into a {@link TransactionStore}, and only recreated
+ * when one is retrieved, such as to print its receipt. A {@link HistoryReport} of every statistic
+ * at once, including some which are not kept as running totals, can be worked out from the
+ * stored transactions in parallel.
+ * <p>
+ * Transactions can be recorded from several threads at once, such as one per checkout lane,
+ * without waiting for a lock: they are queued, in the order they were recorded, and added to the
+ * statistics by whichever thread next takes the lock, whether to read them or to record another
+ * transaction. Recording only tries the lock, so the queue never holds more than the
+ * transactions recorded while another thread was using the statistics.
  * @stage2
  */
 public class TransactionHistory {
-    private final List<Transaction> transactions = new ArrayList<>();
+    private static final Barcode[] BARCODES = Barcode.values();
+
+    private final TransactionStore transactions = new TransactionStore();
+    // recorded but not yet added to the store or the running totals
+    private final Queue<Transaction> pending = new ConcurrentLinkedQueue<>();
+    // held to read or update the store and the running totals
+    private final ReentrantLock lock = new ReentrantLock();
+    private int grossEarnings = 0;
+    private int totalProductsSold = 0;
+    private int highestGrossing = -1;
+    // running totals for each product type, indexed by barcode ordinal
+    private final int[] quantitiesSold = new int[BARCODES.length];
+    private final int[] earnings = new int[BARCODES.length];
+    // in hundredths of a cent, so percentage discounts are counted without rounding
+    private final long[] discounts = new long[BARCODES.length];
 
     /**
      * Adds the given transaction to the record of all past transactions.
+     * <p>
+     * Never blocks; the transaction is queued, and added to the statistics straight away if no
+     * other thread is using them, or else when they are next read or recorded.
      * @param transaction the transaction to add to the record.
      * @requires the transaction to be recorded has been finalised
      */
     public void recordTransaction(Transaction transaction) {
-        transactions.addLast(transaction);
+        pending.offer(transaction);
+        if (lock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                lock.unlock();
+            }
+        }
     }
 
     /**
      * Retrieves the most recent transaction.
      * @return the most recent transaction added to the record.
+     * @throws NoSuchElementException if no transactions have been recorded.
      */
     public Transaction getLastTransaction() {
-        return transactions.getLast();
+        lock.lock();
+        try {
+            drain();
+            if (transactions.size() == 0) {
+                throw new NoSuchElementException();
+            }
+            return transactions.get(transactions.size() - 1);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -50,12 +104,14 @@ public class TransactionHistory {
      * <p><em>Note: returns the calculated total in integer cents.</em>
      * @return the gross earnings from all transactions in history, in cents.
      */
-    public int getGrossEarnings() { 
-        int total = 0;
-        for (Transaction sale : transactions) {
-            total += sale.getTotal();
+    public int getGrossEarnings() {
+        lock.lock();
+        try {
+            drain();
+            return grossEarnings;
+        } finally {
+            lock.unlock();
         }
-        return total;
     }
 
     /**
@@ -64,18 +120,20 @@ public class TransactionHistory {
      * Total income is as defined in {@link TransactionHistory#getGrossEarnings()}.
      * <p><em>Note: returns the calculated total in integer cents.</em>
      * @param type the Barcode of the item of interest.
-     * @return the gross earnings from all sales of the product type, in cents.
+     * @return the gross earnings from all sales of the product type, in cents, or 0 if the
+     * barcode is null.
      */
-    public int getGrossEarnings(Barcode type) { 
-        int total = 0;
-        for (Transaction sale : transactions) {
-            if (sale instanceof CategorisedTransaction catSale) {
-                total += catSale.getPurchaseSubtotal(type);
-            } else {
-                total += getBasicTransactionSubtotalByType(sale, type);
-            }
+    public int getGrossEarnings(Barcode type) {
+        if (type == null) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            drain();
+            return earnings[type.ordinal()];
+        } finally {
+            lock.unlock();
         }
-        return total; 
     }
 
     /**
@@ -83,7 +141,13 @@ public class TransactionHistory {
      * @return the number of transactions in total.
      */
     public int getTotalTransactionsMade() {
-        return transactions.size();
+        lock.lock();
+        try {
+            drain();
+            return transactions.size();
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -91,42 +155,50 @@ public class TransactionHistory {
      * @return the total number of products sold.
      */
     public int getTotalProductsSold() {
-        int total = 0;
-        for (Transaction sale : transactions) {
-            total += sale.getPurchases().size();
+        lock.lock();
+        try {
+            drain();
+            return totalProductsSold;
+        } finally {
+            lock.unlock();
         }
-        return total; 
     }
 
     /**
      * Calculates the number of sold of a particular product type, over all transactions.
      * @param type the Barcode for the product of interest
-     * @return the total number of products sold, for that particular product.
+     * @return the total number of products sold, for that particular product, or 0 if the
+     * barcode is null.
      */
-    public int getTotalProductsSold(Barcode type) { 
-        int quantity = 0;
-        for (Transaction sale : transactions) {
-            if (sale instanceof CategorisedTransaction catSale) {
-                quantity += catSale.getPurchaseQuantity(type);
-            } else {
-                quantity += getBasicTransactionQuantityByType(sale, type);
-            }
+    public int getTotalProductsSold(Barcode type) {
+        if (type == null) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            drain();
+            return quantitiesSold[type.ordinal()];
+        } finally {
+            lock.unlock();
         }
-        return quantity; 
     }
 
     /**
      * Retrieves the transaction with the highest gross earnings, i.e. reported total. If there are multiple return the one that first was recorded.
      * @return the transaction with the highest gross earnings.
+     * @throws NoSuchElementException if no transactions have been recorded.
      */
-    public Transaction getHighestGrossingTransaction() { 
-        Transaction best = transactions.getFirst();
-        for (Transaction candidate : transactions) {
-            if (candidate.getTotal() > best.getTotal()) {
-                best = candidate;
+    public Transaction getHighestGrossingTransaction() {
+        lock.lock();
+        try {
+            drain();
+            if (highestGrossing == -1) {
+                throw new NoSuchElementException();
             }
+            return transactions.get(highestGrossing);
+        } finally {
+            lock.unlock();
         }
-        return best;
     }
 
     /**
@@ -136,21 +208,27 @@ public class TransactionHistory {
      * @return the identifier for the product type of most popular product.
      */
     public Barcode getMostPopularProduct() {
-        Barcode bestSeller = null;
-        int bestAmount = 0;
-        
-        for (Barcode type : Barcode.values()) {
-            int candidateAmount = getTotalProductsSold(type);
-            if (candidateAmount > bestAmount) {
-                bestSeller = type;
-                bestAmount = candidateAmount;
+        lock.lock();
+        try {
+            drain();
+            Barcode bestSeller = null;
+            int bestAmount = 0;
+            
+            for (Barcode type : Barcode.values()) {
+                int candidateAmount = quantitiesSold[type.ordinal()];
+                if (candidateAmount > bestAmount) {
+                    bestSeller = type;
+                    bestAmount = candidateAmount;
+                }
             }
-        }
-        
-        if (bestSeller == null) {
-            return Barcode.values()[0];
-        } else {
-            return bestSeller;
+            
+            if (bestSeller == null) {
+                return Barcode.values()[0];
+            } else {
+                return bestSeller;
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -167,10 +245,16 @@ public class TransactionHistory {
      * @return the average amount spent overall, in cents (with decimals). 
      */
     public double getAverageSpendPerVisit() {
-        if (getTotalProductsSold() == 0) {
-            return 0;
+        lock.lock();
+        try {
+            drain();
+            if (totalProductsSold == 0) {
+                return 0;
+            }
+            return (double) grossEarnings / transactions.size();
+        } finally {
+            lock.unlock();
         }
-        return (double) getGrossEarnings() / getTotalTransactionsMade();
     }
 
     /**
@@ -188,54 +272,89 @@ public class TransactionHistory {
      * @return the average discount for the product, in cents (with decimals). 
      */
     public double getAverageProductDiscount(Barcode type) {
-        if (getTotalProductsSold(type) == 0) {
+        if (type == null) {
             return 0;
         }
-        double discount = 0;
-        for (Transaction sale : transactions) {
-            if (sale instanceof SpecialSaleTransaction specSale) {
-                discount += specSale.getPurchaseQuantity(type) *
-                        specSale.getDiscountAmount(type) * type.getBasePrice() / 100.0;
-            } // otherwise no discount, so don't add anything to the discount sum
+        lock.lock();
+        try {
+            drain();
+            int id = type.ordinal();
+            if (quantitiesSold[id] == 0) {
+                return 0;
+            }
+            return discounts[id] / 100.0 / quantitiesSold[id];
+        } finally {
+            lock.unlock();
         }
-        return (double) discount / getTotalProductsSold(type);
     }
     
-    /* Alternative solution that satisfies the original bugged tests, for reference.
-    */
-    private double getAverageProductDiscountPercent(Barcode type) {
-        if (getTotalProductsSold(type) == 0) {
-            return 0;
+    /**
+     * Works out every statistic about the recorded transactions in a single parallel pass, using
+     * the common fork/join pool.
+     * @return a report on every transaction recorded so far.
+     */
+    public HistoryReport getReport() {
+        return getReport(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Works out every statistic about the recorded transactions in a single parallel pass.
+     * @param pool the pool to work out the statistics in.
+     * @return a report on every transaction recorded so far.
+     */
+    public HistoryReport getReport(ForkJoinPool pool) {
+        lock.lock();
+        try {
+            drain();
+            return transactions.report(pool);
+        } finally {
+            lock.unlock();
         }
+    }
 
-        int discount = 0;
-        for (Transaction sale : transactions) {
-            if (sale instanceof SpecialSaleTransaction specSale) {
-                discount += specSale.getDiscountAmount(type) * specSale.getPurchaseQuantity(type);
-            } // otherwise no discount, so don't add anything to the discount sum
+    /**
+     * Adds any queued transactions to the store and the running totals.
+     * @requires the lock is held by the current thread.
+     */
+    private void drain() {
+        Transaction transaction;
+        while ((transaction = pending.poll()) != null) {
+            append(transaction);
         }
-        return (double) discount / getTotalProductsSold(type);
     }
 
+    private void append(Transaction transaction) {
+        int index = transactions.append(transaction);
 
-    /* private helpers - for basic transactions, which don't already sort by type */
-    private int getBasicTransactionSubtotalByType(Transaction sale, Barcode type) {
-        int subtotal = 0;
-        for (Product product : sale.getPurchases()) {
-            if (product.getBarcode() == type) {
-                subtotal += product.getBasePrice();
-            }
+        int total = transactions.getTotal(index);
+        grossEarnings += total;
+        if (highestGrossing == -1 || total > transactions.getTotal(highestGrossing)) {
+            highestGrossing = index;
         }
-        return subtotal;
-    }
-    
-    private int getBasicTransactionQuantityByType(Transaction sale, Barcode type) {
-        int quantity = 0;
-        for (Product product : sale.getPurchases()) {
-            if (product.getBarcode() == type) {
-                quantity++;
+
+        int[] quantities = new int[BARCODES.length];
+        int[] subtotals = new int[BARCODES.length];
+        List<Product> purchases = transaction.getPurchases();
+        for (Product product : purchases) {
+            int id = product.getBarcode().ordinal();
+            quantities[id]++;
+            subtotals[id] += product.getBasePrice();
+        }
+        totalProductsSold += purchases.size();
+        for (Barcode type : Barcode.values()) {
+            int id = type.ordinal();
+            if (quantities[id] == 0) {
+                continue;
+            }
+            quantitiesSold[id] += quantities[id];
+            if (transaction instanceof CategorisedTransaction catSale) {
+                earnings[id] += catSale.getPurchaseSubtotal(type);
+            } else {
+                earnings[id] += subtotals[id];
+            }
+            if (transaction instanceof SpecialSaleTransaction specSale) {
+                discounts[id] += specSale.getUnroundedDiscount(type);
             }
         }
-        return quantity;
     }
 }
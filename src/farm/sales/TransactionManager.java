@@ -4,23 +4,54 @@ import farm.core.FailedTransactionException;
 import farm.inventory.product.Product;
 import farm.sales.transaction.Transaction;
 
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * The controlling class for all transactions.
  * <p>
- * Opens and closes transactions, as well as ensuring only <b>one</b> transaction is active at any given time.
+ * Opens and closes transactions, as well as ensuring only <b>one</b> transaction is active at any given time
+ * in each checkout lane.
  * <p>
  * Does not create transactions but rather keeps track of the currently ongoing transaction and thus the subsequent customer cart associated with it.
+ * <p>
+ * Lanes are numbered by the caller, and each may have its own ongoing transaction. The methods
+ * which do not take a lane act on {@link TransactionManager#DEFAULT_LANE}, so a farm with a single
+ * checkout need never mention lanes. Ongoing transactions are kept in a concurrent map, so lanes
+ * can be served from different threads without any locking; each lane itself should only be used
+ * by one thread at a time.
  * @stage2
  */
 public class TransactionManager {
-    private Transaction ongoing;
+    /** The lane used by the methods which do not take a lane. */
+    public static final int DEFAULT_LANE = 0;
+
+    private final ConcurrentHashMap<Integer, Transaction> ongoing = new ConcurrentHashMap<>();
 
     /**
      * Determine whether a transaction is currently in progress.
      * @return true iff a transaction is in progress, else false.
      */
     public boolean hasOngoingTransaction() {
-        return this.ongoing != null;
+        return hasOngoingTransaction(DEFAULT_LANE);
+    }
+
+    /**
+     * Determine whether a transaction is currently in progress in a lane.
+     * @param lane the checkout lane.
+     * @return true iff a transaction is in progress in the lane, else false.
+     */
+    public boolean hasOngoingTransaction(int lane) {
+        return ongoing.containsKey(lane);
+    }
+
+    /**
+     * Retrieves the lanes which currently have a transaction in progress.
+     * @return a copy of the set of busy lanes.
+     */
+    public Set<Integer> getBusyLanes() {
+        return Set.copyOf(ongoing.keySet());
     }
 
     /**
@@ -33,10 +64,22 @@ public class TransactionManager {
      * @throws FailedTransactionException iff a transaction is already in progress.
      */
     public void setOngoingTransaction(Transaction transaction) throws FailedTransactionException {
-        if (hasOngoingTransaction()) {
+        setOngoingTransaction(DEFAULT_LANE, transaction);
+    }
+
+    /**
+     * Begins managing the specified transaction in a lane, provided one is not already ongoing
+     * in that lane.
+     * @param lane the checkout lane.
+     * @param transaction the transaction to set as the lane's ongoing transaction.
+     * @requires the transaction's customer is not shopping in any other lane.
+     * @throws FailedTransactionException iff a transaction is already in progress in the lane.
+     */
+    public void setOngoingTransaction(int lane, Transaction transaction)
+            throws FailedTransactionException {
+        if (ongoing.putIfAbsent(lane, transaction) != null) {
             throw new FailedTransactionException("Transaction already in progress.");
         }
-        this.ongoing = transaction;
     }
 
     /**
@@ -50,13 +93,29 @@ public class TransactionManager {
      * @throws FailedTransactionException iff there is no ongoing transaction or the transaction has already been finalised.
      */
     public void registerPendingPurchase(Product product) throws FailedTransactionException {
-        if (!hasOngoingTransaction()) {
+        registerPendingPurchase(DEFAULT_LANE, product);
+    }
+
+    /**
+     * Adds the given product to the cart of the customer associated with a lane's current
+     * transaction, without locking.
+     * @param lane the checkout lane.
+     * @param product the product to add to customer's cart.
+     * @requires the provided product is known to be valid for purchase, i.e. has been successfully
+     * retrieved from the farm's inventory
+     * @throws FailedTransactionException iff there is no ongoing transaction in the lane or the
+     * transaction has already been finalised.
+     */
+    public void registerPendingPurchase(int lane, Product product)
+            throws FailedTransactionException {
+        Transaction transaction = ongoing.get(lane);
+        if (transaction == null) {
             throw new FailedTransactionException("No ongoing exception.");
-        } else if (ongoing.isFinalised()) {
+        } else if (transaction.isFinalised()) {
             throw new FailedTransactionException(
                     "Ongoing transaction has already been finalised exception.");
         }
-        ongoing.getAssociatedCustomer().getCart().addProduct(product);
+        transaction.getAssociatedCustomer().getCart().addProduct(product);
     }
 
     /**
@@ -71,14 +130,54 @@ public class TransactionManager {
      * @throws FailedTransactionException iff there is no currently ongoing transaction to close.
      */
     public Transaction closeCurrentTransaction() throws FailedTransactionException { 
-        if (ongoing == null) {
+        return closeCurrentTransaction(DEFAULT_LANE);
+    }
+
+    /**
+     * Finalises a lane's ongoing transaction and readies the lane to accept a new ongoing
+     * transaction.
+     * @param lane the checkout lane.
+     * @return the finalised transaction.
+     * @throws FailedTransactionException iff there is no ongoing transaction in the lane.
+     */
+    public Transaction closeCurrentTransaction(int lane) throws FailedTransactionException {
+        Transaction result = ongoing.remove(lane);
+        if (result == null) {
+            throw new FailedTransactionException("No ongoing transaction in progress.");
+        }
+
+        result.finalise();
+        return result;
+    }
+
+    /**
+     * Abandons the currently ongoing transaction without finalising it, and readies the
+     * TransactionManager to accept a new ongoing transaction.
+     * <p>
+     * The customer's cart is emptied, as the customer is no longer purchasing its contents.
+     * @return the products which were in the customer's cart.
+     * @throws FailedTransactionException iff there is no currently ongoing transaction to abandon.
+     */
+    public List<Product> abandonCurrentTransaction() throws FailedTransactionException {
+        return abandonCurrentTransaction(DEFAULT_LANE);
+    }
+
+    /**
+     * Abandons a lane's ongoing transaction without finalising it, and readies the lane to
+     * accept a new ongoing transaction.
+     * @param lane the checkout lane.
+     * @return the products which were in the customer's cart.
+     * @throws FailedTransactionException iff there is no ongoing transaction in the lane.
+     */
+    public List<Product> abandonCurrentTransaction(int lane) throws FailedTransactionException {
+        Transaction abandonedTransaction = ongoing.remove(lane);
+        if (abandonedTransaction == null) {
             throw new FailedTransactionException("No ongoing transaction in progress.");
         }
-        
-        ongoing.finalise();
 
-        Transaction result = ongoing;
-        ongoing = null;
-        return result; 
+        Cart cart = abandonedTransaction.getAssociatedCustomer().getCart();
+        List<Product> abandoned = cart.getContents();
+        cart.setEmpty();
+        return abandoned;
     }
 }
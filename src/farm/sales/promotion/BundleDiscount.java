@@ -0,0 +1,28 @@
+package farm.sales.promotion;
+
+import farm.inventory.product.data.Barcode;
+
+/**
+ * Gives away products of a type when bought in bundles: for every {@code buy} products paid
+ * for, the next {@code free} products are free.
+ * @param barcode the type of the discounted products.
+ * @param buy the number of products to pay for in each bundle.
+ * @param free the number of products given away in each bundle.
+ */
+public record BundleDiscount(Barcode barcode, int buy, int free) implements PromotionRule {
+
+    /**
+     * Creates a bundle discount.
+     * @throws IllegalArgumentException if either quantity is not positive.
+     */
+    public BundleDiscount {
+        if (buy <= 0 || free <= 0) {
+            throw new IllegalArgumentException("Bundle quantities must be positive.");
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "Buy " + buy + " get " + free + " free on " + barcode.getDisplayName() + "!";
+    }
+}
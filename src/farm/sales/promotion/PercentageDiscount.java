@@ -0,0 +1,26 @@
+package farm.sales.promotion;
+
+import farm.inventory.product.data.Barcode;
+
+/**
+ * Takes a percentage off the subtotal of every product of a type.
+ * @param barcode the type of the discounted products.
+ * @param percent the discount as an integer percentage, from 0 to 100.
+ */
+public record PercentageDiscount(Barcode barcode, int percent) implements PromotionRule {
+
+    /**
+     * Creates a percentage discount.
+     * @throws IllegalArgumentException if the percentage is not between 0 and 100.
+     */
+    public PercentageDiscount {
+        if (percent < 0 || percent > 100) {
+            throw new IllegalArgumentException("Discount must be between 0 and 100 percent.");
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "Discount applied! " + percent + "% off " + barcode.getDisplayName();
+    }
+}
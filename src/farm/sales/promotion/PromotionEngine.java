@@ -0,0 +1,232 @@
+package farm.sales.promotion;
+
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+import java.util.*;
+
+/**
+ * Prices carts under a fixed set of {@link PromotionRule}s.
+ * <p>
+ * The rules are compiled once into flat lookup tables, indexed by barcode ordinal (and by
+ * quality for quality tier discounts), so pricing a cart is a single pass over its products
+ * followed by a fixed amount of work per product type, with no map lookups or floating point
+ * arithmetic. All prices are whole cents.
+ * <p>
+ * Each product type may have at most one percentage discount, one bundle discount and one
+ * quality tier discount per quality. When rules overlap, they are combined as follows:
+ * <ol>
+ *     <li>Products given away by a bundle discount are free, and are taken from the lowest
+ *     quality products first.</li>
+ *     <li>Every other product is discounted by the larger of the type's percentage discount and
+ *     its quality's tier discount.</li>
+ *     <li>Percentages are taken from the subtotal of all products sharing the same percentage,
+ *     rounded down to a whole cent, rather than from each product's price.</li>
+ * </ol>
+ * An engine is immutable, and safe to share between threads and transactions.
+ */
+public final class PromotionEngine {
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+    private static final int NONE = -1;
+
+    /** An engine with no rules, which sells every product at full price. */
+    public static final PromotionEngine NO_PROMOTIONS = compile(List.of());
+
+    // indexed by barcode ordinal
+    private final int[] typePercents;
+    private final int[] bundleBuys;
+    private final int[] bundleFrees;
+    private final String[] descriptions;
+    // indexed by barcode ordinal * number of qualities + quality ordinal
+    private final int[] tierPercents;
+    private final List<PromotionRule> rules;
+
+    private PromotionEngine(List<PromotionRule> rules) {
+        int types = BARCODES.length;
+        typePercents = new int[types];
+        bundleBuys = new int[types];
+        bundleFrees = new int[types];
+        descriptions = new String[types];
+        tierPercents = new int[types * QUALITIES.length];
+        Arrays.fill(typePercents, NONE);
+        Arrays.fill(tierPercents, NONE);
+        for (PromotionRule rule : rules) {
+            int id = rule.barcode().ordinal();
+            switch (rule) {
+                case PercentageDiscount percentage -> {
+                    requireUnset(typePercents[id] == NONE, rule);
+                    typePercents[id] = percentage.percent();
+                }
+                case BundleDiscount bundle -> {
+                    requireUnset(bundleBuys[id] == 0, rule);
+                    bundleBuys[id] = bundle.buy();
+                    bundleFrees[id] = bundle.free();
+                }
+                case QualityTierDiscount tier -> {
+                    int slot = id * QUALITIES.length + tier.quality().ordinal();
+                    requireUnset(tierPercents[slot] == NONE, rule);
+                    tierPercents[slot] = tier.percent();
+                }
+            }
+            if (isEffective(rule)) {
+                descriptions[id] = descriptions[id] == null
+                        ? rule.describe() : descriptions[id] + "; " + rule.describe();
+            }
+        }
+        this.rules = List.copyOf(rules);
+    }
+
+    /**
+     * Compiles a set of promotion rules into an engine.
+     * @param rules the rules to apply.
+     * @return an engine applying the rules.
+     * @throws IllegalArgumentException if a product type is given more than one rule of the same
+     * kind, or more than one tier discount for the same quality.
+     */
+    public static PromotionEngine compile(Collection<? extends PromotionRule> rules) {
+        return new PromotionEngine(new ArrayList<>(rules));
+    }
+
+    /**
+     * Compiles a mapping of percentage discounts, as given to a special sale, into an engine.
+     * @param discounts a mapping from product barcodes to the discount applied to that type,
+     *                  as an integer percentage.
+     * @return an engine applying a {@link PercentageDiscount} for each entry.
+     * @throws IllegalArgumentException if a discount is not between 0 and 100.
+     */
+    public static PromotionEngine compile(Map<Barcode, Integer> discounts) {
+        List<PromotionRule> rules = new ArrayList<>(discounts.size());
+        for (Map.Entry<Barcode, Integer> discount : discounts.entrySet()) {
+            if (discount.getValue() != null) {
+                rules.add(new PercentageDiscount(discount.getKey(), discount.getValue()));
+            }
+        }
+        return compile(rules);
+    }
+
+    /**
+     * Retrieves the rules this engine was compiled from.
+     * @return an unmodifiable list of the rules, in the order they were given.
+     */
+    public List<PromotionRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Retrieves the percentage discount for a product type.
+     * @param barcode the product type.
+     * @return the type's percentage discount, or 0 if it has none.
+     */
+    public int getPercentage(Barcode barcode) {
+        return Math.max(0, typePercents[barcode.ordinal()]);
+    }
+
+    /**
+     * Describes every rule which reduces the price of a product type, for display on a receipt.
+     * @param barcode the product type.
+     * @return the descriptions of the type's rules, or null if no rule reduces its price.
+     */
+    public String describe(Barcode barcode) {
+        return descriptions[barcode.ordinal()];
+    }
+
+    /**
+     * Prices a cart of products.
+     * @param purchases the products being bought.
+     * @return the quantity, full price and discount of each product type in the cart.
+     */
+    public PromotionResult evaluate(List<Product> purchases) {
+        int slots = tierPercents.length;
+        int[] slotCounts = new int[slots];
+        int[] slotSubtotals = new int[slots];
+        for (Product purchase : purchases) {
+            int slot = purchase.getBarcode().ordinal() * QUALITIES.length
+                    + purchase.getQuality().ordinal();
+            slotCounts[slot]++;
+            slotSubtotals[slot] += purchase.getBasePrice();
+        }
+
+        int types = typePercents.length;
+        int[] quantities = new int[types];
+        int[] subtotals = new int[types];
+        int[] discounts = new int[types];
+        long[] unroundedDiscounts = new long[types];
+        // subtotals of the paid products of one type, grouped by the percentage taken off them
+        int[] groupPercents = new int[QUALITIES.length];
+        long[] groupSubtotals = new long[QUALITIES.length];
+        for (int id = 0; id < types; id++) {
+            int first = id * QUALITIES.length;
+            for (int slot = first; slot < first + QUALITIES.length; slot++) {
+                quantities[id] += slotCounts[slot];
+                subtotals[id] += slotSubtotals[slot];
+            }
+            if (quantities[id] == 0) {
+                continue;
+            }
+            int remainingFree = freeQuantity(id, quantities[id]);
+            long discount = 0;
+            int groups = 0;
+            for (int slot = first; slot < first + QUALITIES.length; slot++) {
+                int count = slotCounts[slot];
+                if (count == 0) {
+                    continue;
+                }
+                int free = Math.min(remainingFree, count);
+                remainingFree -= free;
+                // every product of a type and quality has the same price
+                long freeSubtotal = (long) slotSubtotals[slot] * free / count;
+                discount += freeSubtotal;
+
+                int percent = Math.max(0, Math.max(typePercents[id], tierPercents[slot]));
+                int group = 0;
+                while (group < groups && groupPercents[group] != percent) {
+                    group++;
+                }
+                if (group == groups) {
+                    groupPercents[groups] = percent;
+                    groupSubtotals[groups++] = 0;
+                }
+                groupSubtotals[group] += slotSubtotals[slot] - freeSubtotal;
+            }
+            long unrounded = discount * 100;
+            for (int group = 0; group < groups; group++) {
+                discount += groupPercents[group] * groupSubtotals[group] / 100;
+                unrounded += groupPercents[group] * groupSubtotals[group];
+            }
+            discounts[id] = (int) discount;
+            unroundedDiscounts[id] = unrounded;
+        }
+        return new PromotionResult(quantities, subtotals, discounts, unroundedDiscounts);
+    }
+
+    /** Private Helper Methods **/
+
+    private int freeQuantity(int id, int quantity) {
+        int buy = bundleBuys[id];
+        if (buy == 0) {
+            return 0;
+        }
+        int free = bundleFrees[id];
+        int bundles = quantity / (buy + free);
+        int remainder = quantity % (buy + free);
+        // a partial bundle still gets whatever free products were picked up after paying
+        return bundles * free + Math.max(0, remainder - buy);
+    }
+
+    private static boolean isEffective(PromotionRule rule) {
+        return switch (rule) {
+            case PercentageDiscount percentage -> percentage.percent() > 0;
+            case QualityTierDiscount tier -> tier.percent() > 0;
+            case BundleDiscount bundle -> true;
+        };
+    }
+
+    private static void requireUnset(boolean unset, PromotionRule rule) {
+        if (!unset) {
+            throw new IllegalArgumentException("Conflicting promotion for "
+                    + rule.barcode().getDisplayName() + ": " + rule.describe());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package farm.sales.promotion;
+
+import farm.inventory.product.data.Barcode;
+
+/**
+ * The price of a cart, as worked out by a {@link PromotionEngine}.
+ * <p>
+ * Every amount is in whole cents, except unrounded discounts, and every per-type query is a
+ * single array lookup.
+ */
+public final class PromotionResult {
+    // indexed by barcode ordinal
+    private final int[] quantities;
+    private final int[] subtotals;
+    private final int[] discounts;
+    // in hundredths of a cent, before percentages are rounded down
+    private final long[] unroundedDiscounts;
+    private final int total;
+    private final int totalDiscount;
+
+    PromotionResult(int[] quantities, int[] subtotals, int[] discounts,
+                    long[] unroundedDiscounts) {
+        this.quantities = quantities;
+        this.subtotals = subtotals;
+        this.discounts = discounts;
+        this.unroundedDiscounts = unroundedDiscounts;
+        int fullTotal = 0;
+        int discountTotal = 0;
+        for (int id = 0; id < subtotals.length; id++) {
+            fullTotal += subtotals[id];
+            discountTotal += discounts[id];
+        }
+        this.total = fullTotal - discountTotal;
+        this.totalDiscount = discountTotal;
+    }
+
+    /**
+     * Retrieves the number of products of a type in the cart.
+     * @param barcode the product type.
+     * @return the number of products of that type.
+     */
+    public int getQuantity(Barcode barcode) {
+        return quantities[barcode.ordinal()];
+    }
+
+    /**
+     * Retrieves the full price of every product of a type in the cart.
+     * @param barcode the product type.
+     * @return the undiscounted subtotal for that type.
+     */
+    public int getFullSubtotal(Barcode barcode) {
+        return subtotals[barcode.ordinal()];
+    }
+
+    /**
+     * Retrieves the amount taken off the products of a type in the cart.
+     * @param barcode the product type.
+     * @return the discount for that type.
+     */
+    public int getDiscount(Barcode barcode) {
+        return discounts[barcode.ordinal()];
+    }
+
+    /**
+     * Retrieves the amount taken off the products of a type in the cart, before percentages are
+     * rounded down to a whole cent.
+     * @param barcode the product type.
+     * @return the discount for that type, in hundredths of a cent.
+     */
+    public long getUnroundedDiscount(Barcode barcode) {
+        return unroundedDiscounts[barcode.ordinal()];
+    }
+
+    /**
+     * Retrieves the discounted price of every product of a type in the cart.
+     * @param barcode the product type.
+     * @return the discounted subtotal for that type.
+     */
+    public int getSubtotal(Barcode barcode) {
+        int id = barcode.ordinal();
+        return subtotals[id] - discounts[id];
+    }
+
+    /**
+     * Retrieves the discounted price of the whole cart.
+     * @return the total to be paid.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Retrieves the amount taken off the whole cart.
+     * @return the total saved.
+     */
+    public int getTotalDiscount() {
+        return totalDiscount;
+    }
+}
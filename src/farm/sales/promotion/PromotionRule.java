@@ -0,0 +1,25 @@
+package farm.sales.promotion;
+
+import farm.inventory.product.data.Barcode;
+
+/**
+ * A rule describing how the price of one product type is reduced during a special sale.
+ * <p>
+ * Rules are not applied directly; a set of rules is compiled once into a
+ * {@link PromotionEngine}, which then prices whole carts.
+ */
+public sealed interface PromotionRule
+        permits PercentageDiscount, BundleDiscount, QualityTierDiscount {
+
+    /**
+     * Retrieves the product type the rule applies to.
+     * @return the barcode of the discounted products.
+     */
+    Barcode barcode();
+
+    /**
+     * Describes the rule for display on a receipt.
+     * @return a short description of the rule.
+     */
+    String describe();
+}
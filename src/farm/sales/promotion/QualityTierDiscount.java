@@ -0,0 +1,30 @@
+package farm.sales.promotion;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+/**
+ * Takes a percentage off the subtotal of products of a type which are of one quality.
+ * @param barcode the type of the discounted products.
+ * @param quality the quality of the discounted products.
+ * @param percent the discount as an integer percentage, from 0 to 100.
+ */
+public record QualityTierDiscount(Barcode barcode, Quality quality, int percent)
+        implements PromotionRule {
+
+    /**
+     * Creates a quality tier discount.
+     * @throws IllegalArgumentException if the percentage is not between 0 and 100.
+     */
+    public QualityTierDiscount {
+        if (percent < 0 || percent > 100) {
+            throw new IllegalArgumentException("Discount must be between 0 and 100 percent.");
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "Discount applied! " + percent + "% off " + quality.name().toLowerCase() + " "
+                + barcode.getDisplayName();
+    }
+}
@@ -12,9 +12,18 @@ import java.util.*;
  * A transaction type that allows products to be categorised by their types, not solely as 
  * isolated individual products. The resulting receipt therefore displays purchased types with
  * an associated quantity purchased and subtotal, rather than a single line for each product. 
+ * <p>
+ * While the transaction is active, per-type information is worked out from the customer's cart
+ * each time it is requested. Once finalised, the purchases can no longer change, so the
+ * quantity and subtotal of each type are worked out once and every later query is answered
+ * directly from them.
  * @stage1
  */
 public class CategorisedTransaction extends Transaction {
+    // per-type aggregates of the final purchases; null until the transaction is finalised
+    private Map<Barcode, Integer> finalQuantities;
+    private Map<Barcode, Integer> finalSubtotals;
+
     /**
      * Construct a new categorised transaction for an associated customer.
      * Transactions should always be active at the time of creation, i.e. a transaction cannot 
@@ -30,7 +39,14 @@ public class CategorisedTransaction extends Transaction {
      * @return a set of all product types in the transaction.
      */
     public Set<Barcode> getPurchasedTypes() {
-        return this.getPurchasesByType().keySet();
+        if (isFinalised()) {
+            return finalQuantities.keySet();
+        }
+        Set<Barcode> purchasedTypes = EnumSet.noneOf(Barcode.class);
+        for (Product purchase : getPurchases()) {
+            purchasedTypes.add(purchase.getBarcode());
+        }
+        return purchasedTypes;
     }
 
     /**
@@ -39,17 +55,13 @@ public class CategorisedTransaction extends Transaction {
      * If the transaction has been finalised, this is all products that were 'locked in' as 
      * final purchases at that time. If the transaction is instead still active, it is all products 
      * currently in the associated customer's cart.
+     * <p>
+     * Either way the result is a new map, which the caller is free to change without affecting
+     * the transaction.
      * @return the products in the transaction, grouped by their type.
      */
     public Map<Barcode, List<Product>> getPurchasesByType() {
-        Map<Barcode, List<Product>> purchasesByType = new HashMap<>();
-        for (Product purchase : getPurchases()) {
-            List<Product> purchases = 
-                    purchasesByType.getOrDefault(purchase.getBarcode(), new ArrayList<>());
-            purchases.add(purchase);
-            purchasesByType.putIfAbsent(purchase.getBarcode(), purchases);
-        }
-        return purchasesByType;
+        return groupByType(getPurchases());
     }
 
     /**
@@ -58,7 +70,16 @@ public class CategorisedTransaction extends Transaction {
      * @return the number of products of the specified type associated with the transaction.
      */
     public int getPurchaseQuantity(Barcode type) {
-        return getPurchasesByType().getOrDefault(type, Collections.emptyList()).size();
+        if (isFinalised()) {
+            return finalQuantities.getOrDefault(type, 0);
+        }
+        int quantity = 0;
+        for (Product purchase : getPurchases()) {
+            if (purchase.getBarcode() == type) {
+                quantity++;
+            }
+        }
+        return quantity;
     }
 
     /**
@@ -68,13 +89,38 @@ public class CategorisedTransaction extends Transaction {
      * 0 if no items of that type are associated with the transaction.
      */
     public int getPurchaseSubtotal(Barcode type) {
+        if (isFinalised()) {
+            return finalSubtotals.getOrDefault(type, 0);
+        }
         int subtotal = 0;
-        List<Product> purchased = getPurchasesByType().getOrDefault(type, Collections.emptyList());
-        for (Product product : purchased) {
-            subtotal += product.getBasePrice();
+        for (Product purchase : getPurchases()) {
+            if (purchase.getBarcode() == type) {
+                subtotal += purchase.getBasePrice();
+            }
         }
         return subtotal;
     }
+
+    /**
+     * Mark a transaction as finalised and update the transaction's internal state accordingly.
+     * <br>
+     * In addition to locking in the purchases, this works out the quantity and subtotal of each
+     * purchased type once, for every later query to use.
+     */
+    @Override
+    public void finalise() {
+        super.finalise();
+        if (finalQuantities == null) {
+            Map<Barcode, Integer> quantities = new EnumMap<>(Barcode.class);
+            Map<Barcode, Integer> subtotals = new EnumMap<>(Barcode.class);
+            for (Product purchase : getPurchases()) {
+                quantities.merge(purchase.getBarcode(), 1, Integer::sum);
+                subtotals.merge(purchase.getBarcode(), purchase.getBasePrice(), Integer::sum);
+            }
+            finalSubtotals = Collections.unmodifiableMap(subtotals);
+            finalQuantities = Collections.unmodifiableMap(quantities);
+        }
+    }
     
     /**
      * Converts the transaction into a formatted receipt for display, using the {@link ReceiptPrinter}.
@@ -147,12 +193,10 @@ public class CategorisedTransaction extends Transaction {
             return ReceiptPrinter.createActiveReceipt();
         }
 
-        List<List<String>> items = new ArrayList<>(getPurchases().size());
-        // item, qty, price, subtotal 
-        for (Barcode type : Barcode.values()) {
-            if (getPurchasedTypes().contains(type)) {
-                items.add(populateReceiptEntry(type));
-            }
+        List<List<String>> items = new ArrayList<>(getPurchasedTypes().size());
+        // item, qty, price, subtotal; purchased types are ordered as per Barcode#values()
+        for (Barcode type : getPurchasedTypes()) {
+            items.add(populateReceiptEntry(type));
         }
         return ReceiptPrinter.createReceipt(List.of("Item", "Qty", "Price (ea.)", "Subtotal"),
                 items, getDisplayPrice(getTotal()), getAssociatedCustomer().getName());
@@ -170,4 +214,13 @@ public class CategorisedTransaction extends Transaction {
         receiptEntry.add(getDisplayPrice(getPurchaseSubtotal(type)));
         return receiptEntry;
     }
+
+    private static Map<Barcode, List<Product>> groupByType(List<Product> purchases) {
+        Map<Barcode, List<Product>> purchasesByType = new EnumMap<>(Barcode.class);
+        for (Product purchase : purchases) {
+            purchasesByType.computeIfAbsent(purchase.getBarcode(), type -> new ArrayList<>())
+                    .add(purchase);
+        }
+        return purchasesByType;
+    }
 }
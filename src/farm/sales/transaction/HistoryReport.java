@@ -0,0 +1,157 @@
+package farm.sales.transaction;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+/**
+ * Every statistic about a set of stored transactions, worked out together in a single pass by
+ * {@link TransactionStore#report(java.util.concurrent.ForkJoinPool)}.
+ * <p>
+ * Statistics are defined as they are by {@link farm.sales.TransactionHistory}, but counts and
+ * amounts are kept as longs, so very long histories cannot overflow them. Every query is a
+ * single array lookup.
+ * <p>
+ * A report is immutable, and does not change as further transactions are stored.
+ */
+public final class HistoryReport {
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+
+    private final int transactionCount;
+    private final long grossEarnings;
+    private final long productsSold;
+    private final int highestGrossing;
+    // indexed by barcode ordinal
+    private final long[] quantities;
+    private final long[] fullEarnings;
+    private final long[] earnings;
+    // hundredths of a cent taken off each product by special sale promotions
+    private final long[] discounts;
+    // indexed by barcode ordinal * number of qualities + quality ordinal
+    private final long[] qualityQuantities;
+
+    HistoryReport(int transactionCount, long grossEarnings, long productsSold,
+                  int highestGrossing, long[] quantities, long[] fullEarnings, long[] earnings,
+                  long[] discounts, long[] qualityQuantities) {
+        this.transactionCount = transactionCount;
+        this.grossEarnings = grossEarnings;
+        this.productsSold = productsSold;
+        this.highestGrossing = highestGrossing;
+        this.quantities = quantities;
+        this.fullEarnings = fullEarnings;
+        this.earnings = earnings;
+        this.discounts = discounts;
+        this.qualityQuantities = qualityQuantities;
+    }
+
+    /**
+     * Retrieves the number of transactions reported on.
+     * @return the number of transactions.
+     */
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * Retrieves the sum of the totals reported by every transaction.
+     * @return the gross earnings, in cents.
+     */
+    public long getGrossEarnings() {
+        return grossEarnings;
+    }
+
+    /**
+     * Retrieves the earnings from all sales of a product type, after any discounts.
+     * @param type the product type.
+     * @return the gross earnings from that type, in cents.
+     */
+    public long getGrossEarnings(Barcode type) {
+        return earnings[type.ordinal()];
+    }
+
+    /**
+     * Retrieves what all sales of a product type would have earned at full price.
+     * @param type the product type.
+     * @return the undiscounted earnings from that type, in cents.
+     */
+    public long getFullPriceEarnings(Barcode type) {
+        return fullEarnings[type.ordinal()];
+    }
+
+    /**
+     * Retrieves the number of products sold.
+     * @return the number of products sold.
+     */
+    public long getTotalProductsSold() {
+        return productsSold;
+    }
+
+    /**
+     * Retrieves the number of products of a type sold.
+     * @param type the product type.
+     * @return the number of products of that type sold.
+     */
+    public long getTotalProductsSold(Barcode type) {
+        return quantities[type.ordinal()];
+    }
+
+    /**
+     * Retrieves the number of products of a type and quality sold.
+     * @param type the product type.
+     * @param quality the quality of the products.
+     * @return the number of products of that type and quality sold.
+     */
+    public long getTotalProductsSold(Barcode type, Quality quality) {
+        return qualityQuantities[type.ordinal() * QUALITIES.length
+                + quality.ordinal()];
+    }
+
+    /**
+     * Retrieves the index of the transaction with the highest total, choosing the one stored
+     * first if several share it.
+     * @return the index of the transaction in its store, or -1 if there were no transactions.
+     */
+    public int getHighestGrossingIndex() {
+        return highestGrossing;
+    }
+
+    /**
+     * Retrieves the product type with the highest quantity sold, choosing the one appearing
+     * first in {@link Barcode#values()} if several share it.
+     * @return the most popular product type.
+     */
+    public Barcode getMostPopularProduct() {
+        Barcode bestSeller = BARCODES[0];
+        for (Barcode type : BARCODES) {
+            if (getTotalProductsSold(type) > getTotalProductsSold(bestSeller)) {
+                bestSeller = type;
+            }
+        }
+        return bestSeller;
+    }
+
+    /**
+     * Calculates the average amount spent per transaction.
+     * @return the average spend in cents, or 0 if no products were sold.
+     */
+    public double getAverageSpendPerVisit() {
+        if (productsSold == 0) {
+            return 0;
+        }
+        return (double) grossEarnings / transactionCount;
+    }
+
+    /**
+     * Calculates the average discount given on each product of a type, as defined by
+     * {@link farm.sales.TransactionHistory#getAverageProductDiscount(Barcode)}.
+     * @param type the product type.
+     * @return the average discount in cents, or 0 if no products of that type were sold.
+     */
+    public double getAverageProductDiscount(Barcode type) {
+        int id = type.ordinal();
+        if (quantities[id] == 0) {
+            return 0;
+        }
+        return discounts[id] / 100.0 / quantities[id];
+    }
+}
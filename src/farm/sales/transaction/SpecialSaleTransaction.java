@@ -4,6 +4,10 @@ import farm.customer.Customer;
 import farm.inventory.product.Product;
 import farm.inventory.product.data.Barcode;
 import farm.sales.ReceiptPrinter;
+import farm.sales.promotion.PercentageDiscount;
+import farm.sales.promotion.PromotionEngine;
+import farm.sales.promotion.PromotionResult;
+import farm.sales.promotion.PromotionRule;
 
 import java.util.*;
 
@@ -20,10 +24,15 @@ import java.util.*;
  * an additional line appended to entries for any product types that have a non-zero discount 
  * indicating the percentage they will be discounted by, and an additional section below the 
  * overall transaction total where non-zero overall savings are reported.
+ * <p>
+ * Prices are worked out by a {@link PromotionEngine}, which may also apply bundle and quality
+ * tier discounts. Once the transaction is finalised, its prices are worked out once and kept.
  * @stage1
  */
 public class SpecialSaleTransaction extends CategorisedTransaction {
     private final Map<Barcode, Integer> discounts;
+    private final PromotionEngine promotions;
+    private PromotionResult finalPrices;
 
     /**
      * Construct a new special sale transaction for an associated customer, with an 
@@ -56,6 +65,33 @@ public class SpecialSaleTransaction extends CategorisedTransaction {
     public SpecialSaleTransaction(Customer customer, Map<Barcode, Integer> discounts) {
         super(customer);
         this.discounts = discounts;
+        this.promotions = PromotionEngine.compile(discounts);
+    }
+
+    /**
+     * Construct a new special sale transaction for an associated customer, with a compiled
+     * set of promotions to be applied on purchasing.
+     * <br>
+     * Transactions should always be active at the time of creation, i.e. a transaction cannot
+     * already be set to finalised upon instantiation.
+     * <br>
+     * The transaction's percentage discounts are those of the promotions' percentage rules, in
+     * the order the rules were given.
+     * @param customer the customer who is starting the transaction (beginning to shop).
+     * @param promotions the promotions to apply.
+     */
+    public SpecialSaleTransaction(Customer customer, PromotionEngine promotions) {
+        super(customer);
+        this.discounts = getPercentages(promotions);
+        this.promotions = promotions;
+    }
+
+    /**
+     * Retrieves the promotions applied by this transaction.
+     * @return the transaction's promotion engine.
+     */
+    public PromotionEngine getPromotions() {
+        return promotions;
     }
 
     /**
@@ -71,13 +107,7 @@ public class SpecialSaleTransaction extends CategorisedTransaction {
      */
     @Override
     public int getPurchaseSubtotal(Barcode type) {
-        int subtotal = super.getPurchaseSubtotal(type);
-        if (discounts.containsKey(type)) { 
-            subtotal -= (int) (getDiscountAmount(type) * subtotal / 100.0);
-        }
-        return subtotal;
-        // student version: return (int) (super.getPurchaseSubtotal(type) * (100 - getDiscountAmount(type)) / 100.0);
-        
+        return getPrices().getSubtotal(type);
     }
 
     /**
@@ -92,6 +122,16 @@ public class SpecialSaleTransaction extends CategorisedTransaction {
         return discounts.getOrDefault(type, 0);
     }
 
+    /**
+     * Retrieves how much the transaction's promotions take off the full price of a product type,
+     * whichever rules apply to it, before percentages are rounded down to a whole cent.
+     * @param type the product type.
+     * @return the discount on all products of that type, in hundredths of a cent.
+     */
+    public long getUnroundedDiscount(Barcode type) {
+        return getPrices().getUnroundedDiscount(type);
+    }
+
     /**
      * Calculates the total price (with discounts) of all the current products in the transaction.
      * @return the total (discounted) price calculated.
@@ -102,14 +142,7 @@ public class SpecialSaleTransaction extends CategorisedTransaction {
      */
     @Override
     public int getTotal() {
-        if (discounts.isEmpty()) {
-            return super.getTotal();
-        }
-        int totalWithDiscounts = 0;
-        for (Barcode type : getPurchasedTypes()) {
-            totalWithDiscounts += getPurchaseSubtotal(type);
-        }
-        return totalWithDiscounts;
+        return getPrices().getTotal();
     }
 
     /**
@@ -117,7 +150,21 @@ public class SpecialSaleTransaction extends CategorisedTransaction {
      * @return the numerical savings from discounts.
      */
     public int getTotalSaved() {
-        return super.getTotal() - this.getTotal();
+        return getPrices().getTotalDiscount();
+    }
+
+    /**
+     * Mark a transaction as finalised and update the transaction's internal state accordingly.
+     * <br>
+     * In addition to locking in the purchases, this prices them once, for every later query to
+     * use.
+     */
+    @Override
+    public void finalise() {
+        super.finalise();
+        if (finalPrices == null) {
+            finalPrices = promotions.evaluate(getPurchases());
+        }
     }
 
     /**
@@ -126,13 +173,35 @@ public class SpecialSaleTransaction extends CategorisedTransaction {
      */
     protected List<String> populateReceiptEntry(Barcode type) {
         List<String> receiptEntry = super.populateReceiptEntry(type);
-        if (getDiscountAmount(type) > 0) {
-            receiptEntry.add("Discount applied! " + getDiscountAmount(type) + "% off "
-                    + type.getDisplayName());
+        String promotion = promotions.describe(type);
+        if (promotion != null) {
+            receiptEntry.add(promotion);
         }
         return receiptEntry;
     }
 
+    private static Map<Barcode, Integer> getPercentages(PromotionEngine promotions) {
+        // in rule order, which for compiled discount maps is the map's own order
+        Map<Barcode, Integer> percentages = new LinkedHashMap<>();
+        for (PromotionRule rule : promotions.getRules()) {
+            if (rule instanceof PercentageDiscount percentage) {
+                percentages.put(percentage.barcode(), percentage.percent());
+            }
+        }
+        return percentages;
+    }
+
+    /**
+     * Prices the purchases associated with the transaction.
+     * @hidden Custom helper method
+     */
+    private PromotionResult getPrices() {
+        if (isFinalised()) {
+            return finalPrices;
+        }
+        return promotions.evaluate(getPurchases());
+    }
+
     /**
      * Returns a string representation of this transaction and its current state. 
      * The representation contains information about the customer, the transaction's status, the associated products, and the discounts to be applied.
@@ -260,12 +329,10 @@ public class SpecialSaleTransaction extends CategorisedTransaction {
         if (getTotalSaved() <= 0) {
             return super.getReceipt(); // no discounts
         }
-        List<List<String>> items = new ArrayList<>(getPurchases().size());
-        // item, qty, price, subtotal 
-        for (Barcode type : Barcode.values()) {
-            if (getPurchasedTypes().contains(type)) {
-                items.add(populateReceiptEntry(type));
-            }
+        List<List<String>> items = new ArrayList<>(getPurchasedTypes().size());
+        // item, qty, price, subtotal; purchased types are ordered as per Barcode#values()
+        for (Barcode type : getPurchasedTypes()) {
+            items.add(populateReceiptEntry(type));
         }
         return ReceiptPrinter.createReceipt(List.of("Item", "Qty", "Price (ea.)", "Subtotal"),
                 items, getDisplayPrice(getTotal()), getAssociatedCustomer().getName(),
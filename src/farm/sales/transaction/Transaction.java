@@ -98,6 +98,18 @@ public class Transaction {
     }
 
 
+    /**
+     * Recreates this transaction as finalised with the given purchases, without touching the
+     * associated customer's cart, such as when reading it back from a {@link TransactionStore}.
+     * @param purchases the products that were locked in when the transaction was first finalised.
+     */
+    void restore(List<Product> purchases) {
+        finalPurchases = Collections.unmodifiableList(purchases);
+        isFinalised = true;
+        // already finalised, so this only lets subclasses work out what they keep once finalised
+        finalise();
+    }
+
     /**
      * Returns a string representation of this transaction and its current state. 
      * The representation contains information about the customer, the transaction's status, and the associated products.
@@ -0,0 +1,381 @@
+package farm.sales.transaction;
+
+import farm.customer.Customer;
+import farm.inventory.product.Product;
+import farm.inventory.product.ProductCatalog;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.promotion.PromotionEngine;
+import farm.sales.promotion.PromotionRule;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A compact, append-only store of finalised transactions.
+ * <p>
+ * Rather than keeping each transaction and its list of products, the store packs every purchase
+ * into parallel primitive columns (product type, quality and price), and every transaction into
+ * columns of its offset into the purchases, its reported total, its customer and its kind.
+ * Customers are kept once each, however many transactions share them, and so are promotions,
+ * however many special sales were created with the same discounts. A stored
+ * purchase therefore takes six bytes rather than a reference to a product, and statistics can be
+ * computed by simple loops over a single column.
+ * <p>
+ * Money taken off by a transaction, whether by its markdowns or by a special sale's promotions,
+ * is worked out once for each type it bought. Since most transactions take nothing off, it is
+ * kept in a separate, sparse set of columns, holding one entry per transaction and type only
+ * where something was taken off.
+ * <p>
+ * {@link TransactionStore#report(ForkJoinPool)} works out every statistic at once, splitting the
+ * transactions into chunks which are each summarised by a separate fork/join task.
+ * <p>
+ * Transactions are not kept once stored; {@link TransactionStore#get(int)} recreates one only
+ * when it is needed, such as to print its receipt. The recreated transaction is equal in every
+ * way to the one which was stored, but is a new object each time.
+ * Transactions of a type the store does not know how to pack are kept as they are.
+ */
+public class TransactionStore {
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+    private static final int INITIAL_CAPACITY = 16;
+    // transactions summarised by a single task, large enough to outweigh the cost of forking
+    private static final int REPORT_CHUNK = 8192;
+
+    private static final byte BASIC = 0;
+    private static final byte CATEGORISED = 1;
+    private static final byte SPECIAL_SALE = 2;
+    private static final byte RETAINED = 3;
+
+    // one entry per purchase
+    private byte[] barcodes = new byte[INITIAL_CAPACITY];
+    private byte[] qualities = new byte[INITIAL_CAPACITY];
+    private int[] prices = new int[INITIAL_CAPACITY];
+    private int purchaseCount = 0;
+
+    // one entry per transaction and type with anything taken off
+    private byte[] markdownBarcodes = new byte[INITIAL_CAPACITY];
+    // cents taken off by the transaction's markdowns
+    private int[] markdowns = new int[INITIAL_CAPACITY];
+    // hundredths of a cent taken off by a special sale's promotions
+    private long[] discounts = new long[INITIAL_CAPACITY];
+    private int markdownCount = 0;
+
+    // one entry per transaction; purchases of transaction i are offsets[i] to offsets[i + 1]
+    private int[] offsets = new int[INITIAL_CAPACITY + 1];
+    // markdowns of transaction i are markdownOffsets[i] to markdownOffsets[i + 1]
+    private int[] markdownOffsets = new int[INITIAL_CAPACITY + 1];
+    private int[] totals = new int[INITIAL_CAPACITY];
+    private int[] customerIds = new int[INITIAL_CAPACITY];
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    // index into promotions for special sales, or into retained for unknown transactions
+    private int[] extras = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    private final List<Customer> customers = new ArrayList<>();
+    private final Map<Customer, Integer> customerIndex = new IdentityHashMap<>();
+    // keyed by the rules each engine was compiled from, so sales with equal discounts share one
+    private final List<PromotionEngine> promotions = new ArrayList<>();
+    private final Map<List<PromotionRule>, Integer> promotionIndex = new HashMap<>();
+    private final List<Transaction> retained = new ArrayList<>();
+
+    /**
+     * Adds a finalised transaction to the end of the store.
+     * @param transaction the transaction to add.
+     * @return the index of the stored transaction.
+     * @throws IllegalArgumentException if the transaction has not been finalised.
+     */
+    public int append(Transaction transaction) {
+        if (!transaction.isFinalised()) {
+            throw new IllegalArgumentException("Only finalised transactions can be stored.");
+        }
+        List<Product> purchases = transaction.getPurchases();
+        ensureTransactionCapacity(size + 1);
+        ensurePurchaseCapacity(purchaseCount + purchases.size());
+        ensureMarkdownCapacity(markdownCount + Math.min(purchases.size(), BARCODES.length));
+
+        boolean[] bought = new boolean[BARCODES.length];
+        int[] fullSubtotals = new int[BARCODES.length];
+        for (Product purchase : purchases) {
+            int id = purchase.getBarcode().ordinal();
+            barcodes[purchaseCount] = (byte) id;
+            qualities[purchaseCount] = (byte) purchase.getQuality().ordinal();
+            prices[purchaseCount] = purchase.getBasePrice();
+            purchaseCount++;
+            bought[id] = true;
+            fullSubtotals[id] += purchase.getBasePrice();
+        }
+        for (int id = 0; id < BARCODES.length; id++) {
+            if (bought[id]) {
+                appendMarkdown(transaction, BARCODES[id], fullSubtotals[id]);
+            }
+        }
+        totals[size] = transaction.getTotal();
+        customerIds[size] = idOf(customers, customerIndex, transaction.getAssociatedCustomer());
+        if (transaction.getClass() == Transaction.class) {
+            kinds[size] = BASIC;
+        } else if (transaction.getClass() == CategorisedTransaction.class) {
+            kinds[size] = CATEGORISED;
+        } else if (transaction.getClass() == SpecialSaleTransaction.class) {
+            kinds[size] = SPECIAL_SALE;
+            extras[size] = idOfPromotions((SpecialSaleTransaction) transaction);
+        } else {
+            kinds[size] = RETAINED;
+            extras[size] = retained.size();
+            retained.add(transaction);
+        }
+        offsets[size + 1] = purchaseCount;
+        markdownOffsets[size + 1] = markdownCount;
+        return size++;
+    }
+
+    /**
+     * Retrieves the number of transactions stored.
+     * @return the number of transactions.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Recreates a stored transaction.
+     * @param index the index of the transaction, in the order they were stored.
+     * @return a finalised transaction equal to the one stored.
+     * @throws IndexOutOfBoundsException if no transaction is stored at the index.
+     */
+    public Transaction get(int index) {
+        Objects.checkIndex(index, size);
+        if (kinds[index] == RETAINED) {
+            return retained.get(extras[index]);
+        }
+        Customer customer = customers.get(customerIds[index]);
+        Transaction transaction = switch (kinds[index]) {
+            case CATEGORISED -> new CategorisedTransaction(customer);
+            case SPECIAL_SALE -> new SpecialSaleTransaction(customer,
+                    promotions.get(extras[index]));
+            default -> new Transaction(customer);
+        };
+        List<Product> purchases = new ArrayList<>(offsets[index + 1] - offsets[index]);
+        for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+            purchases.add(ProductCatalog.getProduct(BARCODES[barcodes[i]],
+                    QUALITIES[qualities[i]]));
+        }
+        transaction.restore(purchases);
+        return transaction;
+    }
+
+    /**
+     * Retrieves the total reported by a stored transaction, without recreating it.
+     * @param index the index of the transaction.
+     * @return the transaction's total, in cents.
+     * @throws IndexOutOfBoundsException if no transaction is stored at the index.
+     */
+    public int getTotal(int index) {
+        Objects.checkIndex(index, size);
+        return totals[index];
+    }
+
+    /**
+     * Retrieves the number of products stored across every transaction.
+     * @return the number of products sold.
+     */
+    public int countPurchases() {
+        return purchaseCount;
+    }
+
+    /**
+     * Works out every statistic about the stored transactions in a single parallel pass.
+     * <p>
+     * The transactions are split into chunks, each summarised by its own task into its own
+     * totals, which are added together as the tasks complete.
+     * Transactions stored while the report is being worked out are not included.
+     * @param pool the pool to run the tasks in.
+     * @return a report on every transaction stored when the method was called.
+     */
+    public HistoryReport report(ForkJoinPool pool) {
+        Summary summary = pool.invoke(new ReportTask(this, 0, size));
+        return new HistoryReport(size, summary.grossEarnings, summary.productsSold,
+                summary.highestGrossing, summary.quantities, summary.fullEarnings,
+                summary.earnings, summary.discounts, summary.qualityQuantities);
+    }
+
+    /** Private Helper Methods **/
+
+    /**
+     * Adds an entry for the money a transaction took off a type, if it took anything off.
+     * @param fullSubtotal the full price of every product of the type the transaction bought.
+     */
+    private void appendMarkdown(Transaction transaction, Barcode barcode, int fullSubtotal) {
+        int markdown = transaction instanceof CategorisedTransaction catSale
+                ? fullSubtotal - catSale.getPurchaseSubtotal(barcode) : 0;
+        long discount = transaction instanceof SpecialSaleTransaction sale
+                ? sale.getUnroundedDiscount(barcode) : 0;
+        if (markdown != 0 || discount != 0) {
+            markdownBarcodes[markdownCount] = (byte) barcode.ordinal();
+            markdowns[markdownCount] = markdown;
+            discounts[markdownCount] = discount;
+            markdownCount++;
+        }
+    }
+
+    private static <T> int idOf(List<T> table, Map<T, Integer> index, T value) {
+        Integer id = index.get(value);
+        if (id == null) {
+            id = table.size();
+            table.add(value);
+            index.put(value, id);
+        }
+        return id;
+    }
+
+    private int idOfPromotions(SpecialSaleTransaction sale) {
+        PromotionEngine engine = sale.getPromotions();
+        Integer id = promotionIndex.get(engine.getRules());
+        if (id == null) {
+            id = promotions.size();
+            promotions.add(engine);
+            promotionIndex.put(engine.getRules(), id);
+        }
+        return id;
+    }
+
+    private void ensurePurchaseCapacity(int capacity) {
+        if (capacity > barcodes.length) {
+            int grown = Math.max(capacity, barcodes.length * 2);
+            barcodes = Arrays.copyOf(barcodes, grown);
+            qualities = Arrays.copyOf(qualities, grown);
+            prices = Arrays.copyOf(prices, grown);
+        }
+    }
+
+    private void ensureMarkdownCapacity(int capacity) {
+        if (capacity > markdowns.length) {
+            int grown = Math.max(capacity, markdowns.length * 2);
+            markdownBarcodes = Arrays.copyOf(markdownBarcodes, grown);
+            markdowns = Arrays.copyOf(markdowns, grown);
+            discounts = Arrays.copyOf(discounts, grown);
+        }
+    }
+
+    private void ensureTransactionCapacity(int capacity) {
+        if (capacity > totals.length) {
+            int grown = Math.max(capacity, totals.length * 2);
+            offsets = Arrays.copyOf(offsets, grown + 1);
+            markdownOffsets = Arrays.copyOf(markdownOffsets, grown + 1);
+            totals = Arrays.copyOf(totals, grown);
+            customerIds = Arrays.copyOf(customerIds, grown);
+            kinds = Arrays.copyOf(kinds, grown);
+            extras = Arrays.copyOf(extras, grown);
+        }
+    }
+
+    /**
+     * Statistics about a run of transactions, built up by a single task.
+     */
+    private static class Summary {
+        private long grossEarnings = 0;
+        private long productsSold = 0;
+        private int highestGrossing = -1;
+        private int highestTotal = 0;
+        // indexed by barcode ordinal
+        private final long[] quantities = new long[BARCODES.length];
+        private final long[] fullEarnings = new long[BARCODES.length];
+        private final long[] earnings = new long[BARCODES.length];
+        private final long[] discounts = new long[BARCODES.length];
+        // indexed by barcode ordinal * number of qualities + quality ordinal
+        private final long[] qualityQuantities = new long[BARCODES.length * QUALITIES.length];
+
+        /**
+         * Adds the statistics of a later run of transactions to this one.
+         * @param later the summary of the transactions stored after these.
+         */
+        private void merge(Summary later) {
+            grossEarnings += later.grossEarnings;
+            productsSold += later.productsSold;
+            // ties keep the earlier transaction
+            if (highestGrossing == -1
+                    || later.highestGrossing != -1 && later.highestTotal > highestTotal) {
+                highestGrossing = later.highestGrossing;
+                highestTotal = later.highestTotal;
+            }
+            for (int id = 0; id < BARCODES.length; id++) {
+                quantities[id] += later.quantities[id];
+                fullEarnings[id] += later.fullEarnings[id];
+                earnings[id] += later.earnings[id];
+                discounts[id] += later.discounts[id];
+            }
+            for (int slot = 0; slot < qualityQuantities.length; slot++) {
+                qualityQuantities[slot] += later.qualityQuantities[slot];
+            }
+        }
+    }
+
+    /**
+     * Summarises the transactions from one index up to another, splitting them in half until
+     * each half is small enough to summarise directly.
+     */
+    private static class ReportTask extends RecursiveTask<Summary> {
+        private static final long serialVersionUID = 1L;
+
+        // tasks are never serialised; they only ever run inside the pool that forked them
+        private final transient TransactionStore store;
+        private final int from;
+        private final int to;
+
+        private ReportTask(TransactionStore store, int from, int to) {
+            this.store = store;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Summary compute() {
+            if (to - from <= REPORT_CHUNK) {
+                return summarise();
+            }
+            int middle = (from + to) >>> 1;
+            ReportTask left = new ReportTask(store, from, middle);
+            left.fork();
+            Summary later = new ReportTask(store, middle, to).compute();
+            Summary summary = left.join();
+            summary.merge(later);
+            return summary;
+        }
+
+        private Summary summarise() {
+            Summary summary = new Summary();
+            int[] totals = store.totals;
+            for (int i = from; i < to; i++) {
+                summary.grossEarnings += totals[i];
+                if (summary.highestGrossing == -1 || totals[i] > summary.highestTotal) {
+                    summary.highestGrossing = i;
+                    summary.highestTotal = totals[i];
+                }
+            }
+            byte[] barcodes = store.barcodes;
+            byte[] qualities = store.qualities;
+            int[] prices = store.prices;
+            int start = store.offsets[from];
+            int end = store.offsets[to];
+            for (int i = start; i < end; i++) {
+                int id = barcodes[i];
+                summary.quantities[id]++;
+                summary.fullEarnings[id] += prices[i];
+                summary.earnings[id] += prices[i];
+                summary.qualityQuantities[id * QUALITIES.length + qualities[i]]++;
+            }
+            summary.productsSold = end - start;
+
+            byte[] markdownBarcodes = store.markdownBarcodes;
+            int[] markdowns = store.markdowns;
+            long[] discounts = store.discounts;
+            for (int i = store.markdownOffsets[from]; i < store.markdownOffsets[to]; i++) {
+                int id = markdownBarcodes[i];
+                summary.earnings[id] -= markdowns[i];
+                summary.discounts[id] += discounts[i];
+            }
+            return summary;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package farm.core;
+
+import farm.customer.AddressBook;
+import farm.customer.Customer;
+import farm.files.TransactionLog;
+import farm.inventory.BasicInventory;
+import farm.inventory.ConcurrentInventory;
+import farm.inventory.FancyInventory;
+import farm.inventory.StockManifest;
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.transaction.Transaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class FarmTest {
+
+    private Path directory;
+    private Customer customer;
+    private ManualClock clock;
+    private Farm farm;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("farm");
+        customer = new Customer("Jack", 1234567, "1st Street");
+        clock = new ManualClock();
+        farm = new Farm(new ConcurrentInventory(Duration.ofMinutes(5), clock), new AddressBook());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testCheckoutAppendsToLog() throws Exception {
+        try (TransactionLog log = new TransactionLog(directory.toString())) {
+            Farm farm = new Farm(new FancyInventory(), new AddressBook(), log);
+            farm.stockProduct(Barcode.MILK, Quality.GOLD, 3);
+
+            farm.startTransaction(new Transaction(customer));
+            assertEquals(2, farm.addToCart(Barcode.MILK, 2));
+            assertTrue(farm.checkout());
+            farm.startTransaction(new Transaction(customer));
+            assertFalse("Empty transactions are not recorded", farm.checkout());
+
+            assertEquals(1, log.getTotalTransactionsMade());
+            assertEquals(farm.getTransactionHistory().getGrossEarnings(), log.getGrossEarnings());
+        }
+        try (TransactionLog log = new TransactionLog(directory.toString())) {
+            assertEquals("Logged sales should outlast the farm", 2,
+                    log.getTotalProductsSold(Barcode.MILK));
+        }
+    }
+
+    @Test
+    public void testConcurrentLanes() throws Exception {
+        farm.stockProduct(Barcode.EGG, Quality.REGULAR, 1000);
+        runLanes(8, lane -> {
+            Customer shopper = new Customer("Lane " + lane, lane, "1st Street");
+            for (int i = 0; i < 50; i++) {
+                farm.startTransaction(lane, new Transaction(shopper));
+                assertEquals(2, farm.addToCart(lane, Barcode.EGG, 2));
+                assertTrue(farm.checkout(lane));
+            }
+        });
+
+        assertEquals(400, farm.getTransactionHistory().getTotalTransactionsMade());
+        assertEquals(800, farm.getTransactionHistory().getTotalProductsSold(Barcode.EGG));
+        assertEquals("No egg should be sold twice", 200, farm.getAllStock().size());
+        assertTrue(farm.getTransactionManager().getBusyLanes().isEmpty());
+    }
+
+    @Test
+    public void testConcurrentLanesWithExpiredReservations() throws Exception {
+        farm.stockProduct(Barcode.EGG, Quality.REGULAR, 10);
+        runLanes(4, lane -> {
+            farm.startTransaction(lane, new Transaction(
+                    new Customer("Lane " + lane, lane, "1st Street")));
+            assertEquals(2, farm.addToCart(lane, Barcode.EGG, 2));
+        });
+        runLanes(2, lane -> assertTrue(farm.checkout(lane)));
+        assertEquals("Reserved stock should not be on sale", 2, farm.getAllStock().size());
+
+        clock.advance(Duration.ofMinutes(6));
+        Queue<Integer> failed = new ConcurrentLinkedQueue<>();
+        runLanes(2, lane -> {
+            assertThrows(FailedTransactionException.class, () -> farm.checkout(lane + 2));
+            failed.add(lane + 2);
+        });
+
+        assertEquals(2, failed.size());
+        assertEquals("Expired reservations should return their stock", 6,
+                farm.getAllStock().size());
+        assertEquals(2, farm.getTransactionHistory().getTotalTransactionsMade());
+        assertTrue("Abandoned lanes should be free",
+                farm.getTransactionManager().getBusyLanes().isEmpty());
+    }
+
+    @Test
+    public void testOutOfStockProductDoesNotAbandonCart() throws Exception {
+        farm.stockProduct(Barcode.EGG, Quality.REGULAR, 2);
+        farm.startTransaction(new Transaction(customer));
+        assertEquals("Nothing should be added while out of stock", 0,
+                farm.addToCart(Barcode.MILK, 1));
+
+        clock.advance(Duration.ofMinutes(6));
+        assertEquals(2, farm.addToCart(Barcode.EGG, 2));
+
+        assertTrue("An empty reservation should never expire the cart", farm.checkout());
+        assertEquals(2, farm.getTransactionHistory().getTotalProductsSold(Barcode.EGG));
+        assertTrue("Sold eggs should not return to the shelf", farm.getAllStock().isEmpty());
+    }
+
+    @Test
+    public void testStockProductsFromManifest() throws Exception {
+        Farm farm = new Farm(new FancyInventory(), new AddressBook());
+        farm.stockProducts(new StockManifest()
+                .add(Barcode.EGG, Quality.REGULAR, 5)
+                .add(Barcode.EGG, Quality.GOLD, 2)
+                .add(Barcode.MILK, Quality.SILVER, 1)
+                .add(Barcode.EGG, Quality.REGULAR, 3));
+
+        List<Product> stock = farm.getAllStock();
+        assertEquals(11, stock.size());
+        assertEquals("Repeated entries should accumulate", 8,
+                count(stock, Barcode.EGG, Quality.REGULAR));
+        assertEquals(2, count(stock, Barcode.EGG, Quality.GOLD));
+        assertEquals(1, count(stock, Barcode.MILK, Quality.SILVER));
+
+        farm.stockProducts(new StockManifest());
+        assertEquals("An empty manifest should change nothing", 11, farm.getAllStock().size());
+    }
+
+    @Test
+    public void testStockProductsOneAtATimeForBasicInventory() {
+        Farm farm = new Farm(new BasicInventory(), new AddressBook());
+        farm.stockProducts(new StockManifest()
+                .add(Barcode.WOOL, Quality.IRIDIUM, 3)
+                .add(Barcode.JAM, Quality.REGULAR, 2));
+
+        List<Product> stock = farm.getAllStock();
+        assertEquals("A basic inventory should still take the whole manifest", 5, stock.size());
+        assertEquals(3, count(stock, Barcode.WOOL, Quality.IRIDIUM));
+        assertEquals(2, count(stock, Barcode.JAM, Quality.REGULAR));
+        assertThrows("Quantities should still be refused", InvalidStockRequestException.class,
+                () -> farm.stockProduct(Barcode.JAM, Quality.REGULAR, 2));
+    }
+
+    /** Private Helper Methods **/
+
+    private static long count(List<Product> stock, Barcode barcode, Quality quality) {
+        return stock.stream()
+                .filter(product -> product.getBarcode() == barcode
+                        && product.getQuality() == quality)
+                .count();
+    }
+
+    private static void runLanes(int count, Lane work) throws InterruptedException {
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> lanes = new ArrayList<>();
+        for (int lane = 0; lane < count; lane++) {
+            int number = lane;
+            lanes.add(new Thread(() -> {
+                try {
+                    work.serve(number);
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (Thread lane : lanes) {
+            lane.start();
+        }
+        for (Thread lane : lanes) {
+            lane.join();
+        }
+        assertTrue("Lanes failed: " + failures, failures.isEmpty());
+    }
+
+    private interface Lane {
+        void serve(int lane) throws Exception;
+    }
+
+    private static class ManualClock extends Clock {
+        private volatile Instant now = Instant.EPOCH;
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package farm.files;
+
+import farm.inventory.FancyInventory;
+import farm.inventory.StockManifest;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class InventorySnapshotterTest {
+
+    private Path directory;
+    private String filename;
+    private InventorySnapshotter snapshotter;
+    private FancyInventory inventory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("inventory-snapshot");
+        filename = directory.resolve("inventory.snapshot").toString();
+        snapshotter = new InventorySnapshotter();
+        inventory = new FancyInventory();
+        inventory.addProduct(Barcode.EGG, Quality.REGULAR, 3);
+        inventory.addProduct(Barcode.EGG, Quality.GOLD, 2);
+        inventory.addProduct(Barcode.JAM, Quality.IRIDIUM, 1);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testBinaryFormat() throws IOException {
+        snapshotter.save(filename, inventory, 7);
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(Path.of(filename)));
+        assertEquals("Header + 3 entries", 20 + 3 * 6, buffer.remaining());
+        assertEquals("Magic", 0x46494E56, buffer.getInt());
+        assertEquals("Version", 2, buffer.getInt());
+        assertEquals("Generation", 7, buffer.getLong());
+        assertEquals("Entry count", 3, buffer.getInt());
+        assertEquals(Barcode.EGG.ordinal(), buffer.get());
+        assertEquals(Quality.REGULAR.ordinal(), buffer.get());
+        assertEquals(3, buffer.getInt());
+        assertEquals(Barcode.EGG.ordinal(), buffer.get());
+        assertEquals(Quality.GOLD.ordinal(), buffer.get());
+        assertEquals(2, buffer.getInt());
+        assertEquals(Barcode.JAM.ordinal(), buffer.get());
+        assertEquals(Quality.IRIDIUM.ordinal(), buffer.get());
+        assertEquals(1, buffer.getInt());
+    }
+
+    @Test
+    public void testMappedRestore() throws IOException {
+        snapshotter.save(filename, inventory, 4);
+        assertEquals("Generation read back", 4, snapshotter.readGeneration(filename));
+
+        StockManifest manifest = snapshotter.read(filename);
+        assertEquals(3, manifest.getQuantity(Barcode.EGG, Quality.REGULAR));
+        assertEquals(2, manifest.getQuantity(Barcode.EGG, Quality.GOLD));
+        assertEquals(1, manifest.getQuantity(Barcode.JAM, Quality.IRIDIUM));
+        assertEquals(6, manifest.getTotalQuantity());
+
+        FancyInventory restored = new FancyInventory();
+        snapshotter.load(filename, restored);
+        for (Barcode barcode : Barcode.values()) {
+            for (Quality quality : Quality.values()) {
+                assertEquals("Restored " + barcode + " " + quality,
+                        inventory.getStockedQuantity(barcode, quality),
+                        restored.getStockedQuantity(barcode, quality));
+            }
+        }
+    }
+
+    @Test
+    public void testSaveReplacesSnapshotAtomically() throws Exception {
+        snapshotter.save(filename, inventory, 1);
+        inventory.addProduct(Barcode.MILK, Quality.SILVER, 5);
+        snapshotter.save(filename, inventory, 2);
+
+        assertEquals("Newer snapshot in place", 2, snapshotter.readGeneration(filename));
+        assertEquals(5, snapshotter.read(filename).getQuantity(Barcode.MILK, Quality.SILVER));
+        assertFalse("No temporary file left behind",
+                Files.exists(Path.of(filename + ".tmp")));
+    }
+
+    @Test
+    public void testRejectsBadMagic() throws IOException {
+        snapshotter.save(filename, inventory, 1);
+        corrupt(0, ByteBuffer.allocate(Integer.BYTES).putInt(0x12345678).array());
+        IOException e = assertThrows(IOException.class, () -> snapshotter.read(filename));
+        assertEquals("The file is not an inventory snapshot", e.getMessage());
+        assertThrows(IOException.class, () -> snapshotter.readGeneration(filename));
+    }
+
+    @Test
+    public void testRejectsUnsupportedVersion() throws IOException {
+        snapshotter.save(filename, inventory, 1);
+        corrupt(Integer.BYTES, ByteBuffer.allocate(Integer.BYTES).putInt(99).array());
+        IOException e = assertThrows(IOException.class, () -> snapshotter.read(filename));
+        assertEquals("Unsupported inventory snapshot version: 99", e.getMessage());
+    }
+
+    @Test
+    public void testRejectsTruncatedSnapshot() throws IOException {
+        snapshotter.save(filename, inventory, 1);
+        byte[] bytes = Files.readAllBytes(Path.of(filename));
+        Files.write(Path.of(filename), Arrays.copyOf(bytes, bytes.length - 1));
+        IOException e = assertThrows(IOException.class, () -> snapshotter.read(filename));
+        assertEquals("The inventory snapshot is truncated", e.getMessage());
+
+        Files.write(Path.of(filename), Arrays.copyOf(bytes, 10));
+        assertThrows("Header cut short", IOException.class, () -> snapshotter.read(filename));
+        assertThrows(IOException.class, () -> snapshotter.readGeneration(filename));
+    }
+
+    @Test
+    public void testRejectsInvalidEntry() throws IOException {
+        snapshotter.save(filename, inventory, 1);
+        corrupt(20 + 6, new byte[] {(byte) Barcode.values().length});
+        IOException e = assertThrows(IOException.class, () -> snapshotter.read(filename));
+        assertEquals("Invalid inventory snapshot entry 1", e.getMessage());
+    }
+
+    /** Private Helper Methods **/
+
+    private void corrupt(int offset, byte[] replacement) throws IOException {
+        byte[] bytes = Files.readAllBytes(Path.of(filename));
+        System.arraycopy(replacement, 0, bytes, offset, replacement.length);
+        Files.write(Path.of(filename), bytes);
+    }
+}
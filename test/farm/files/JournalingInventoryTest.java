@@ -0,0 +1,203 @@
+package farm.files;
+
+import farm.core.InvalidStockRequestException;
+import farm.inventory.BasicInventory;
+import farm.inventory.FancyInventory;
+import farm.inventory.StockManifest;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class JournalingInventoryTest {
+    private static final int HEADER_BYTES = 12;
+    private static final int RECORD_BYTES = 7;
+
+    private Path directory;
+    private String snapshotFilename;
+    private String journalFilename;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journaling-inventory");
+        snapshotFilename = directory.resolve("inventory.snapshot").toString();
+        journalFilename = directory.resolve("inventory.journal").toString();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testChangesWrittenBeforeReturning() throws Exception {
+        JournalingInventory inventory = open(InventoryJournal.SyncPolicy.EVERY_GROUP);
+        inventory.addProduct(Barcode.EGG, Quality.GOLD);
+        assertEquals("Single change written although the group is not full",
+                HEADER_BYTES + RECORD_BYTES, Files.size(Path.of(journalFilename)));
+        inventory.addProduct(Barcode.MILK, Quality.REGULAR, 4);
+        inventory.removeProduct(Barcode.MILK, 3);
+
+        // replayed without closing or flushing, as if the program had stopped here
+        FancyInventory restored = restore();
+        assertEquals(1, restored.getStockedQuantity(Barcode.EGG, Quality.GOLD));
+        assertEquals(1, restored.getStockedQuantity(Barcode.MILK, Quality.REGULAR));
+        inventory.close();
+    }
+
+    @Test
+    public void testReplayAfterReopen() throws Exception {
+        try (JournalingInventory inventory = open(InventoryJournal.SyncPolicy.NEVER)) {
+            inventory.addProduct(Barcode.JAM, Quality.SILVER, 5);
+            inventory.addProduct(Barcode.JAM, Quality.IRIDIUM);
+            inventory.removeProduct(Barcode.JAM);
+        }
+        try (JournalingInventory inventory = open(InventoryJournal.SyncPolicy.NEVER)) {
+            assertEquals("Highest quality was removed before reopening",
+                    5, inventory.view().getQuantity(Barcode.JAM, Quality.SILVER));
+            assertEquals(0, inventory.view().getQuantity(Barcode.JAM, Quality.IRIDIUM));
+            inventory.removeProduct(Barcode.JAM, 2);
+        }
+        assertEquals(3, restore().getStockedQuantity(Barcode.JAM, Quality.SILVER));
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        try (JournalingInventory inventory = JournalingInventory.open(new FancyInventory(),
+                snapshotFilename, journalFilename, InventoryJournal.SyncPolicy.EVERY_GROUP,
+                16, HEADER_BYTES + 10 * RECORD_BYTES)) {
+            for (int i = 0; i < 25; i++) {
+                inventory.addProduct(Barcode.WOOL, Quality.REGULAR);
+            }
+            inventory.removeProduct(Barcode.WOOL, 5);
+            assertTrue("Snapshot saved by compaction", Files.exists(Path.of(snapshotFilename)));
+            assertTrue("Journal emptied by compaction",
+                    Files.size(Path.of(journalFilename)) <= HEADER_BYTES + 10 * RECORD_BYTES);
+        }
+        assertEquals(20, restore().getStockedQuantity(Barcode.WOOL, Quality.REGULAR));
+
+        try (JournalingInventory inventory = open(InventoryJournal.SyncPolicy.EVERY_GROUP)) {
+            inventory.compact();
+            assertEquals("Nothing left in the journal", HEADER_BYTES,
+                    Files.size(Path.of(journalFilename)));
+            assertEquals("Journal follows on from the new snapshot",
+                    new InventorySnapshotter().readGeneration(snapshotFilename),
+                    InventoryJournal.replay(journalFilename, 0, new long[24]));
+        }
+        assertEquals(20, restore().getStockedQuantity(Barcode.WOOL, Quality.REGULAR));
+    }
+
+    @Test
+    public void testTornTailIgnored() throws Exception {
+        try (JournalingInventory inventory = open(InventoryJournal.SyncPolicy.EVERY_RECORD)) {
+            inventory.addProduct(Barcode.COFFEE, Quality.GOLD, 2);
+        }
+        // a record cut short by a crash
+        Files.write(Path.of(journalFilename), new byte[] {1, 4, 2},
+                StandardOpenOption.APPEND);
+        assertEquals(2, restore().getStockedQuantity(Barcode.COFFEE, Quality.GOLD));
+
+        try (JournalingInventory inventory = open(InventoryJournal.SyncPolicy.EVERY_RECORD)) {
+            assertEquals("Torn record dropped when reopened",
+                    HEADER_BYTES + RECORD_BYTES, Files.size(Path.of(journalFilename)));
+            inventory.addProduct(Barcode.COFFEE, Quality.GOLD);
+        }
+        assertEquals(3, restore().getStockedQuantity(Barcode.COFFEE, Quality.GOLD));
+    }
+
+    @Test
+    public void testRejectedAdditionRetracted() throws Exception {
+        try (JournalingInventory inventory = JournalingInventory.open(new BasicInventory(),
+                snapshotFilename, journalFilename, InventoryJournal.SyncPolicy.EVERY_GROUP)) {
+            inventory.addProduct(Barcode.BREAD, Quality.REGULAR);
+            assertThrows(InvalidStockRequestException.class,
+                    () -> inventory.addProduct(Barcode.BREAD, Quality.REGULAR, 3));
+        }
+        assertEquals(1, restore().getStockedQuantity(Barcode.BREAD, Quality.REGULAR));
+    }
+
+    @Test
+    public void testConcurrentChangesShareGroups() throws Exception {
+        int threads = 8;
+        int perThread = 200;
+        try (JournalingInventory inventory = open(InventoryJournal.SyncPolicy.EVERY_GROUP)) {
+            List<Thread> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Quality quality = Quality.values()[i % Quality.values().length];
+                workers.add(new Thread(() -> {
+                    for (int j = 0; j < perThread; j++) {
+                        inventory.addProduct(Barcode.EGG, quality);
+                    }
+                }));
+            }
+            for (Thread worker : workers) {
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            assertEquals("Every change written before close",
+                    HEADER_BYTES + (long) threads * perThread * RECORD_BYTES,
+                    Files.size(Path.of(journalFilename)));
+        }
+        FancyInventory restored = restore();
+        for (Quality quality : Quality.values()) {
+            assertEquals(threads / Quality.values().length * perThread,
+                    restored.getStockedQuantity(Barcode.EGG, quality));
+        }
+    }
+
+    /** Private Helper Methods **/
+
+    private JournalingInventory open(InventoryJournal.SyncPolicy syncPolicy) throws IOException {
+        return JournalingInventory.open(new FancyInventory(), snapshotFilename, journalFilename,
+                syncPolicy);
+    }
+
+    /**
+     * Rebuilds the stock from the snapshot and journal files alone, without the journal
+     * being closed or flushed first.
+     */
+    private FancyInventory restore() throws Exception {
+        int qualities = Quality.values().length;
+        long[] counts = new long[Barcode.values().length * qualities];
+        long generation = 0;
+        if (Files.exists(Path.of(snapshotFilename))) {
+            InventorySnapshotter snapshotter = new InventorySnapshotter();
+            generation = snapshotter.readGeneration(snapshotFilename);
+            StockManifest snapshot = snapshotter.read(snapshotFilename);
+            for (Barcode barcode : Barcode.values()) {
+                for (Quality quality : Quality.values()) {
+                    counts[barcode.ordinal() * qualities + quality.ordinal()] =
+                            snapshot.getQuantity(barcode, quality);
+                }
+            }
+        }
+        InventoryJournal.replay(journalFilename, generation, counts);
+        FancyInventory restored = new FancyInventory();
+        for (Barcode barcode : Barcode.values()) {
+            for (Quality quality : Quality.values()) {
+                long count = counts[barcode.ordinal() * qualities + quality.ordinal()];
+                assertTrue("Journal consistent with snapshot", count >= 0);
+                restored.addProduct(barcode, quality, (int) count);
+            }
+        }
+        return restored;
+    }
+}
@@ -0,0 +1,172 @@
+package farm.files;
+
+import farm.customer.Customer;
+import farm.inventory.product.Egg;
+import farm.inventory.product.Jam;
+import farm.inventory.product.Milk;
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.promotion.BundleDiscount;
+import farm.sales.promotion.PercentageDiscount;
+import farm.sales.promotion.PromotionEngine;
+import farm.sales.transaction.CategorisedTransaction;
+import farm.sales.transaction.SpecialSaleTransaction;
+import farm.sales.transaction.Transaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class TransactionLogTest {
+
+    private Path directory;
+    private Customer customer;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("transaction-log");
+        customer = new Customer("Jack", 1234567, "1st Street");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testStatisticsAndReadBack() throws IOException {
+        try (TransactionLog log = new TransactionLog(directory.toString())) {
+            assertThrows(NoSuchElementException.class, log::getLastTransaction);
+            log.append(checkout(new Transaction(customer), new Egg(), new Milk()));
+            Transaction categorised = checkout(new CategorisedTransaction(customer),
+                    new Egg(), new Egg(Quality.GOLD), new Jam());
+            log.append(categorised);
+            Transaction special = checkout(new SpecialSaleTransaction(customer,
+                    Map.of(Barcode.MILK, 50)), new Milk(), new Milk(), new Egg());
+            log.append(special);
+
+            assertEquals(3, log.getTotalTransactionsMade());
+            assertEquals(8, log.getTotalProductsSold());
+            assertEquals(4, log.getTotalProductsSold(Barcode.EGG));
+            assertEquals(490 + 770 + 490, log.getGrossEarnings());
+            assertEquals("Milk earnings include the discount", 440 + 440,
+                    log.getGrossEarnings(Barcode.MILK));
+            assertEquals(categorised.getReceipt(), log.getHighestGrossingTransaction().getReceipt());
+            assertEquals(special.toString(), log.getLastTransaction().toString());
+            assertEquals(special.getReceipt(), log.getLastTransaction().getReceipt());
+        }
+    }
+
+    @Test
+    public void testRotationAndReopen() throws IOException {
+        PromotionEngine promotions = PromotionEngine.compile(List.of(
+                new PercentageDiscount(Barcode.EGG, 10), new BundleDiscount(Barcode.JAM, 1, 1)));
+        Transaction highest = null;
+        try (TransactionLog log = new TransactionLog(directory.toString(), 512)) {
+            for (int i = 0; i < 20; i++) {
+                Transaction transaction = i == 7
+                        ? checkout(new SpecialSaleTransaction(customer, promotions),
+                                new Jam(), new Jam(), new Jam(), new Egg())
+                        : checkout(new Transaction(customer), new Egg());
+                if (i == 7) {
+                    highest = transaction;
+                }
+                log.append(transaction);
+            }
+            assertTrue("Small segments should have been rotated", log.getSegmentCount() > 2);
+        }
+
+        try (TransactionLog log = new TransactionLog(directory.toString(), 512)) {
+            assertEquals(20, log.getTotalTransactionsMade());
+            assertEquals(19 * 50 + highest.getTotal(), log.getGrossEarnings());
+            assertEquals(3, log.getTotalProductsSold(Barcode.JAM));
+            assertEquals(highest.getReceipt(), log.getHighestGrossingTransaction().getReceipt());
+            assertEquals(Transaction.class, log.getLastTransaction().getClass());
+
+            log.append(checkout(new CategorisedTransaction(customer), new Milk()));
+            assertEquals(CategorisedTransaction.class, log.getLastTransaction().getClass());
+        }
+    }
+
+    @Test
+    public void testPartialRecordIsDiscarded() throws IOException {
+        try (TransactionLog log = new TransactionLog(directory.toString())) {
+            log.append(checkout(new Transaction(customer), new Egg()));
+            log.append(checkout(new Transaction(customer), new Milk()));
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        // a record header claiming more bytes than were written, as if cut off by a crash
+        Files.write(segment, new byte[] {0, 0, 0, 100, 1, 2}, StandardOpenOption.APPEND);
+
+        try (TransactionLog log = new TransactionLog(directory.toString())) {
+            assertEquals(2, log.getTotalTransactionsMade());
+            log.append(checkout(new Transaction(customer), new Jam()));
+        }
+        try (TransactionLog log = new TransactionLog(directory.toString())) {
+            assertEquals(3, log.getTotalTransactionsMade());
+            assertEquals(50 + 440 + 670, log.getGrossEarnings());
+        }
+    }
+
+    @Test
+    public void testEmptyLastSegmentIsStartedAgain() throws IOException {
+        try (TransactionLog log = new TransactionLog(directory.toString(), 512)) {
+            for (int i = 0; i < 10; i++) {
+                log.append(checkout(new Transaction(customer), new Egg()));
+            }
+            assertTrue("Small segments should have been rotated", log.getSegmentCount() > 1);
+        }
+        Path last;
+        try (Stream<Path> files = Files.list(directory)) {
+            last = files.sorted(Comparator.reverseOrder()).findFirst().orElseThrow();
+        }
+        // as if the log crashed before the new segment's header reached the disk
+        Files.write(last, new byte[0], StandardOpenOption.TRUNCATE_EXISTING);
+
+        try (TransactionLog log = new TransactionLog(directory.toString(), 512)) {
+            int logged = log.getTotalTransactionsMade();
+            assertTrue("Records in sealed segments should be kept", logged > 0);
+            log.append(checkout(new Transaction(customer), new Milk()));
+            assertEquals(logged + 1, log.getTotalTransactionsMade());
+        }
+        try (TransactionLog log = new TransactionLog(directory.toString(), 512)) {
+            assertEquals(Barcode.MILK,
+                    log.getLastTransaction().getPurchases().getFirst().getBarcode());
+        }
+    }
+
+    @Test
+    public void testUnfinalisedTransaction() throws IOException {
+        try (TransactionLog log = new TransactionLog(directory.toString())) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> log.append(new Transaction(customer)));
+        }
+    }
+
+    private Transaction checkout(Transaction transaction, Product... products) {
+        for (Product product : products) {
+            customer.getCart().addProduct(product);
+        }
+        transaction.finalise();
+        return transaction;
+    }
+}
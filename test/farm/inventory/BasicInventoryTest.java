@@ -2,6 +2,7 @@ package farm.inventory;
 
 import farm.core.FailedTransactionException;
 import farm.core.InvalidStockRequestException;
+import farm.inventory.product.Bread;
 import farm.inventory.product.Egg;
 import farm.inventory.product.Jam;
 import farm.inventory.product.Milk;
@@ -126,6 +127,19 @@ public class BasicInventoryTest {
         }
     }
 
+    @Test
+    public void testQueryNullProduct() {
+        inventory.addProduct(egg, gold);
+        assertFalse("A null product should never exist", inventory.existsProduct(null));
+        assertTrue("Nothing should be removed for a null product",
+                inventory.removeProduct(null).isEmpty());
+        assertEquals("A null product should never be in view", 0,
+                inventory.view().getQuantity(null));
+        assertEquals("A null product should never be in view", 0,
+                inventory.view().getQuantity(null, gold));
+        assertSame("The view should be created once", inventory.view(), inventory.view());
+    }
+
 
     @Test
     public void testExistsValidProduct() {
@@ -320,6 +334,58 @@ public class BasicInventoryTest {
         assertTrue("Product list should be empty after removing all products", products.isEmpty());
     }
 
+    @Test
+    public void testAddProductsFromManifest() {
+        inventory.addProducts(new StockManifest().add(egg, gold, 2).add(milk, regular, 1));
+
+        List<Product> products = inventory.getAllProducts();
+        assertEquals("All products in the manifest should be added", 3, products.size());
+        assertTrue("Eggs should exist in inventory", inventory.existsProduct(egg));
+        assertTrue("Milk should exist in inventory", inventory.existsProduct(milk));
+    }
+
+    @Test
+    public void testRemoveKeepsInsertionOrder() {
+        inventory.addProduct(egg, regular);
+        inventory.addProduct(milk, gold);
+        inventory.addProduct(egg, gold);
+        inventory.addProduct(milk, silver);
+        inventory.addProduct(egg, silver);
+
+        assertEquals("Oldest egg should be removed first", regular,
+                inventory.removeProduct(egg).getFirst().getQuality());
+        assertEquals("Oldest milk should be removed first", gold,
+                inventory.removeProduct(milk).getFirst().getQuality());
+        assertEquals("Remaining products should keep their insertion order",
+                List.of(new Egg(gold), new Milk(silver), new Egg(silver)),
+                inventory.getAllProducts());
+
+        // removing enough products compacts the inventory, which must not change the order
+        inventory.removeProduct(egg);
+        inventory.addProduct(bread, regular);
+        assertEquals("Order should survive compaction",
+                List.of(new Milk(silver), new Egg(silver), new Bread(regular)),
+                inventory.getAllProducts());
+        assertEquals("Next egg should still be found", silver,
+                inventory.removeProduct(egg).getFirst().getQuality());
+        assertFalse("No eggs should remain", inventory.existsProduct(egg));
+    }
+
+    @Test
+    public void testHighestQualityPolicy() {
+        inventory.setPickingPolicy(egg, PickingPolicy.HIGHEST_QUALITY);
+        inventory.addProduct(egg, regular);
+        inventory.addProduct(egg, gold);
+        inventory.addProduct(egg, silver);
+
+        assertEquals("Gold egg should go first", gold,
+                inventory.removeProduct(egg).getFirst().getQuality());
+        assertEquals("Silver egg should go next", silver,
+                inventory.removeProduct(egg).getFirst().getQuality());
+        assertEquals("Order of the rest should be kept",
+                List.of(new Egg(regular)), inventory.getAllProducts());
+    }
+
     private void populateInventory(BasicInventory inventory) {
         inventory.addProduct(bread, gold);
         inventory.addProduct(egg, silver);
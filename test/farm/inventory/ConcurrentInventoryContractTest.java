@@ -0,0 +1,30 @@
+package farm.inventory;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+public class ConcurrentInventoryContractTest extends InventoryContractTest<ConcurrentInventory> {
+
+    @Override
+    protected ConcurrentInventory createInventory() {
+        return new ConcurrentInventory();
+    }
+
+    @Override
+    protected int getStockedQuantity(Barcode barcode) {
+        return inventory.getStockedQuantity(barcode);
+    }
+
+    @Override
+    protected int getStockedQuantity(Barcode barcode, Quality quality) {
+        return inventory.getStockedQuantity(barcode, quality);
+    }
+
+    /**
+     * The view is weakly consistent, as documented by {@link ConcurrentInventory#view()}.
+     */
+    @Override
+    protected boolean hasFailFastView() {
+        return false;
+    }
+}
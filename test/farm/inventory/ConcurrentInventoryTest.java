@@ -0,0 +1,263 @@
+package farm.inventory;
+
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentInventoryTest {
+
+    private ConcurrentInventory inventory;
+    private ManualClock clock;
+
+    private final Barcode egg = Barcode.EGG;
+    private final Barcode milk = Barcode.MILK;
+
+    @Before
+    public void setUp() {
+        clock = new ManualClock();
+        inventory = new ConcurrentInventory(Duration.ofMinutes(5), clock);
+    }
+
+    @Test
+    public void testAddAndRemoveHighestQualityFirst() throws Exception {
+        inventory.addProduct(egg, Quality.REGULAR, 2);
+        inventory.addProduct(egg, Quality.IRIDIUM);
+        List<Product> removed = inventory.removeProduct(egg, 2);
+        assertEquals("Should remove 2 products", 2, removed.size());
+        assertEquals("First removed product should be iridium",
+                Quality.IRIDIUM, removed.get(0).getQuality());
+        assertEquals("Second removed product should be regular",
+                Quality.REGULAR, removed.get(1).getQuality());
+        assertEquals("Remaining stock should be 1", 1, inventory.getStockedQuantity(egg));
+    }
+
+    @Test
+    public void testRemoveMoreThanStocked() throws Exception {
+        inventory.addProduct(milk, Quality.GOLD, 3);
+        assertEquals("Should remove all available products", 3,
+                inventory.removeProduct(milk, 5).size());
+        assertFalse("Milk should no longer exist in inventory", inventory.existsProduct(milk));
+        assertTrue("Removing from empty stock should return an empty list",
+                inventory.removeProduct(milk).isEmpty());
+    }
+
+    @Test
+    public void testAddNegativeQuantity() {
+        assertThrows(IllegalArgumentException.class,
+                () -> inventory.addProduct(egg, Quality.GOLD, -1));
+    }
+
+    @Test
+    public void testConcurrentLanesNeverOversell() throws Exception {
+        int lanes = 8;
+        inventory.addProduct(egg, Quality.IRIDIUM, 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(lanes);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger sold = new AtomicInteger();
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < lanes; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                while (inventory.existsProduct(egg)) {
+                    sold.addAndGet(inventory.removeProduct(egg, 3).size());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertEquals("Every egg should be sold exactly once", 1000, sold.get());
+        assertEquals("No eggs should remain", 0, inventory.getStockedQuantity(egg));
+    }
+
+    @Test
+    public void testConcurrentStockingIsNotLost() throws InterruptedException {
+        Thread[] harvests = new Thread[4];
+        for (int i = 0; i < harvests.length; i++) {
+            harvests[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    inventory.addProduct(milk, Quality.SILVER);
+                }
+            });
+            harvests[i].start();
+        }
+        for (Thread harvest : harvests) {
+            harvest.join();
+        }
+        assertEquals("All stocked milk should be counted", 4000,
+                inventory.getStockedQuantity(milk, Quality.SILVER));
+        assertEquals("All milk should be listed", 4000, inventory.getAllProducts().size());
+    }
+
+    @Test
+    public void testReserveHoldsStockUntilReleased() throws Exception {
+        inventory.addProduct(egg, Quality.GOLD, 2);
+        Reservation reservation = inventory.reserve(egg, 3);
+        assertEquals("Should reserve all available products", 2, reservation.getQuantity());
+        assertFalse("Reserved stock should not be available", inventory.existsProduct(egg));
+
+        assertTrue("Held reservation should be released", inventory.release(reservation));
+        assertEquals("Released stock should be available again", 2,
+                inventory.getStockedQuantity(egg, Quality.GOLD));
+        assertFalse("Released reservation cannot be committed", inventory.commit(reservation));
+    }
+
+    @Test
+    public void testCommittedReservationIsNotReturned() {
+        inventory.addProduct(milk, Quality.SILVER);
+        Reservation reservation = inventory.reserve(milk, 1);
+        assertTrue("Held reservation should be committed", inventory.commit(reservation));
+        assertFalse("Committed reservation cannot be released", inventory.release(reservation));
+
+        clock.advance(Duration.ofHours(1));
+        assertEquals("Committed reservation should never expire", 0,
+                inventory.expireReservations());
+        assertFalse("Committed stock should not return", inventory.existsProduct(milk));
+    }
+
+    @Test
+    public void testReservationExpiresAfterTimeout() {
+        inventory.addProduct(egg, Quality.IRIDIUM);
+        Reservation reservation = inventory.reserve(egg, 1);
+
+        clock.advance(Duration.ofMinutes(4));
+        assertEquals("Reservation should not expire early", 0, inventory.expireReservations());
+
+        clock.advance(Duration.ofMinutes(2));
+        assertEquals("Reservation should expire after the timeout", 1,
+                inventory.expireReservations());
+        assertEquals("Expired reservation should be released",
+                Reservation.State.RELEASED, reservation.getState());
+        assertTrue("Expired stock should be available again", inventory.existsProduct(egg));
+    }
+
+    @Test
+    public void testReadsSweepExpiredReservations() throws Exception {
+        inventory.addProduct(milk, Quality.GOLD, 2);
+        inventory.reserve(milk, 2);
+        assertEquals(0, inventory.getStockedQuantity(milk));
+
+        clock.advance(Duration.ofMinutes(6));
+        assertEquals("Reading should return expired stock without any lane reserving", 2,
+                inventory.getStockedQuantity(milk, Quality.GOLD));
+    }
+
+    @Test
+    public void testExpiredReservationCannotBeCommitted() {
+        inventory.addProduct(egg, Quality.SILVER);
+        Reservation reservation = inventory.reserve(egg, 1);
+
+        clock.advance(Duration.ofMinutes(6));
+        assertFalse("Expired reservation should not be committed", inventory.commit(reservation));
+        assertEquals(Reservation.State.RELEASED, reservation.getState());
+        assertTrue("Expired stock should be available again", inventory.existsProduct(egg));
+    }
+
+    @Test
+    public void testEmptyReservationNeverExpires() {
+        Reservation reservation = inventory.reserve(egg, 2);
+        assertEquals("Nothing should be reserved while out of stock", 0,
+                reservation.getQuantity());
+
+        clock.advance(Duration.ofMinutes(6));
+        assertEquals("An empty reservation should never expire", 0,
+                inventory.expireReservations());
+        assertEquals(Reservation.State.HELD, reservation.getState());
+        assertTrue("An empty reservation can still be committed", inventory.commit(reservation));
+    }
+
+    @Test
+    public void testReserveNullProduct() {
+        inventory.addProduct(egg, Quality.GOLD);
+        Reservation reservation = inventory.reserve(null, 2);
+        assertEquals("Nothing should be reserved for a null product", 0,
+                reservation.getQuantity());
+        assertTrue(reservation.getProducts().isEmpty());
+        assertTrue("An empty reservation can still be released", inventory.release(reservation));
+        assertEquals("Other stock should be untouched", 1, inventory.getStockedQuantity(egg));
+    }
+
+    @Test
+    public void testReservationNeverExpiresBeforeDeadline() {
+        inventory.addProduct(egg, Quality.GOLD);
+        // halfway through a tick, so the deadline falls halfway through a later one
+        clock.advance(Duration.ofMillis(1500));
+        Reservation reservation = inventory.reserve(egg, 1);
+
+        clock.advance(Duration.ofMinutes(5).minusMillis(1));
+        assertEquals("Reservation should be held until its deadline", 0,
+                inventory.expireReservations());
+        assertEquals(Reservation.State.HELD, reservation.getState());
+
+        clock.advance(Duration.ofSeconds(1));
+        assertEquals("Reservation should expire within a tick of its deadline", 1,
+                inventory.expireReservations());
+        assertEquals(Reservation.State.RELEASED, reservation.getState());
+    }
+
+    @Test
+    public void testEachOperationReadsClockOnce() throws Exception {
+        inventory.addProduct(egg, Quality.GOLD, 3);
+        inventory.addProduct(milk, Quality.REGULAR);
+        clock.advance(Duration.ofMinutes(1));
+        InventoryView view = inventory.view();
+
+        clock.reads = 0;
+        assertEquals(4, inventory.getAllProducts().size());
+        assertEquals("Listing all stock should read the clock once", 1, clock.reads);
+
+        clock.reads = 0;
+        assertEquals(3, view.getQuantity(egg));
+        assertEquals(4, view.getTotalQuantity());
+        assertEquals(4, view.stream().count());
+        assertEquals("Each view query should read the clock once", 3, clock.reads);
+
+        clock.reads = 0;
+        assertTrue(inventory.existsProduct(milk));
+        assertEquals(3, inventory.getStockedQuantity(egg));
+        assertEquals(2, inventory.removeProduct(egg, 2).size());
+        assertEquals("Each operation should read the clock once", 3, clock.reads);
+    }
+
+    private static class ManualClock extends Clock {
+        private Instant now = Instant.EPOCH;
+        private int reads = 0;
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            reads++;
+            return now;
+        }
+    }
+}
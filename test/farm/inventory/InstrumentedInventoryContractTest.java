@@ -0,0 +1,22 @@
+package farm.inventory;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+public class InstrumentedInventoryContractTest extends InventoryContractTest<InstrumentedInventory> {
+
+    @Override
+    protected InstrumentedInventory createInventory() {
+        return new InstrumentedInventory(new FancyInventory());
+    }
+
+    @Override
+    protected int getStockedQuantity(Barcode barcode) {
+        return inventory.view().getQuantity(barcode);
+    }
+
+    @Override
+    protected int getStockedQuantity(Barcode barcode, Quality quality) {
+        return inventory.view().getQuantity(barcode, quality);
+    }
+}
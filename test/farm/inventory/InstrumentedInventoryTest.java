@@ -0,0 +1,98 @@
+package farm.inventory;
+
+import farm.core.FailedTransactionException;
+import farm.core.InvalidStockRequestException;
+import farm.inventory.metrics.HistogramSnapshot;
+import farm.inventory.metrics.InventoryMetrics;
+import farm.inventory.metrics.LatencyHistogram;
+import farm.inventory.metrics.MetricsSnapshot;
+import farm.inventory.metrics.Operation;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class InstrumentedInventoryTest {
+
+    private InstrumentedInventory inventory;
+    private long now;
+
+    private final Barcode egg = Barcode.EGG;
+    private final Barcode milk = Barcode.MILK;
+
+    @Before
+    public void setUp() {
+        now = 0;
+        // every call takes 100ns, measured between two readings
+        inventory = new InstrumentedInventory(new FancyInventory(), new InventoryMetrics(),
+                () -> now += 100);
+    }
+
+    @Test
+    public void testCallsAndUnitsRecorded() throws InvalidStockRequestException,
+            FailedTransactionException {
+        inventory.addProduct(egg, Quality.GOLD);
+        inventory.addProduct(egg, Quality.REGULAR, 4);
+        inventory.addProducts(new StockManifest().add(milk, Quality.SILVER, 3));
+        inventory.existsProduct(milk);
+        inventory.removeProduct(egg, 2);
+        inventory.removeProduct(milk);
+        inventory.getAllProducts();
+
+        MetricsSnapshot snapshot = inventory.snapshot();
+        for (Operation operation : Operation.values()) {
+            assertEquals(operation + " should be called once", 1, snapshot.getCalls(operation));
+            assertEquals(100, snapshot.getLatencies(operation).getMaxNanos());
+        }
+        assertEquals("Eggs added one at a time and in bulk", 5, snapshot.getUnitsAdded(egg));
+        assertEquals("Milk added by manifest", 3, snapshot.getUnitsAdded(milk));
+        assertEquals(2, snapshot.getUnitsRemoved(egg));
+        assertEquals(1, snapshot.getUnitsRemoved(milk));
+        assertEquals("Egg calls should be attributed to eggs", 1,
+                snapshot.getCalls(Operation.REMOVE_PRODUCT_QUANTITY, egg));
+        assertEquals(0, snapshot.getCalls(Operation.REMOVE_PRODUCT_QUANTITY, milk));
+        assertEquals("Time spent on eggs", 300, snapshot.getNanos(egg));
+        assertTrue("Report should list every operation",
+                snapshot.format().contains("REMOVE_PRODUCT_QUANTITY"));
+    }
+
+    @Test
+    public void testFailedCallsTimed() {
+        InstrumentedInventory basic = new InstrumentedInventory(new BasicInventory());
+        assertThrows(InvalidStockRequestException.class,
+                () -> basic.addProduct(egg, Quality.REGULAR, 2));
+        MetricsSnapshot snapshot = basic.snapshot();
+        assertEquals(1, snapshot.getCalls(Operation.ADD_PRODUCT_QUANTITY));
+        assertEquals("Failed additions should not count units", 0, snapshot.getUnitsAdded(egg));
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos);
+        }
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(100_000, snapshot.getCount());
+        assertEquals(100_000, snapshot.getMaxNanos());
+        assertEquals(50_000.5, snapshot.getMeanNanos(), 0.001);
+        assertEquals("Median within 3%", 50_000, snapshot.getValueAtPercentile(50), 1_500);
+        assertEquals("p99 within 3%", 99_000, snapshot.getValueAtPercentile(99), 3_000);
+        assertEquals("Small latencies are exact", 10, snapshot.getValueAtPercentile(0.01));
+        assertEquals(100_000, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testHistogramExtremes() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals("Empty histogram", 0, histogram.snapshot().getValueAtPercentile(99));
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE, snapshot.getValueAtPercentile(100));
+        assertThrows(IllegalArgumentException.class, () -> snapshot.getValueAtPercentile(101));
+    }
+}
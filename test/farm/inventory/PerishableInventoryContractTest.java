@@ -0,0 +1,22 @@
+package farm.inventory;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+public class PerishableInventoryContractTest extends InventoryContractTest<PerishableInventory> {
+
+    @Override
+    protected PerishableInventory createInventory() {
+        return new PerishableInventory();
+    }
+
+    @Override
+    protected int getStockedQuantity(Barcode barcode) {
+        return inventory.getStockedQuantity(barcode);
+    }
+
+    @Override
+    protected int getStockedQuantity(Barcode barcode, Quality quality) {
+        return inventory.getStockedQuantity(barcode, quality);
+    }
+}
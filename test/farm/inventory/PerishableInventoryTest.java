@@ -0,0 +1,147 @@
+package farm.inventory;
+
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PerishableInventoryTest {
+
+    private PerishableInventory inventory;
+    private ManualClock clock;
+
+    private final Barcode milk = Barcode.MILK;
+    private final Barcode egg = Barcode.EGG;
+    private final Barcode wool = Barcode.WOOL;
+
+    @Before
+    public void setUp() {
+        clock = new ManualClock();
+        inventory = new PerishableInventory(Map.of(milk, Duration.ofDays(7),
+                egg, Duration.ofDays(400)), clock);
+    }
+
+    @Test
+    public void testStockKeepsUntilShelfLifePasses() throws Exception {
+        inventory.addProduct(milk, Quality.GOLD, 3);
+        clock.advance(Duration.ofDays(6));
+        assertEquals("Milk should not expire early", 0, inventory.expireStock());
+        assertEquals("All milk should still be stocked", 3, inventory.getStockedQuantity(milk));
+
+        clock.advance(Duration.ofDays(1));
+        assertEquals("All milk should expire after its shelf life", 3, inventory.expireStock());
+        assertFalse("Expired milk should not exist", inventory.existsProduct(milk));
+        assertEquals("Expiry should be counted", 3,
+                inventory.getExpiredQuantity(milk, Quality.GOLD));
+    }
+
+    @Test
+    public void testRemoveNeverReturnsExpiredStock() throws Exception {
+        inventory.addProduct(milk, Quality.IRIDIUM, 2);
+        clock.advance(Duration.ofDays(5));
+        inventory.addProduct(milk, Quality.REGULAR, 2);
+        clock.advance(Duration.ofDays(3));
+
+        List<Product> removed = inventory.removeProduct(milk, 4);
+        assertEquals("Only the unexpired milk should be removed", 2, removed.size());
+        for (Product product : removed) {
+            assertEquals("Expired iridium milk should not be returned",
+                    Quality.REGULAR, product.getQuality());
+        }
+        assertEquals("Expired iridium milk should be counted", 2,
+                inventory.getExpiredQuantity(milk));
+        assertTrue("Single removal should return nothing", inventory.removeProduct(milk).isEmpty());
+    }
+
+    @Test
+    public void testOldestStockRemovedFirst() throws Exception {
+        inventory.addProduct(milk, Quality.SILVER, 2);
+        clock.advance(Duration.ofDays(3));
+        inventory.addProduct(milk, Quality.SILVER, 2);
+
+        assertEquals("Should remove the two oldest", 2, inventory.removeProduct(milk, 2).size());
+        clock.advance(Duration.ofDays(5));
+        assertEquals("Oldest batch was sold, so nothing should expire", 0,
+                inventory.expireStock());
+        assertEquals("Newest batch should still be stocked", 2,
+                inventory.getStockedQuantity(milk));
+    }
+
+    @Test
+    public void testHighestQualityFirst() throws Exception {
+        inventory.addProduct(milk, Quality.REGULAR);
+        inventory.addProduct(milk, Quality.GOLD);
+        assertEquals("Gold milk should be removed first", Quality.GOLD,
+                inventory.removeProduct(milk).getFirst().getQuality());
+    }
+
+    @Test
+    public void testNonPerishableNeverExpires() throws Exception {
+        inventory.addProduct(wool, Quality.REGULAR, 5);
+        clock.advance(Duration.ofDays(3650));
+        assertEquals("Wool should never expire", 0, inventory.expireStock());
+        assertEquals("Wool should still be stocked", 5, inventory.removeProduct(wool, 5).size());
+    }
+
+    @Test
+    public void testLongShelfLife() throws Exception {
+        inventory.addProduct(egg, Quality.REGULAR, 4);
+        clock.advance(Duration.ofDays(399));
+        assertTrue("Eggs should still be stocked", inventory.existsProduct(egg));
+        clock.advance(Duration.ofDays(1));
+        assertFalse("Eggs should expire after 400 days", inventory.existsProduct(egg));
+        assertEquals("Total expiry should be counted", 4, inventory.getTotalExpiredQuantity());
+    }
+
+    @Test
+    public void testManifestStockedAsOneBatch() {
+        inventory.addProducts(new StockManifest()
+                .add(milk, Quality.REGULAR, 3)
+                .add(milk, Quality.GOLD, 1)
+                .add(wool, Quality.SILVER, 2));
+        assertEquals("Manifest milk should be stocked", 4, inventory.getStockedQuantity(milk));
+        clock.advance(Duration.ofDays(7));
+        assertEquals("Only milk should expire", 4, inventory.expireStock());
+        assertEquals("Only wool should remain", 2, inventory.getAllProducts().size());
+    }
+
+    @Test
+    public void testNegativeQuantity() {
+        assertThrows(IllegalArgumentException.class,
+                () -> inventory.addProduct(milk, Quality.REGULAR, -1));
+    }
+
+    private static class ManualClock extends Clock {
+        private Instant now = Instant.EPOCH;
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package farm.inventory;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+public class PublishingInventoryContractTest extends InventoryContractTest<PublishingInventory> {
+
+    @Override
+    protected PublishingInventory createInventory() {
+        return new PublishingInventory(new FancyInventory());
+    }
+
+    @Override
+    protected int getStockedQuantity(Barcode barcode) {
+        return inventory.view().getQuantity(barcode);
+    }
+
+    @Override
+    protected int getStockedQuantity(Barcode barcode, Quality quality) {
+        return inventory.view().getQuantity(barcode, quality);
+    }
+}
@@ -0,0 +1,169 @@
+package farm.inventory;
+
+import farm.inventory.changes.StockAdded;
+import farm.inventory.changes.StockChange;
+import farm.inventory.changes.StockChangeSubscription;
+import farm.inventory.changes.StockRemoved;
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReplicaInventoryTest {
+
+    private PublishingInventory primary;
+
+    private final Barcode egg = Barcode.EGG;
+    private final Barcode milk = Barcode.MILK;
+
+    @Before
+    public void setUp() {
+        primary = new PublishingInventory(new FancyInventory(), 8);
+    }
+
+    @Test
+    public void testChangesArePublishedInOrder() throws Exception {
+        StockChangeSubscription subscription = primary.subscribe();
+        primary.addProduct(egg, Quality.GOLD, 3);
+        primary.addProduct(egg, Quality.REGULAR);
+        primary.removeProduct(egg, 2);
+
+        List<StockChange> changes = new ArrayList<>();
+        assertEquals("Every change should be drained", 3, subscription.drain(changes::add));
+        assertEquals(new StockAdded(egg, Quality.GOLD, 3, 0), changes.get(0));
+        assertEquals(new StockAdded(egg, Quality.REGULAR, 1, 1), changes.get(1));
+        assertEquals(new StockRemoved(egg, Quality.GOLD, 2, 2), changes.get(2));
+        assertNull("No further changes should be available", subscription.poll());
+    }
+
+    @Test
+    public void testReplicaFollowsPrimary() throws Exception {
+        primary.addProduct(milk, Quality.SILVER, 2);
+        ReplicaInventory replica = new ReplicaInventory(primary);
+        assertEquals("Replica should start from the primary's stock", 2,
+                replica.getStockedQuantity(milk));
+
+        primary.addProduct(milk, Quality.IRIDIUM, 1);
+        primary.removeProduct(milk);
+        primary.addProduct(egg, Quality.REGULAR);
+
+        assertEquals("Replica should apply the removal", 2,
+                replica.getStockedQuantity(milk, Quality.SILVER));
+        assertEquals("Replica should apply the later removal", 0,
+                replica.getStockedQuantity(milk, Quality.IRIDIUM));
+        assertTrue("Replica should see new products", replica.existsProduct(egg));
+        assertEquals("Replica should list the same stock", primary.getAllProducts(),
+                replica.getAllProducts());
+    }
+
+    @Test
+    public void testReplicaRecoversFromOverrun() {
+        ReplicaInventory replica = new ReplicaInventory(primary);
+        for (int i = 0; i < 20; i++) {
+            primary.addProduct(egg, Quality.REGULAR);
+        }
+        assertEquals("Overrun replica should copy the primary", -1, replica.catchUp());
+        assertEquals("Copied stock should match", 20, replica.getStockedQuantity(egg));
+
+        primary.addProduct(egg, Quality.GOLD);
+        assertEquals("Replica should follow the stream again", 1, replica.catchUp());
+        assertEquals(21, replica.view().getQuantity(egg));
+    }
+
+    @Test
+    public void testQueryNullProduct() {
+        primary.addProduct(egg, Quality.GOLD);
+        ReplicaInventory replica = new ReplicaInventory(primary);
+
+        assertFalse("A null product should never exist", replica.existsProduct(null));
+        assertEquals("A null product should never be stocked", 0,
+                replica.getStockedQuantity(null));
+        assertEquals("A null product should never be stocked", 0,
+                replica.getStockedQuantity(null, Quality.GOLD));
+        assertEquals("A null product should never be in view", 0,
+                replica.view().getQuantity(null));
+        assertEquals("A null product should never be in view", 0,
+                replica.view().getQuantity(null, Quality.GOLD));
+        assertEquals("The egg should still be stocked", 1, replica.getStockedQuantity(egg));
+    }
+
+    @Test
+    public void testReplicaIsReadOnly() {
+        ReplicaInventory replica = new ReplicaInventory(primary);
+        assertThrows(UnsupportedOperationException.class,
+                () -> replica.addProduct(egg, Quality.REGULAR));
+        assertThrows(UnsupportedOperationException.class, () -> replica.removeProduct(egg));
+    }
+
+    @Test
+    public void testIterateViewWhilePrimaryChanges() {
+        primary.addProduct(egg, Quality.REGULAR);
+        primary.addProduct(milk, Quality.GOLD);
+        ReplicaInventory replica = new ReplicaInventory(primary);
+
+        int seen = 0;
+        for (Product product : replica.view()) {
+            assertNotNull(product);
+            primary.addProduct(milk, Quality.SILVER); // must not break the iteration
+            seen++;
+        }
+        assertTrue("Every product stocked before iterating should be seen", seen >= 2);
+    }
+
+    @Test
+    public void testCopyAndSubscribeIsExact() throws Exception {
+        primary.addProduct(egg, Quality.GOLD, 2);
+        StockManifest copy = new StockManifest();
+        StockChangeSubscription subscription = primary.copyAndSubscribe(copy);
+        assertEquals("Copy should hold the stock so far", 2, copy.getQuantity(egg, Quality.GOLD));
+        primary.removeProduct(egg);
+        List<StockChange> changes = new ArrayList<>();
+        subscription.drain(changes::add);
+        assertEquals("Only the change after the copy should be handed out",
+                List.of(new StockRemoved(egg, Quality.GOLD, 1, 1)), changes);
+    }
+
+    @Test
+    public void testReplicasStartedDuringChangesAreExact() throws Exception {
+        PublishingInventory concurrent = new PublishingInventory(new ConcurrentInventory(), 1 << 16);
+        concurrent.addProduct(egg, Quality.REGULAR, 100);
+        int lanes = 4;
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < lanes; i++) {
+            workers.add(new Thread(() -> {
+                for (int j = 0; j < 2000; j++) {
+                    concurrent.addProduct(egg, Quality.values()[j % 4]);
+                    concurrent.removeProduct(egg);
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        List<ReplicaInventory> replicas = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ReplicaInventory replica = new ReplicaInventory(concurrent);
+            for (Quality quality : Quality.values()) {
+                assertTrue("Counts should never go negative",
+                        replica.getStockedQuantity(egg, quality) >= 0);
+            }
+            replicas.add(replica);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        for (ReplicaInventory replica : replicas) {
+            for (Quality quality : Quality.values()) {
+                assertEquals("Replica should match the primary exactly",
+                        concurrent.view().getQuantity(egg, quality),
+                        replica.getStockedQuantity(egg, quality));
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package farm.inventory;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+import java.util.List;
+
+public class ShardedInventoryContractTest extends InventoryContractTest<ShardedInventory> {
+
+    @Override
+    protected ShardedInventory createInventory() {
+        return new ShardedInventory(List.of(new FancyInventory(), new FancyInventory()),
+                ShardRouter.roundRobin());
+    }
+
+    @Override
+    protected int getStockedQuantity(Barcode barcode) {
+        return inventory.getStockedQuantity(barcode);
+    }
+
+    @Override
+    protected int getStockedQuantity(Barcode barcode, Quality quality) {
+        return inventory.getStockedQuantity(barcode, quality);
+    }
+}
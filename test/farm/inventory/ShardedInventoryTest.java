@@ -0,0 +1,189 @@
+package farm.inventory;
+
+import farm.core.FailedTransactionException;
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ShardedInventoryTest {
+
+    private FancyInventory north;
+    private FancyInventory south;
+    private ShardedInventory inventory;
+
+    private final Barcode egg = Barcode.EGG;
+    private final Barcode milk = Barcode.MILK;
+    private final Barcode jam = Barcode.JAM;
+
+    @Before
+    public void setUp() {
+        north = new FancyInventory();
+        south = new FancyInventory();
+        inventory = new ShardedInventory(List.of(north, south), ShardRouter.roundRobin());
+    }
+
+    @Test
+    public void testRoundRobinSpreadsStock() {
+        inventory.addProduct(egg, Quality.REGULAR);
+        inventory.addProduct(egg, Quality.REGULAR);
+        assertEquals("First egg should go to the first shard", 1, north.getStockedQuantity(egg));
+        assertEquals("Second egg should go to the second shard", 1, south.getStockedQuantity(egg));
+        assertEquals("View should combine the shards", 2, inventory.view().getQuantity(egg));
+    }
+
+    @Test
+    public void testRouteByBarcode() throws Exception {
+        inventory = new ShardedInventory(List.of(north, south), ShardRouter.byBarcode());
+        inventory.addProduct(egg, Quality.GOLD, 3);
+        inventory.addProduct(milk, Quality.GOLD, 2);
+        assertEquals("Eggs should all be in one shard", 3, north.getStockedQuantity(egg));
+        assertEquals("Milk should all be in the other shard", 2, south.getStockedQuantity(milk));
+    }
+
+    @Test
+    public void testRouteByWarehouse() {
+        inventory = new ShardedInventory(List.of(north, south),
+                ShardRouter.byWarehouse(Map.of(jam, 1)));
+        inventory.addProducts(new StockManifest()
+                .add(jam, Quality.SILVER, 4)
+                .add(egg, Quality.REGULAR, 2));
+        assertEquals("Jam should be stocked in its warehouse", 4, south.getStockedQuantity(jam));
+        assertEquals("Other products should go to the first warehouse", 2,
+                north.getStockedQuantity(egg));
+    }
+
+    @Test
+    public void testRemoveHighestQualityAcrossShards() throws Exception {
+        north.addProduct(egg, Quality.REGULAR, 2);
+        north.addProduct(egg, Quality.GOLD, 1);
+        south.addProduct(egg, Quality.IRIDIUM, 1);
+        south.addProduct(egg, Quality.SILVER, 2);
+
+        List<Product> removed = inventory.removeProduct(egg, 4);
+        assertEquals("Should fill the order from both shards", 4, removed.size());
+        assertEquals(Quality.IRIDIUM, removed.get(0).getQuality());
+        assertEquals(Quality.GOLD, removed.get(1).getQuality());
+        assertEquals(Quality.SILVER, removed.get(2).getQuality());
+        assertEquals(Quality.SILVER, removed.get(3).getQuality());
+        assertEquals("Regular eggs should remain", 2, inventory.view().getQuantity(egg));
+
+        assertEquals("Single removal should also take the best quality", Quality.REGULAR,
+                inventory.removeProduct(egg).getFirst().getQuality());
+    }
+
+    @Test
+    public void testRemoveMoreThanAvailable() throws Exception {
+        north.addProduct(milk, Quality.REGULAR, 1);
+        south.addProduct(milk, Quality.GOLD, 1);
+        assertEquals("Should return all milk available", 2,
+                inventory.removeProduct(milk, 5).size());
+        assertFalse("No milk should remain", inventory.existsProduct(milk));
+    }
+
+    @Test
+    public void testGetAllProductsMergesShards() throws Exception {
+        north.addProduct(milk, Quality.REGULAR, 1);
+        north.addProduct(egg, Quality.REGULAR, 1);
+        south.addProduct(egg, Quality.GOLD, 1);
+
+        List<Product> products = inventory.getAllProducts();
+        assertEquals("Should contain every shard's stock", 3, products.size());
+        assertEquals("Eggs should come first, best first", Quality.GOLD,
+                products.get(0).getQuality());
+        assertEquals(egg, products.get(1).getBarcode());
+        assertEquals(milk, products.get(2).getBarcode());
+        assertTrue("Eggs should exist in some shard", inventory.existsProduct(egg));
+        assertFalse("Jam should not exist in any shard", inventory.existsProduct(jam));
+    }
+
+    @Test
+    public void testNoShards() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ShardedInventory(List.of(), ShardRouter.roundRobin()));
+    }
+
+    @Test
+    public void testShardsMustPickHighestQualityFirst() {
+        assertThrows("Basic inventories hand out the oldest product first",
+                IllegalArgumentException.class,
+                () -> new ShardedInventory(List.of(north, new BasicInventory()),
+                        ShardRouter.roundRobin()));
+        FancyInventory clearance = new FancyInventory();
+        clearance.setPickingPolicy(jam, PickingPolicy.LOWEST_QUALITY);
+        assertThrows(IllegalArgumentException.class,
+                () -> new ShardedInventory(List.of(north, clearance), ShardRouter.roundRobin()));
+    }
+
+    @Test
+    public void testMixedShardsRemoveHighestQualityFirst() throws Exception {
+        BasicInventory basic = new BasicInventory(PickingPolicy.HIGHEST_QUALITY);
+        CountingInventory counting = new CountingInventory();
+        inventory = new ShardedInventory(List.of(basic, north, counting),
+                ShardRouter.roundRobin());
+        basic.addProduct(egg, Quality.REGULAR);
+        basic.addProduct(egg, Quality.GOLD);
+        north.addProduct(egg, Quality.SILVER, 2);
+        counting.addProduct(egg, Quality.IRIDIUM);
+        counting.addProduct(egg, Quality.REGULAR);
+
+        List<Quality> order = new ArrayList<>();
+        while (inventory.existsProduct(egg)) {
+            order.add(inventory.removeProduct(egg).getFirst().getQuality());
+        }
+        assertEquals("Highest quality across every shard first",
+                List.of(Quality.IRIDIUM, Quality.GOLD, Quality.SILVER, Quality.SILVER,
+                        Quality.REGULAR, Quality.REGULAR), order);
+    }
+
+    @Test
+    public void testChangedPolicyRejectedWithoutRemoving() throws Exception {
+        north.addProduct(milk, Quality.REGULAR, 2);
+        north.addProduct(milk, Quality.GOLD);
+        north.setPickingPolicy(milk, PickingPolicy.FIFO);
+
+        assertThrows(IllegalStateException.class, () -> inventory.removeProduct(milk));
+        assertThrows(IllegalStateException.class, () -> inventory.removeProduct(milk, 2));
+        assertEquals("Nothing should have been removed", 3, north.getStockedQuantity(milk));
+    }
+
+    @Test
+    public void testFailedShardPutsBackEarlierShards() {
+        BasicInventory basic = new BasicInventory(PickingPolicy.HIGHEST_QUALITY);
+        inventory = new ShardedInventory(List.of(north, basic), ShardRouter.roundRobin());
+        north.addProduct(egg, Quality.GOLD);
+        north.addProduct(egg, Quality.GOLD);
+        basic.addProduct(egg, Quality.REGULAR);
+
+        assertThrows("Basic shards cannot remove quantities", FailedTransactionException.class,
+                () -> inventory.removeProduct(egg, 3));
+        assertEquals("Gold eggs from the first shard put back", 2,
+                north.getStockedQuantity(egg, Quality.GOLD));
+        assertEquals("No stock should be lost", 3, inventory.getAllProducts().size());
+    }
+
+    @Test
+    public void testWrongQualityPutBack() throws Exception {
+        // a decorator hides the wrapped inventory's lowest quality first policy
+        FancyInventory clearance = new FancyInventory(PickingPolicy.LOWEST_QUALITY);
+        inventory = new ShardedInventory(List.of(north, new InstrumentedInventory(clearance)),
+                ShardRouter.roundRobin());
+        north.addProduct(jam, Quality.GOLD);
+        clearance.addProduct(jam, Quality.SILVER);
+        clearance.addProduct(jam, Quality.REGULAR);
+
+        assertThrows(IllegalStateException.class, () -> inventory.removeProduct(jam, 3));
+        assertEquals("Gold jam from the first shard put back", 1,
+                north.getStockedQuantity(jam, Quality.GOLD));
+        assertEquals("Regular jam handed out by mistake put back", 1,
+                clearance.getStockedQuantity(jam, Quality.REGULAR));
+        assertEquals(1, clearance.getStockedQuantity(jam, Quality.SILVER));
+    }
+}
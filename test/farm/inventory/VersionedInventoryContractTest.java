@@ -0,0 +1,31 @@
+package farm.inventory;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+public class VersionedInventoryContractTest extends InventoryContractTest<VersionedInventory> {
+
+    @Override
+    protected VersionedInventory createInventory() {
+        return new VersionedInventory();
+    }
+
+    @Override
+    protected int getStockedQuantity(Barcode barcode) {
+        return inventory.view().getQuantity(barcode);
+    }
+
+    @Override
+    protected int getStockedQuantity(Barcode barcode, Quality quality) {
+        return inventory.view().getQuantity(barcode, quality);
+    }
+
+    /**
+     * Iteration walks a fixed version and never fails, as documented by
+     * {@link VersionedInventory#view()}.
+     */
+    @Override
+    protected boolean hasFailFastView() {
+        return false;
+    }
+}
@@ -0,0 +1,106 @@
+package farm.inventory;
+
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class VersionedInventoryTest {
+
+    private VersionedInventory inventory;
+
+    private final Barcode egg = Barcode.EGG;
+    private final Barcode milk = Barcode.MILK;
+
+    @Before
+    public void setUp() {
+        inventory = new VersionedInventory();
+    }
+
+    @Test
+    public void testSnapshotUnaffectedByLaterChanges() throws Exception {
+        inventory.addProduct(egg, Quality.GOLD, 2);
+        StockSnapshot before = inventory.snapshot();
+
+        inventory.removeProduct(egg);
+        inventory.addProduct(milk, Quality.REGULAR, 3);
+
+        assertEquals("Snapshot should keep its eggs", 2, before.getQuantity(egg));
+        assertEquals("Snapshot should not see new milk", 0, before.getQuantity(milk));
+        assertEquals("Snapshot should list its own stock", 2, before.getAllProducts().size());
+        assertEquals("Inventory should see every change", 4,
+                inventory.snapshot().getTotalQuantity());
+        assertTrue("Versions should increase",
+                inventory.snapshot().getVersion() > before.getVersion());
+    }
+
+    @Test
+    public void testIterationDuringChanges() {
+        inventory.addProduct(egg, Quality.REGULAR);
+        inventory.addProduct(milk, Quality.REGULAR);
+        Iterator<Product> iterator = inventory.view().iterator();
+        inventory.addProduct(milk, Quality.GOLD);
+
+        List<Product> seen = new ArrayList<>();
+        iterator.forEachRemaining(seen::add);
+        assertEquals("Iteration should walk the version it began with", 2, seen.size());
+    }
+
+    @Test
+    public void testRemoveHighestQualityFirst() throws Exception {
+        inventory.addProduct(egg, Quality.REGULAR, 2);
+        inventory.addProduct(egg, Quality.IRIDIUM);
+        List<Product> removed = inventory.removeProduct(egg, 2);
+        assertEquals(Quality.IRIDIUM, removed.get(0).getQuality());
+        assertEquals(Quality.REGULAR, removed.get(1).getQuality());
+        assertEquals("One egg should remain", 1, inventory.view().getQuantity(egg));
+        assertEquals("Over-removal should return what remains", 1,
+                inventory.removeProduct(egg, 5).size());
+        assertFalse(inventory.existsProduct(egg));
+    }
+
+    @Test
+    public void testNegativeQuantity() {
+        assertThrows(IllegalArgumentException.class,
+                () -> inventory.addProduct(egg, Quality.REGULAR, -1));
+    }
+
+    @Test
+    public void testSnapshotsConsistentWhileStocking() throws Exception {
+        int lanes = 4;
+        int deliveries = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(lanes);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int lane = 0; lane < lanes; lane++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < deliveries; i++) {
+                    inventory.addProducts(new StockManifest()
+                            .add(egg, Quality.REGULAR, 1)
+                            .add(milk, Quality.REGULAR, 1));
+                }
+            }));
+        }
+        // every manifest adds one egg and one milk, so no snapshot should ever differ
+        boolean done = false;
+        while (!done) {
+            done = futures.stream().allMatch(Future::isDone);
+            StockSnapshot snapshot = inventory.snapshot();
+            assertEquals("Snapshot should never contain part of a manifest",
+                    snapshot.getQuantity(egg), snapshot.getQuantity(milk));
+        }
+        executor.shutdown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        assertEquals("No deliveries should be lost", lanes * deliveries,
+                inventory.view().getQuantity(egg));
+    }
+}
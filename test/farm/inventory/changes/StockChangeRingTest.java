@@ -0,0 +1,114 @@
+package farm.inventory.changes;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StockChangeRingTest {
+
+    @Test
+    public void testChangesHandedOutInOrder() {
+        StockChangeRing ring = new StockChangeRing(4);
+        StockChangeSubscription subscription = ring.subscribe();
+        for (int i = 0; i < 3; i++) {
+            ring.publish(sequence -> added(sequence));
+        }
+
+        List<Long> sequences = new ArrayList<>();
+        assertEquals(3, subscription.drain(change -> sequences.add(change.sequence())));
+        assertEquals(List.of(0L, 1L, 2L), sequences);
+        assertNull("Nothing further has been published", subscription.poll());
+        assertFalse(subscription.isOverrun());
+    }
+
+    @Test
+    public void testLappedSubscriberIsOverrun() {
+        StockChangeRing ring = new StockChangeRing(2);
+        StockChangeSubscription subscription = ring.subscribe();
+        for (int i = 0; i < 3; i++) {
+            ring.publish(sequence -> added(sequence));
+        }
+
+        assertNull(subscription.poll());
+        assertTrue("The first change was overwritten", subscription.isOverrun());
+        subscription.resubscribe();
+        assertFalse(subscription.isOverrun());
+        ring.publish(sequence -> added(sequence));
+        assertEquals(3, subscription.poll().sequence());
+    }
+
+    @Test
+    public void testSlowPublisherWaitedFor() throws Exception {
+        StockChangeRing ring = new StockChangeRing(2);
+        StockChangeSubscription subscription = ring.subscribe();
+        Stall stall = new Stall(ring);
+        ring.publish(sequence -> added(sequence));
+
+        assertNull("A later change should not jump the queue", subscription.poll());
+        assertFalse(subscription.isOverrun());
+
+        stall.finish();
+        assertEquals(0, subscription.poll().sequence());
+        assertEquals(1, subscription.poll().sequence());
+    }
+
+    @Test
+    public void testStalePublisherCannotOverwriteLaterLap() throws Exception {
+        StockChangeRing ring = new StockChangeRing(2);
+        StockChangeSubscription subscription = ring.subscribe();
+        Stall stall = new Stall(ring);
+        ring.publish(sequence -> added(sequence));
+        ring.publish(sequence -> added(sequence));
+
+        stall.finish();
+        assertEquals("The later lap should keep its slot", 2, ring.get(0).sequence());
+        assertNull(subscription.poll());
+        assertTrue("Sequence 0 was missed, so the subscriber must be told",
+                subscription.isOverrun());
+        assertEquals("Nothing should be handed out once overrun", 0,
+                subscription.drain(change -> fail("Handed out " + change)));
+    }
+
+    /** Private Helper Methods **/
+
+    private static StockChange added(long sequence) {
+        return new StockAdded(Barcode.EGG, Quality.REGULAR, 1, sequence);
+    }
+
+    /**
+     * A publisher which claims the next sequence number and then stalls before writing its
+     * change, until it is told to finish.
+     */
+    private static class Stall {
+        private final CountDownLatch claimed = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final Thread publisher;
+
+        Stall(StockChangeRing ring) throws InterruptedException {
+            publisher = new Thread(() -> ring.publish(sequence -> {
+                claimed.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return added(sequence);
+            }));
+            publisher.start();
+            assertTrue(claimed.await(5, TimeUnit.SECONDS));
+        }
+
+        void finish() throws InterruptedException {
+            release.countDown();
+            publisher.join(5000);
+            assertFalse("The publisher should have finished", publisher.isAlive());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package farm.inventory.product;
+
+import farm.core.farmgrid.Entity;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ProductCatalogTest {
+
+    @Test
+    public void testOneInstancePerBarcodeAndQuality() {
+        for (Barcode barcode : Barcode.values()) {
+            for (Quality quality : Quality.values()) {
+                Product product = ProductCatalog.getProduct(barcode, quality);
+                assertEquals(barcode, product.getBarcode());
+                assertEquals(quality, product.getQuality());
+                assertSame("Every lookup should share one instance", product,
+                        ProductCatalog.getProduct(barcode, quality));
+            }
+        }
+        assertNotSame(ProductCatalog.getProduct(Barcode.EGG, Quality.GOLD),
+                ProductCatalog.getProduct(Barcode.EGG, Quality.SILVER));
+        assertEquals("Shared products should match freshly built ones", new Milk(Quality.IRIDIUM),
+                ProductCatalog.getProduct(Barcode.MILK, Quality.IRIDIUM));
+    }
+
+    @Test
+    public void testEntitiesProduceCatalogProducts() {
+        for (Entity entity : Entity.values()) {
+            for (Quality quality : Quality.values()) {
+                assertSame("Harvests should come from the catalog",
+                        ProductCatalog.getProduct(entity.getBarcode(), quality),
+                        entity.getProduct(quality));
+            }
+        }
+    }
+
+    @Test
+    public void testNullLookup() {
+        assertThrows(NullPointerException.class,
+                () -> ProductCatalog.getProduct(null, Quality.REGULAR));
+        assertThrows(NullPointerException.class,
+                () -> ProductCatalog.getProduct(Barcode.EGG, null));
+    }
+}
@@ -0,0 +1,254 @@
+package farm.sales;
+
+import farm.customer.Customer;
+import farm.inventory.product.Egg;
+import farm.inventory.product.Jam;
+import farm.inventory.product.Milk;
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.promotion.BundleDiscount;
+import farm.sales.promotion.PercentageDiscount;
+import farm.sales.promotion.PromotionEngine;
+import farm.sales.transaction.CategorisedTransaction;
+import farm.sales.transaction.HistoryReport;
+import farm.sales.transaction.SpecialSaleTransaction;
+import farm.sales.transaction.Transaction;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class TransactionHistoryTest {
+
+    private TransactionHistory history;
+    private Customer customer;
+
+    @Before
+    public void setUp() {
+        history = new TransactionHistory();
+        customer = new Customer("Jack", 1234567, "1st Street");
+    }
+
+    @Test
+    public void testStatisticsAcrossTransactionTypes() {
+        checkout(new Transaction(customer), new Egg(), new Milk());
+        Transaction categorised = checkout(new CategorisedTransaction(customer),
+                new Egg(), new Egg(), new Jam());
+        Transaction special = checkout(new SpecialSaleTransaction(customer,
+                Map.of(Barcode.MILK, 50)), new Milk(), new Milk(), new Egg());
+
+        assertEquals(3, history.getTotalTransactionsMade());
+        assertEquals(8, history.getTotalProductsSold());
+        assertEquals(4, history.getTotalProductsSold(Barcode.EGG));
+        assertEquals(490 + 770 + 490, history.getGrossEarnings());
+        assertEquals("Milk earnings include the discount", 440 + 440,
+                history.getGrossEarnings(Barcode.MILK));
+        assertEquals(Barcode.EGG, history.getMostPopularProduct());
+        assertEquals(categorised.toString(), history.getHighestGrossingTransaction().toString());
+        assertEquals(special.toString(), history.getLastTransaction().toString());
+        assertEquals(special.getReceipt(), history.getLastTransaction().getReceipt());
+        assertEquals(1750 / 3.0, history.getAverageSpendPerVisit(), 0.0001);
+        assertEquals("Two of three milk were half price", 440.0 / 3,
+                history.getAverageProductDiscount(Barcode.MILK), 0.0001);
+        assertEquals(0.0, history.getAverageProductDiscount(Barcode.WOOL), 0.0001);
+    }
+
+    @Test
+    public void testBundleDiscountCounted() {
+        PromotionEngine promotions = PromotionEngine.compile(List.of(
+                new BundleDiscount(Barcode.JAM, 2, 1)));
+        checkout(new SpecialSaleTransaction(customer, promotions), new Jam(), new Jam(), new Jam());
+        checkout(new Transaction(customer), new Jam());
+
+        assertEquals(3 * 670, history.getGrossEarnings(Barcode.JAM));
+        assertEquals("One of four jam was given away", 670.0 / 4,
+                history.getAverageProductDiscount(Barcode.JAM), 0.0001);
+        assertEquals("The report should agree", 670.0 / 4,
+                history.getReport().getAverageProductDiscount(Barcode.JAM), 0.0001);
+    }
+
+    @Test
+    public void testNullBarcodeHasNoSales() {
+        checkout(new Transaction(customer), new Egg(), new Milk());
+
+        assertEquals(0, history.getGrossEarnings(null));
+        assertEquals(0, history.getTotalProductsSold(null));
+        assertEquals(0.0, history.getAverageProductDiscount(null), 0.0001);
+    }
+
+    @Test
+    public void testPartCentDiscountsNotRounded() {
+        checkout(new SpecialSaleTransaction(customer, Map.of(Barcode.EGG, 15)), new Egg());
+        checkout(new SpecialSaleTransaction(customer, Map.of(Barcode.MILK, 33)),
+                new Milk(), new Milk(), new Milk());
+
+        assertEquals("15% of 50c is 7.5c", 7.5,
+                history.getAverageProductDiscount(Barcode.EGG), 0.0001);
+        assertEquals("33% of 440c is 145.2c", 145.2,
+                history.getAverageProductDiscount(Barcode.MILK), 0.0001);
+        HistoryReport report = history.getReport();
+        assertEquals(7.5, report.getAverageProductDiscount(Barcode.EGG), 0.0001);
+        assertEquals(145.2, report.getAverageProductDiscount(Barcode.MILK), 0.0001);
+    }
+
+    @Test
+    public void testRunningTotalsMatchRecomputation() {
+        List<Transaction> recorded = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            recorded.add(switch (i % 5) {
+                case 0 -> checkout(new Transaction(customer), new Egg(), new Jam());
+                case 1 -> checkout(new CategorisedTransaction(customer),
+                        new Milk(), new Milk(Quality.SILVER), new Egg());
+                case 2 -> checkout(new SpecialSaleTransaction(customer,
+                        Map.of(Barcode.EGG, 15, Barcode.MILK, 33)), new Egg(), new Milk());
+                case 3 -> checkout(new SpecialSaleTransaction(customer, Map.of(Barcode.JAM, 7)),
+                        new Jam(), new Jam(), new Egg(Quality.GOLD));
+                default -> checkout(new SpecialSaleTransaction(customer), new Milk());
+            });
+        }
+
+        // worked out from scratch, as the history did before it kept running totals
+        int gross = 0;
+        int products = 0;
+        Transaction highest = null;
+        for (Transaction transaction : recorded) {
+            gross += transaction.getTotal();
+            products += transaction.getPurchases().size();
+            if (highest == null || transaction.getTotal() > highest.getTotal()) {
+                highest = transaction;
+            }
+        }
+        assertEquals(gross, history.getGrossEarnings());
+        assertEquals(products, history.getTotalProductsSold());
+        assertEquals((double) gross / recorded.size(), history.getAverageSpendPerVisit(), 0.0001);
+        assertEquals(highest.toString(), history.getHighestGrossingTransaction().toString());
+        for (Barcode type : Barcode.values()) {
+            int quantity = 0;
+            int earnings = 0;
+            double discount = 0;
+            for (Transaction transaction : recorded) {
+                for (Product product : transaction.getPurchases()) {
+                    if (product.getBarcode() == type) {
+                        quantity++;
+                        earnings += transaction instanceof CategorisedTransaction ? 0
+                                : product.getBasePrice();
+                    }
+                }
+                if (transaction instanceof CategorisedTransaction catSale) {
+                    earnings += catSale.getPurchaseSubtotal(type);
+                }
+                if (transaction instanceof SpecialSaleTransaction specSale) {
+                    discount += specSale.getPurchaseQuantity(type)
+                            * specSale.getDiscountAmount(type) * type.getBasePrice() / 100.0;
+                }
+            }
+            assertEquals(quantity, history.getTotalProductsSold(type));
+            assertEquals(earnings, history.getGrossEarnings(type));
+            assertEquals(quantity == 0 ? 0 : discount / quantity,
+                    history.getAverageProductDiscount(type), 0.0001);
+        }
+    }
+
+    @Test
+    public void testHighestGrossingKeepsFirstOfTies() {
+        checkout(new Transaction(customer), new Milk());
+        checkout(new CategorisedTransaction(customer), new Milk());
+        assertEquals("The first of the tied transactions should be kept", Transaction.class,
+                history.getHighestGrossingTransaction().getClass());
+    }
+
+    @Test
+    public void testEmptyHistory() {
+        assertEquals(0, history.getGrossEarnings());
+        assertEquals(0.0, history.getAverageSpendPerVisit(), 0.0001);
+        assertEquals(Barcode.EGG, history.getMostPopularProduct());
+        assertThrows(NoSuchElementException.class, history::getLastTransaction);
+    }
+
+    @Test
+    public void testReportMatchesRunningTotals() {
+        PromotionEngine promotions = PromotionEngine.compile(List.of(
+                new PercentageDiscount(Barcode.EGG, 33), new BundleDiscount(Barcode.JAM, 2, 1)));
+        // enough transactions to be split between several tasks
+        for (int i = 0; i < 40_000; i++) {
+            switch (i % 4) {
+                case 0 -> checkout(new Transaction(customer), new Egg(), new Milk());
+                case 1 -> checkout(new CategorisedTransaction(customer), new Jam(), new Jam());
+                case 2 -> checkout(new SpecialSaleTransaction(customer, Map.of(Barcode.MILK, 25)),
+                        new Milk(Quality.GOLD), new Milk(), new Egg());
+                default -> checkout(new SpecialSaleTransaction(customer, promotions),
+                        new Egg(), new Egg(), new Jam(), new Jam(), new Jam());
+            }
+        }
+        checkout(new Transaction(customer), new Jam(), new Jam(), new Jam(), new Jam());
+
+        HistoryReport report = history.getReport(new ForkJoinPool(4));
+        assertEquals(history.getTotalTransactionsMade(), report.getTransactionCount());
+        assertEquals(history.getGrossEarnings(), report.getGrossEarnings());
+        assertEquals(history.getTotalProductsSold(), report.getTotalProductsSold());
+        assertEquals(history.getMostPopularProduct(), report.getMostPopularProduct());
+        assertEquals(history.getAverageSpendPerVisit(), report.getAverageSpendPerVisit(), 0.0001);
+        assertEquals(40_000, report.getHighestGrossingIndex());
+        for (Barcode type : Barcode.values()) {
+            assertEquals(history.getGrossEarnings(type), report.getGrossEarnings(type));
+            assertEquals(history.getTotalProductsSold(type), report.getTotalProductsSold(type));
+            assertEquals(history.getAverageProductDiscount(type),
+                    report.getAverageProductDiscount(type), 0.0001);
+        }
+        assertEquals(10_000, report.getTotalProductsSold(Barcode.MILK, Quality.GOLD));
+        assertEquals((50_000 + 4) * 670, report.getFullPriceEarnings(Barcode.JAM));
+    }
+
+    @Test
+    public void testEmptyReport() {
+        HistoryReport report = history.getReport();
+        assertEquals(0, report.getTransactionCount());
+        assertEquals(-1, report.getHighestGrossingIndex());
+        assertEquals(Barcode.EGG, report.getMostPopularProduct());
+        assertEquals(0.0, report.getAverageProductDiscount(Barcode.MILK), 0.0001);
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        List<Thread> lanes = new ArrayList<>();
+        for (int lane = 0; lane < 8; lane++) {
+            Customer shopper = new Customer("Lane " + lane, lane, "1st Street");
+            lanes.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    shopper.getCart().addProduct(new Egg());
+                    Transaction transaction = new Transaction(shopper);
+                    transaction.finalise();
+                    history.recordTransaction(transaction);
+                    if (i % 100 == 0) {
+                        history.getGrossEarnings();
+                    }
+                }
+            }));
+        }
+        for (Thread lane : lanes) {
+            lane.start();
+        }
+        for (Thread lane : lanes) {
+            lane.join();
+        }
+        assertEquals(8000, history.getTotalTransactionsMade());
+        assertEquals(8000 * 50, history.getGrossEarnings());
+        assertEquals(8000, history.getReport().getTotalProductsSold(Barcode.EGG));
+    }
+
+    private Transaction checkout(Transaction transaction, Product... products) {
+        for (Product product : List.of(products)) {
+            customer.getCart().addProduct(product);
+        }
+        transaction.finalise();
+        history.recordTransaction(transaction);
+        return transaction;
+    }
+}
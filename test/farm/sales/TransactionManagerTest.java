@@ -0,0 +1,64 @@
+package farm.sales;
+
+import farm.core.FailedTransactionException;
+import farm.customer.Customer;
+import farm.inventory.product.Egg;
+import farm.inventory.product.Milk;
+import farm.inventory.product.Product;
+import farm.sales.transaction.Transaction;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TransactionManagerTest {
+
+    private TransactionManager manager;
+    private Customer jack;
+    private Customer jill;
+
+    @Before
+    public void setUp() {
+        manager = new TransactionManager();
+        jack = new Customer("Jack", 1234567, "1st Street");
+        jill = new Customer("Jill", 7654321, "2nd Street");
+    }
+
+    @Test
+    public void testLanesAreIndependent() throws FailedTransactionException {
+        manager.setOngoingTransaction(1, new Transaction(jack));
+        manager.setOngoingTransaction(2, new Transaction(jill));
+        assertFalse(manager.hasOngoingTransaction());
+        assertEquals(Set.of(1, 2), manager.getBusyLanes());
+        assertThrows(FailedTransactionException.class,
+                () -> manager.setOngoingTransaction(1, new Transaction(jill)));
+
+        manager.registerPendingPurchase(1, new Egg());
+        manager.registerPendingPurchase(2, new Milk());
+        manager.registerPendingPurchase(2, new Milk());
+
+        Transaction closed = manager.closeCurrentTransaction(2);
+        assertTrue(closed.isFinalised());
+        assertEquals(2, closed.getPurchases().size());
+        assertEquals(Set.of(1), manager.getBusyLanes());
+        assertThrows(FailedTransactionException.class,
+                () -> manager.registerPendingPurchase(2, new Egg()));
+
+        List<Product> abandoned = manager.abandonCurrentTransaction(1);
+        assertEquals(1, abandoned.size());
+        assertTrue(jack.getCart().isEmpty());
+        assertTrue(manager.getBusyLanes().isEmpty());
+    }
+
+    @Test
+    public void testDefaultLane() throws FailedTransactionException {
+        manager.setOngoingTransaction(new Transaction(jack));
+        assertTrue(manager.hasOngoingTransaction(TransactionManager.DEFAULT_LANE));
+        manager.registerPendingPurchase(new Egg());
+        assertEquals(1, manager.closeCurrentTransaction().getPurchases().size());
+        assertThrows(FailedTransactionException.class, manager::closeCurrentTransaction);
+    }
+}
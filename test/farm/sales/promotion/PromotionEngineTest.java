@@ -0,0 +1,85 @@
+package farm.sales.promotion;
+
+import farm.inventory.product.Egg;
+import farm.inventory.product.Jam;
+import farm.inventory.product.Milk;
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PromotionEngineTest {
+
+    private final Barcode egg = Barcode.EGG;
+    private final Barcode milk = Barcode.MILK;
+    private final Barcode jam = Barcode.JAM;
+
+    @Test
+    public void testPercentageMatchesSubtotalRounding() {
+        PromotionEngine engine = PromotionEngine.compile(Map.of(egg, 33, jam, 0));
+        List<Product> cart = List.of(new Egg(), new Egg(), new Egg(), new Jam());
+        PromotionResult result = engine.evaluate(cart);
+
+        // 33% of 150c is 49.5c, rounded down once for the whole subtotal
+        assertEquals(49, result.getDiscount(egg));
+        assertEquals(101, result.getSubtotal(egg));
+        assertEquals(3, result.getQuantity(egg));
+        assertEquals("Zero discounts leave the price unchanged", 670, result.getSubtotal(jam));
+        assertEquals(771, result.getTotal());
+        assertEquals(49, result.getTotalDiscount());
+        assertNull("Zero discounts are not shown on receipts", engine.describe(jam));
+        assertEquals("Discount applied! 33% off egg", engine.describe(egg));
+    }
+
+    @Test
+    public void testBundleDiscount() {
+        PromotionEngine engine = PromotionEngine.compile(List.of(new BundleDiscount(milk, 2, 1)));
+        assertEquals("Two milk are paid for", 0,
+                engine.evaluate(List.of(new Milk(), new Milk())).getDiscount(milk));
+        assertEquals("The third milk is free", 440,
+                engine.evaluate(List.of(new Milk(), new Milk(), new Milk())).getDiscount(milk));
+        List<Product> seven = List.of(new Milk(), new Milk(), new Milk(), new Milk(),
+                new Milk(), new Milk(), new Milk());
+        assertEquals("Two full bundles and one paid milk", 5 * 440,
+                engine.evaluate(seven).getSubtotal(milk));
+    }
+
+    @Test
+    public void testRulesCombine() {
+        PromotionEngine engine = PromotionEngine.compile(List.of(
+                new PercentageDiscount(egg, 10),
+                new QualityTierDiscount(egg, Quality.GOLD, 50),
+                new BundleDiscount(egg, 1, 1)));
+        List<Product> cart = List.of(new Egg(Quality.GOLD), new Egg(Quality.GOLD),
+                new Egg(Quality.REGULAR), new Egg(Quality.REGULAR));
+        PromotionResult result = engine.evaluate(cart);
+
+        // both regular eggs are free, and the gold eggs take the larger tier discount
+        assertEquals(100 + 50, result.getDiscount(egg));
+        assertEquals(50, result.getSubtotal(egg));
+        assertEquals(10, engine.getPercentage(egg));
+        assertEquals(0, engine.getPercentage(milk));
+    }
+
+    @Test
+    public void testInvalidRules() {
+        assertThrows(IllegalArgumentException.class, () -> new PercentageDiscount(egg, 101));
+        assertThrows(IllegalArgumentException.class, () -> new BundleDiscount(egg, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> PromotionEngine.compile(List.of(
+                new PercentageDiscount(egg, 10), new PercentageDiscount(egg, 20))));
+    }
+
+    @Test
+    public void testNoPromotions() {
+        PromotionResult result = PromotionEngine.NO_PROMOTIONS.evaluate(
+                List.of(new Egg(), new Milk()));
+        assertEquals(490, result.getTotal());
+        assertEquals(0, result.getTotalDiscount());
+        assertEquals(0, result.getQuantity(jam));
+    }
+}
@@ -0,0 +1,130 @@
+package farm.sales.transaction;
+
+import farm.customer.Customer;
+import farm.inventory.product.Bread;
+import farm.inventory.product.Egg;
+import farm.inventory.product.Jam;
+import farm.inventory.product.Milk;
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.promotion.BundleDiscount;
+import farm.sales.promotion.PercentageDiscount;
+import farm.sales.promotion.PromotionEngine;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class CategorisedTransactionTest {
+
+    private Customer customer;
+
+    @Before
+    public void setUp() {
+        customer = new Customer("Jack", 1234567, "1st Street");
+    }
+
+    @Test
+    public void testCartChangesIgnoredOnceFinalised() {
+        CategorisedTransaction transaction = new CategorisedTransaction(customer);
+        customer.getCart().addProduct(new Egg());
+        customer.getCart().addProduct(new Milk());
+        transaction.finalise();
+        String receipt = transaction.getReceipt();
+
+        customer.getCart().addProduct(new Egg(Quality.GOLD));
+        customer.getCart().addProduct(new Jam());
+
+        assertEquals("Purchased types should not change", Set.of(Barcode.EGG, Barcode.MILK),
+                transaction.getPurchasedTypes());
+        assertEquals(1, transaction.getPurchaseQuantity(Barcode.EGG));
+        assertEquals(0, transaction.getPurchaseQuantity(Barcode.JAM));
+        assertEquals(50, transaction.getPurchaseSubtotal(Barcode.EGG));
+        assertEquals(0, transaction.getPurchaseSubtotal(Barcode.JAM));
+        assertEquals(1, transaction.getPurchasesByType().get(Barcode.EGG).size());
+        assertEquals(490, transaction.getTotal());
+        assertEquals("Receipt should not change", receipt, transaction.getReceipt());
+    }
+
+    @Test
+    public void testFinalisedResultsCannotBeChanged() {
+        CategorisedTransaction transaction = new CategorisedTransaction(customer);
+        customer.getCart().addProduct(new Egg());
+        customer.getCart().addProduct(new Egg());
+        transaction.finalise();
+
+        Map<Barcode, List<Product>> byType = transaction.getPurchasesByType();
+        byType.put(Barcode.JAM, new ArrayList<>(List.of(new Jam())));
+        byType.get(Barcode.EGG).add(new Egg());
+        assertEquals("Grouped purchases should be a copy", 2,
+                transaction.getPurchasesByType().get(Barcode.EGG).size());
+        assertFalse(transaction.getPurchasesByType().containsKey(Barcode.JAM));
+        byType.get(Barcode.EGG).clear();
+        assertEquals(2, transaction.getPurchasesByType().get(Barcode.EGG).size());
+
+        assertThrows(UnsupportedOperationException.class,
+                () -> transaction.getPurchasedTypes().add(Barcode.MILK));
+        assertThrows(UnsupportedOperationException.class,
+                () -> transaction.getPurchases().add(new Milk()));
+        assertEquals("Nothing should have changed", 2,
+                transaction.getPurchaseQuantity(Barcode.EGG));
+    }
+
+    @Test
+    public void testReceiptInBarcodeOrder() {
+        CategorisedTransaction transaction = new CategorisedTransaction(customer);
+        customer.getCart().addProduct(new Bread());
+        customer.getCart().addProduct(new Jam());
+        customer.getCart().addProduct(new Egg());
+        customer.getCart().addProduct(new Milk());
+        customer.getCart().addProduct(new Egg());
+        transaction.finalise();
+
+        List<Barcode> types = new ArrayList<>(transaction.getPurchasedTypes());
+        assertEquals("Types should follow Barcode.values()",
+                List.of(Barcode.EGG, Barcode.MILK, Barcode.JAM, Barcode.BREAD), types);
+        assertEquals("Grouped purchases should follow Barcode.values()", types,
+                new ArrayList<>(transaction.getPurchasesByType().keySet()));
+
+        String receipt = transaction.getReceipt();
+        int egg = receipt.indexOf("egg ");
+        int milk = receipt.indexOf("milk ");
+        int jam = receipt.indexOf("jam ");
+        int bread = receipt.indexOf("bread ");
+        assertTrue("Every type should be on the receipt",
+                egg >= 0 && milk >= 0 && jam >= 0 && bread >= 0);
+        assertTrue("Receipt lines should follow Barcode.values()",
+                egg < milk && milk < jam && jam < bread);
+    }
+
+    @Test
+    public void testSpecialSaleSubtotalsFromEngine() {
+        PromotionEngine promotions = PromotionEngine.compile(List.of(
+                new BundleDiscount(Barcode.JAM, 2, 1), new PercentageDiscount(Barcode.MILK, 50)));
+        SpecialSaleTransaction transaction = new SpecialSaleTransaction(customer, promotions);
+        for (int i = 0; i < 3; i++) {
+            customer.getCart().addProduct(new Jam());
+        }
+        customer.getCart().addProduct(new Milk());
+        customer.getCart().addProduct(new Milk());
+        transaction.finalise();
+        customer.getCart().addProduct(new Jam());
+
+        assertEquals("Third jam should be free", 2 * 670,
+                transaction.getPurchaseSubtotal(Barcode.JAM));
+        assertEquals("Milk should be half price", 440,
+                transaction.getPurchaseSubtotal(Barcode.MILK));
+        assertEquals("Quantities should still be counted in full", 3,
+                transaction.getPurchaseQuantity(Barcode.JAM));
+        assertEquals(2 * 670 + 440, transaction.getTotal());
+        assertEquals(670 + 440, transaction.getTotalSaved());
+        assertTrue("Receipt should show the discounted subtotal",
+                transaction.getReceipt().contains("$13.40"));
+    }
+}
@@ -0,0 +1,116 @@
+package farm.sales.transaction;
+
+import farm.customer.Customer;
+import farm.inventory.product.Egg;
+import farm.inventory.product.Milk;
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class TransactionStoreTest {
+
+    private TransactionStore store;
+    private Customer customer;
+
+    @Before
+    public void setUp() {
+        store = new TransactionStore();
+        customer = new Customer("Jack", 1234567, "1st Street");
+    }
+
+    @Test
+    public void testTransactionsRecreatedExactly() {
+        Map<Barcode, Integer> discounts = new HashMap<>(Map.of(Barcode.MILK, 50, Barcode.JAM, 0));
+        List<Transaction> originals = List.of(
+                finalise(new Transaction(customer), new Egg(Quality.GOLD), new Milk()),
+                finalise(new CategorisedTransaction(customer), new Egg(), new Egg()),
+                finalise(new SpecialSaleTransaction(customer, discounts), new Milk(), new Milk()));
+        for (Transaction original : originals) {
+            store.append(original);
+        }
+
+        assertEquals(3, store.size());
+        for (int i = 0; i < originals.size(); i++) {
+            Transaction recreated = store.get(i);
+            assertEquals(originals.get(i).getClass(), recreated.getClass());
+            assertEquals(originals.get(i).toString(), recreated.toString());
+            assertEquals(originals.get(i).getReceipt(), recreated.getReceipt());
+            assertSame("Customers should be shared", customer,
+                    recreated.getAssociatedCustomer());
+        }
+        assertTrue("Recreating should not fill the customer's cart",
+                customer.getCart().getContents().isEmpty());
+    }
+
+    @Test
+    public void testEqualPromotionsKeptOnce() {
+        for (int i = 0; i < 3; i++) {
+            store.append(finalise(new SpecialSaleTransaction(customer,
+                    new HashMap<>(Map.of(Barcode.EGG, 20))), new Egg()));
+        }
+        store.append(finalise(new SpecialSaleTransaction(customer, Map.of(Barcode.EGG, 30)),
+                new Egg()));
+
+        SpecialSaleTransaction first = (SpecialSaleTransaction) store.get(0);
+        assertSame("Sales with equal discounts should share their promotions",
+                first.getPromotions(), ((SpecialSaleTransaction) store.get(2)).getPromotions());
+        assertNotSame("Different discounts should be kept apart", first.getPromotions(),
+                ((SpecialSaleTransaction) store.get(3)).getPromotions());
+        assertEquals(20, first.getDiscountAmount(Barcode.EGG));
+        assertEquals(30, ((SpecialSaleTransaction) store.get(3)).getDiscountAmount(Barcode.EGG));
+    }
+
+    @Test
+    public void testReportFromColumns() {
+        store.append(finalise(new Transaction(customer), new Egg(), new Milk()));
+        store.append(finalise(new SpecialSaleTransaction(customer, Map.of(Barcode.EGG, 50)),
+                new Egg(), new Milk(), new Egg()));
+        store.append(finalise(new Transaction(customer), new Milk()));
+
+        HistoryReport report = store.report(ForkJoinPool.commonPool());
+        assertEquals(490 + 490 + 440, report.getGrossEarnings());
+        assertEquals(6, store.countPurchases());
+        assertEquals(3, report.getTotalProductsSold(Barcode.EGG));
+        assertEquals("Full prices are stored", 150, report.getFullPriceEarnings(Barcode.EGG));
+        assertEquals("Only the discounted eggs are marked down", 50 + 50,
+                report.getGrossEarnings(Barcode.EGG));
+        assertEquals(440 * 3, report.getGrossEarnings(Barcode.MILK));
+        assertEquals("Ties keep the first transaction", 0, report.getHighestGrossingIndex());
+        assertEquals(490, store.getTotal(1));
+    }
+
+    @Test
+    public void testRejectsActiveTransactions() {
+        assertThrows(IllegalArgumentException.class,
+                () -> store.append(new Transaction(customer)));
+        assertEquals(0, store.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(0));
+    }
+
+    @Test
+    public void testGrowsPastInitialCapacity() {
+        for (int i = 0; i < 100; i++) {
+            store.append(finalise(new CategorisedTransaction(customer), new Egg(), new Milk()));
+        }
+        assertEquals(100, store.size());
+        assertEquals(200, store.countPurchases());
+        assertEquals(2, ((CategorisedTransaction) store.get(99)).getPurchasedTypes().size());
+    }
+
+    private Transaction finalise(Transaction transaction, Product... products) {
+        for (Product product : products) {
+            customer.getCart().addProduct(product);
+        }
+        transaction.finalise();
+        return transaction;
+    }
+}